@@ -0,0 +1,303 @@
+package ru.informationsystems.benchmark;
+
+import ru.informationsystems.objects.Schema;
+import ru.informationsystems.objects.ValidationPlan;
+import ru.informationsystems.objects.constraints.Constraint;
+import ru.informationsystems.objects.constraints.ValidationContext;
+import ru.informationsystems.objects.constraints.ValidationResult;
+import ru.informationsystems.objects.population.Population;
+import ru.informationsystems.objects.types.ObjectType;
+import ru.informationsystems.objects.types.Predicator;
+import ru.informationsystems.util.*;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+/**
+ * Runs the benchmarks for every combination of the given population sizes, key cardinalities and chain lengths,
+ * and prints the throughput and allocation of each benchmark.
+ *
+ * Options (all optional):
+ *   --rows 1000,100000        The amount of rows of each fact type
+ *   --cardinality 1,0.01      The amount of distinct keys per column, as a fraction of the amount of rows
+ *   --joins 1,3               The amount of fact types that the chain benchmarks join
+ *   --warmup 2                The amount of warmup iterations
+ *   --iterations 3            The amount of measurement iterations
+ *   --time 1000               The duration of a single iteration, in milliseconds
+ *   --max-collapse 10000000   The chain benchmarks are skipped if the collapse would contain more rows than this
+ *   --filter regex            Only the benchmarks of which the name contains a match are run
+ */
+public class BenchmarkRunner {
+
+    // All benchmarks, in the order in which they are run
+    private static final List<Benchmark> BENCHMARKS = Arrays.asList(
+            new Benchmark("build.informationStructure", true,
+                    fixture -> () -> Fixture.buildInformationStructure(fixture.getJoins())),
+            new Benchmark("build.snapshot", true, fixture -> {
+                // The snapshot contains the information structure of build.informationStructure, and its relations
+                Path file = snapshot(fixture.getSchema());
+                return () -> SchemaSnapshot.read(file);
+            }),
+            new Benchmark("build.population", false, fixture -> {
+                List<Map<String, String>> rows = fixture.factTypeRows();
+                return () -> new PopulationBuilder(fixture.getSchema()).populateFactType("f1", rows).build();
+            }),
+            new Benchmark("isTypeRelated", true, fixture -> {
+                AssertionHandler ah = new AssertionHandler(fixture.getInformationStructure());
+                List<ObjectType> objectTypes = new ArrayList<>(fixture.getInformationStructure().getObjectTypes());
+                return () -> {
+                    int related = 0;
+                    for (ObjectType objectType1 : objectTypes) {
+                        for (ObjectType objectType2 : objectTypes) {
+                            if (ah.isTypeRelated(objectType1, objectType2)) related++;
+                        }
+                    }
+                    return related;
+                };
+            }),
+            new Benchmark("collapseTable", true, fixture -> {
+                AssertionHandler ah = new AssertionHandler(fixture.getInformationStructure());
+                List<Predicator> predicators = predicators(fixture, fixture.chainPredicators());
+                return () -> SchemaUtils.collapseTable(fixture.getPopulation(), predicators, ah);
+            }),
+            new Benchmark("collapse", true, fixture -> {
+                AssertionHandler ah = new AssertionHandler(fixture.getInformationStructure());
+                List<Predicator> predicators = predicators(fixture, fixture.chainPredicators());
+                Predicator first = predicators.get(0);
+                // We read a value of each row, because the rows of the collapse are only created when they are read
+                return () -> {
+                    long length = 0;
+                    for (Map<Predicator, String> row : SchemaUtils.collapse(fixture.getPopulation(), predicators, ah)) {
+                        length += row.get(first).length();
+                    }
+                    return length;
+                };
+            }),
+            new Benchmark("constraint.uniqueness", true, fixture -> constraint(fixture,
+                    builder -> builder.addUniquenessConstraint(fixture.chainPredicators()))),
+            new Benchmark("constraint.occurrenceFrequency", false, fixture -> constraint(fixture,
+                    builder -> builder.addOccurrenceFrequencyConstraint(1, fixture.getRows(), "x1"))),
+            new Benchmark("constraint.totalRole", false, fixture -> constraint(fixture,
+                    builder -> builder.addTotalRoleConstraint("x1"))),
+            new Benchmark("constraint.set.subset", false, fixture -> constraint(fixture,
+                    builder -> builder.addSetConstraint(ConstraintBuilder.SetConstr.SUBSET, matching("x1", "u", "y1", "v")))),
+            new Benchmark("constraint.set.equal", false, fixture -> constraint(fixture,
+                    builder -> builder.addSetConstraint(ConstraintBuilder.SetConstr.EQUAL, matching("x1", "u", "y1", "v")))),
+            new Benchmark("constraint.set.exclusion", false, fixture -> constraint(fixture,
+                    builder -> builder.addSetConstraint(ConstraintBuilder.SetConstr.EXCLUSION, matching("x1", "p", "y1", "q")))),
+            new Benchmark("constraint.enumeration", false, fixture -> constraint(fixture,
+                    builder -> builder.addEnumerationConstraint("L", fixture.labels()))),
+            new Benchmark("constraint.pt.cover", false, fixture -> constraint(fixture,
+                    builder -> builder.addPTCoverConstraint("W"))),
+            new Benchmark("constraint.pt.exclusion", false, fixture -> constraint(fixture,
+                    builder -> builder.addPTExclusionConstraint("W"))),
+            new Benchmark("constraint.pt.setCardinality", false, fixture -> constraint(fixture,
+                    builder -> builder.addPTSetCardinalityConstraint("W", 1, 4))),
+            new Benchmark("constraint.pt.membership", false, fixture -> constraint(fixture,
+                    builder -> builder.addPTMembershipConstraint("W", "m"))),
+            new Benchmark("constraint.spec.exclusion", false, fixture -> constraint(fixture,
+                    builder -> builder.addSpecExclusionConstraint("Sub0", "Sub1"))),
+            new Benchmark("constraint.spec.totalSubtype", false, fixture -> constraint(fixture,
+                    builder -> builder.addSpecTotalSubtypeConstraint("Sub0", "Sub1"))),
+            new Benchmark("schema.failFast", true, fixture -> {
+                // The enumeration constraint misses a label, so it is violated and is the cheapest constraint
+                String[] labels = fixture.labels();
+                Set<Constraint> constraints = new ConstraintBuilder(fixture.getInformationStructure())
+                        .addUniquenessConstraint(fixture.chainPredicators())
+                        .addSetConstraint(ConstraintBuilder.SetConstr.EQUAL, matching("x1", "u", "y1", "v"))
+                        .addEnumerationConstraint("L", Arrays.copyOf(labels, labels.length - 1))
+                        .build();
+                Schema schema = new Schema(fixture.getInformationStructure(), constraints);
+                Population population = fixture.getPopulation();
+                return () -> schema.isValid(population);
+            }),
+            new Benchmark("schema.plan.tables", false, fixture -> evaluate(fixture, tableConstraints(fixture), true)),
+            new Benchmark("schema.separate.tables", false, fixture -> evaluate(fixture, tableConstraints(fixture), false)),
+            new Benchmark("schema.plan.joins", true, fixture -> evaluate(fixture, joinConstraints(fixture), true)),
+            new Benchmark("schema.separate.joins", true, fixture -> evaluate(fixture, joinConstraints(fixture), false))
+    );
+
+    public static void main(String[] args) {
+        Map<String, String> options = parseOptions(args);
+        List<Integer> rowCounts = parseList(options.getOrDefault("rows", "1000,100000"), Integer::parseInt);
+        List<Double> cardinalities = parseList(options.getOrDefault("cardinality", "1,0.01"), Double::parseDouble);
+        List<Integer> joinCounts = parseList(options.getOrDefault("joins", "1,3"), Integer::parseInt);
+        int warmup = Integer.parseInt(options.getOrDefault("warmup", "2"));
+        int iterations = Integer.parseInt(options.getOrDefault("iterations", "3"));
+        long time = Long.parseLong(options.getOrDefault("time", "1000"));
+        double maxCollapse = Double.parseDouble(options.getOrDefault("max-collapse", "10000000"));
+        Pattern filter = Pattern.compile(options.getOrDefault("filter", ""));
+
+        if (iterations < 1) throw new IllegalArgumentException("At least one measurement iteration is needed.");
+
+        System.out.println("# " + System.getProperty("java.vm.name") + " " + System.getProperty("java.version")
+                + ", max heap " + Runtime.getRuntime().maxMemory() / (1024 * 1024) + " MB");
+        System.out.println("# " + warmup + " warmup and " + iterations + " measurement iterations of " + time + " ms");
+        System.out.printf("%-32s %9s %9s %5s %14s %12s %14s %10s %8s %8s %6s%n",
+                "benchmark", "rows", "keys", "joins", "ops/s", "error", "B/op", "MB/s", "gc.count", "gc.ms", "valid");
+
+        for (int rows : rowCounts) {
+            for (double cardinality : cardinalities) {
+                int keys = (int) Math.max(1, Math.round(rows * cardinality));
+                for (int j = 0; j < joinCounts.size(); j++) {
+                    int joins = joinCounts.get(j);
+                    Fixture fixture = null;
+
+                    for (Benchmark benchmark : BENCHMARKS) {
+                        // Benchmarks that do not use the chain of fact types only run for the first chain length
+                        if (!benchmark.usesChain && j > 0) continue;
+                        if (!filter.matcher(benchmark.name).find()) continue;
+
+                        if (fixture == null) fixture = new Fixture(rows, keys, joins);
+                        if (benchmark.usesChain && fixture.estimateChainRows() > maxCollapse) {
+                            System.out.printf("%-32s %9d %9d %5d %14s%n", benchmark.name, rows, keys, joins, "skipped");
+                            continue;
+                        }
+
+                        Measurement measurement = new Measurement(benchmark.setup.apply(fixture), warmup, iterations, time);
+                        Object result = measurement.getResult();
+                        String valid = result instanceof ValidationResult ? String.valueOf(((ValidationResult) result).isValid()) : "";
+                        System.out.printf("%-32s %9d %9d %5s %14.3f %12.3f %14.1f %10.1f %8d %8d %6s%n",
+                                benchmark.name, rows, keys, benchmark.usesChain ? String.valueOf(joins) : "-",
+                                measurement.getThroughput(), measurement.getThroughputDeviation(),
+                                measurement.getBytesPerOperation(), measurement.getAllocationRate(),
+                                measurement.getGcCount(), measurement.getGcTime(), valid);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Creates an operation that evaluates a single constraint against the population of a fixture.
+     * Evaluating does the same work as validating, but returns the result instead of keeping it in the constraint.
+     * @param fixture The fixture
+     * @param add Adds the constraint to a constraint builder
+     * @return The operation
+     */
+    private static Supplier<?> constraint(Fixture fixture, Function<ConstraintBuilder, ConstraintBuilder> add) {
+        Constraint constraint = add.apply(new ConstraintBuilder(fixture.getInformationStructure())).build().iterator().next();
+        Population population = fixture.getPopulation();
+        return () -> constraint.evaluate(population);
+    }
+
+    /**
+     * Creates an operation that evaluates constraints in a single run without sharing collapsed tables, either by a
+     * validation plan, or one constraint at a time
+     * @param fixture The fixture
+     * @param constraints The constraints
+     * @param planned Whether the constraints are evaluated by a validation plan
+     * @return The operation, which returns the amount of valid constraints
+     */
+    private static Supplier<?> evaluate(Fixture fixture, List<Constraint> constraints, boolean planned) {
+        Population population = fixture.getPopulation();
+        return () -> {
+            ValidationContext context = new ValidationContext(population);
+            List<ValidationResult> results = new ArrayList<>();
+            if (planned) results = ValidationPlan.compile(constraints, context).execute(null);
+            else for (Constraint constraint : constraints) results.add(constraint.evaluate(context));
+            return results.stream().filter(ValidationResult::isValid).count();
+        };
+    }
+
+    /**
+     * Creates ten constraints over the tables of f1, g and h
+     * @param fixture The fixture
+     * @return The constraints
+     */
+    private static List<Constraint> tableConstraints(Fixture fixture) {
+        return new ArrayList<>(new ConstraintBuilder(fixture.getInformationStructure())
+                .addUniquenessConstraint("x1", "y1")
+                .addUniquenessConstraint("x1")
+                .addUniquenessConstraint("u", "v")
+                .addOccurrenceFrequencyConstraint(1, fixture.getRows(), "x1")
+                .addOccurrenceFrequencyConstraint(1, fixture.getRows(), "y1")
+                .addOccurrenceFrequencyConstraint(1, fixture.getRows(), "p")
+                .addSetConstraint(ConstraintBuilder.SetConstr.SUBSET, matching("x1", "u", "y1", "v"))
+                .addSetConstraint(ConstraintBuilder.SetConstr.EQUAL, matching("x1", "u", "y1", "v"))
+                .addSetConstraint(ConstraintBuilder.SetConstr.SUBSET, matching("x1", "u"))
+                .addSetConstraint(ConstraintBuilder.SetConstr.EXCLUSION, matching("x1", "p", "y1", "q"))
+                .build());
+    }
+
+    /**
+     * Creates three constraints over the collapse of the whole chain of fact types
+     * @param fixture The fixture
+     * @return The constraints
+     */
+    private static List<Constraint> joinConstraints(Fixture fixture) {
+        return new ArrayList<>(new ConstraintBuilder(fixture.getInformationStructure())
+                .addUniquenessConstraint(fixture.chainPredicators())
+                .addOccurrenceFrequencyConstraint(1, fixture.getRows(), fixture.chainPredicators())
+                .addOccurrenceFrequencyConstraint(2, fixture.getRows(), fixture.chainPredicators())
+                .build());
+    }
+
+    /**
+     * Writes a snapshot of a schema to a temporary file, which is deleted when the benchmarks are finished
+     * @param schema The schema
+     * @return The file
+     */
+    private static Path snapshot(Schema schema) {
+        try {
+            Path file = Files.createTempFile("schema", ".snapshot");
+            file.toFile().deleteOnExit();
+            SchemaSnapshot.write(schema, file);
+            return file;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static List<Predicator> predicators(Fixture fixture, String... names) {
+        List<Predicator> result = new ArrayList<>();
+        for (String name : names) result.add(fixture.getInformationStructure().getPredicator(name));
+        return result;
+    }
+
+    private static Map<String, String> matching(String... names) {
+        Map<String, String> result = new LinkedHashMap<>();
+        for (int i = 0; i + 1 < names.length; i += 2) result.put(names[i], names[i + 1]);
+        return result;
+    }
+
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i < args.length; i += 2) {
+            if (!args[i].startsWith("--") || i + 1 == args.length) throw new IllegalArgumentException("Invalid option: " + args[i]);
+            options.put(args[i].substring(2), args[i + 1]);
+        }
+        return options;
+    }
+
+    private static <T> List<T> parseList(String value, Function<String, T> parser) {
+        List<T> result = new ArrayList<>();
+        for (String element : value.split(",")) result.add(parser.apply(element.trim()));
+        return result;
+    }
+
+    /**
+     * Class that represents a single benchmark
+     */
+    private static class Benchmark {
+
+        // The name of the benchmark
+        private String name;
+        // Whether the benchmark depends on the amount of fact types in the chain
+        private boolean usesChain;
+        // Prepares the benchmark for a fixture, and returns the operation that is measured
+        private Function<Fixture, Supplier<?>> setup;
+
+        private Benchmark(String name, boolean usesChain, Function<Fixture, Supplier<?>> setup) {
+            this.name = name;
+            this.usesChain = usesChain;
+            this.setup = setup;
+        }
+    }
+}
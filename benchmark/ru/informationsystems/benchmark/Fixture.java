@@ -0,0 +1,260 @@
+package ru.informationsystems.benchmark;
+
+import ru.informationsystems.objects.InformationStructure;
+import ru.informationsystems.objects.Schema;
+import ru.informationsystems.objects.population.Population;
+import ru.informationsystems.objects.population.PopulationTable;
+import ru.informationsystems.objects.population.ValueDictionary;
+import ru.informationsystems.objects.types.*;
+import ru.informationsystems.util.InformationStructureBuilder;
+
+import java.util.*;
+
+/**
+ * Class that generates an information structure and a population of a given size for the benchmarks.
+ *
+ * The information structure contains a chain of fact types f1 ... fn, where fact type fi has the predicators xi and yi,
+ * with bases Ki-1 and Ki. Collapsing the predicators x1 ... xn, yn therefore joins all n fact types.
+ * Besides the chain, it contains a fact type g with the same population as f1, a fact type h with a population that
+ * is disjoint from f1, a label type L, two specializations Sub0 and Sub1 of K0, a power type W over K0 and a fact type
+ * m that connects W to K0.
+ *
+ * Every fact type has the given amount of rows, and each column contains the given amount of distinct keys.
+ * Row r of fact type fi contains the keys r and r + r / keys + i (modulo the amount of keys), so the combination of
+ * both columns is unique as long as the amount of rows is at most the square of the amount of keys. Each join step
+ * of a collapse multiplies the amount of rows by rows / keys.
+ */
+public class Fixture {
+
+    // The amount of rows of each fact type
+    private int rows;
+    // The amount of distinct keys in each column
+    private int keys;
+    // The amount of fact types in the chain
+    private int joins;
+
+    // The information structure
+    private InformationStructure informationStructure;
+    // The schema, without constraints
+    private Schema schema;
+    // The population
+    private Population population;
+
+    public Fixture(int rows, int keys, int joins) {
+        if (rows < 1 || keys < 1 || joins < 1) throw new IllegalArgumentException("The rows, keys and joins should be positive.");
+        this.rows = rows;
+        this.keys = keys;
+        this.joins = joins;
+
+        this.informationStructure = buildInformationStructure(joins);
+        this.schema = new Schema(informationStructure, new HashSet<>());
+        this.population = buildPopulation();
+    }
+
+    /**
+     * Builds the information structure of a fixture
+     * @param joins The amount of fact types in the chain
+     * @return The information structure
+     */
+    public static InformationStructure buildInformationStructure(int joins) {
+        InformationStructureBuilder builder = new InformationStructureBuilder();
+        for (int i = 0; i <= joins; i++) builder.addEntityType("K" + i);
+        for (int i = 1; i <= joins; i++) {
+            builder.addFactType("f" + i)
+                    .addPredicator("x" + i, "f" + i, "K" + (i - 1))
+                    .addPredicator("y" + i, "f" + i, "K" + i);
+        }
+        return builder
+                .addFactTypes("g", "h", "m")
+                .addPredicator("u", "g", "K0")
+                .addPredicator("v", "g", "K1")
+                .addPredicator("p", "h", "K0")
+                .addPredicator("q", "h", "K1")
+                .addLabelType("L")
+                .addEntityTypes("Sub0", "Sub1")
+                .addSpecialization("Sub0", "K0")
+                .addSpecialization("Sub1", "K0")
+                .addPowerType("W", "K0")
+                .addPredicator("mw", "m", "W")
+                .addPredicator("me", "m", "K0")
+                .build();
+    }
+
+    /**
+     * Builds the population. The fact type tables are written directly, so that large populations can be generated
+     * without creating a map for each row.
+     * @return The population
+     */
+    private Population buildPopulation() {
+        Population population = new Population();
+        ValueDictionary dictionary = population.getDictionary();
+
+        // Each entity type in the chain contains all keys, the specializations each contain half of them
+        List<String> keyValues = new ArrayList<>();
+        List<String> evenKeys = new ArrayList<>();
+        List<String> oddKeys = new ArrayList<>();
+        for (int key = 0; key < keys; key++) {
+            keyValues.add(key(key));
+            (key % 2 == 0 ? evenKeys : oddKeys).add(key(key));
+        }
+        for (int i = 0; i <= joins; i++) population.addEntityTypePopulation(entityType("K" + i), keyValues);
+        population.addEntityTypePopulation(entityType("Sub0"), evenKeys);
+        population.addEntityTypePopulation(entityType("Sub1"), oddKeys);
+
+        // The fact types of the chain, and the fact types g and h
+        for (int i = 1; i <= joins; i++) population.addFactTypeTable(factType("f" + i), keyTable(dictionary, "f" + i, i, ""));
+        population.addFactTypeTable(factType("g"), keyTable(dictionary, "g", 1, ""));
+        population.addFactTypeTable(factType("h"), keyTable(dictionary, "h", 1, "z"));
+
+        // The label type contains one label per row, out of the given amount of distinct labels
+        List<String> labels = new ArrayList<>(rows);
+        for (int row = 0; row < rows; row++) labels.add(label(row % keys));
+        population.addLabelTypePopulation((LabelType) informationStructure.getObjectType("L"), labels);
+
+        // The power type partitions the keys into sets of (at most) four keys
+        List<Set<String>> sets = new ArrayList<>();
+        List<String> setValues = new ArrayList<>();
+        for (int key = 0; key < keys; key += 4) {
+            Set<String> set = new LinkedHashSet<>(keyValues.subList(key, Math.min(key + 4, keys)));
+            sets.add(set);
+            setValues.add("{" + String.join(", ", set) + "}");
+        }
+        population.addPowerTypePopulation((PowerType) informationStructure.getObjectType("W"), sets);
+
+        // Fact type m connects each key to the set that contains it
+        FactType m = factType("m");
+        PopulationTable membership = new PopulationTable(dictionary, m.getPredicators(), rows);
+        int setColumn = membership.getColumnIndex(informationStructure.getPredicator("mw"));
+        int elementColumn = membership.getColumnIndex(informationStructure.getPredicator("me"));
+        int[] ids = new int[2];
+        for (int row = 0; row < rows; row++) {
+            int key = row % keys;
+            ids[setColumn] = dictionary.intern(setValues.get(key / 4));
+            ids[elementColumn] = dictionary.intern(key(key));
+            membership.addRow(ids);
+        }
+        population.addFactTypeTable(m, membership);
+
+        return population;
+    }
+
+    /**
+     * Generates the table of a fact type with two predicators
+     * @param dictionary The dictionary of the population
+     * @param name The name of the fact type
+     * @param offset The offset of the second column
+     * @param prefix The prefix of all values, which is used to make the population disjoint from the other ones
+     * @return The table
+     */
+    private PopulationTable keyTable(ValueDictionary dictionary, String name, int offset, String prefix) {
+        List<Predicator> predicators = factType(name).getPredicators();
+        PopulationTable table = new PopulationTable(dictionary, predicators, rows);
+        int[] ids = new int[2];
+        for (int row = 0; row < rows; row++) {
+            ids[0] = dictionary.intern(prefix + key(row % keys));
+            ids[1] = dictionary.intern(prefix + key((int) ((row + (long) row / keys + offset) % keys)));
+            table.addRow(ids);
+        }
+        return table;
+    }
+
+    /**
+     * Generates the rows of fact type f1 as maps, in the format that the population builder expects
+     * @return The rows
+     */
+    public List<Map<String, String>> factTypeRows() {
+        PopulationTable table = population.getFactTypeTable(factType("f1"));
+        List<Map<String, String>> result = new ArrayList<>(table.size());
+        for (Map<Predicator, String> row : table.asRows()) {
+            Map<String, String> values = new HashMap<>();
+            for (Map.Entry<Predicator, String> entry : row.entrySet()) values.put(entry.getKey().getName(), entry.getValue());
+            result.add(values);
+        }
+        return result;
+    }
+
+    /**
+     * @return The predicators that join the whole chain of fact types: x1 ... xn and yn
+     */
+    public String[] chainPredicators() {
+        String[] result = new String[joins + 1];
+        for (int i = 1; i <= joins; i++) result[i - 1] = "x" + i;
+        result[joins] = "y" + joins;
+        return result;
+    }
+
+    /**
+     * @return The labels that occur in the population of the label type
+     */
+    public String[] labels() {
+        String[] result = new String[Math.min(rows, keys)];
+        for (int i = 0; i < result.length; i++) result[i] = label(i);
+        return result;
+    }
+
+    /**
+     * Estimates the amount of rows of the collapse of the whole chain
+     * @return The estimated amount of rows
+     */
+    public double estimateChainRows() {
+        return rows * Math.pow((double) rows / keys, joins - 1);
+    }
+
+    private EntityType entityType(String name) {
+        return (EntityType) informationStructure.getObjectType(name);
+    }
+
+    private FactType factType(String name) {
+        return (FactType) informationStructure.getObjectType(name);
+    }
+
+    private static String key(int key) {
+        return "k" + key;
+    }
+
+    private static String label(int label) {
+        return "l" + label;
+    }
+
+    /**
+     * @return The amount of rows of each fact type
+     */
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * @return The amount of distinct keys in each column
+     */
+    public int getKeys() {
+        return keys;
+    }
+
+    /**
+     * @return The amount of fact types in the chain
+     */
+    public int getJoins() {
+        return joins;
+    }
+
+    /**
+     * @return The information structure
+     */
+    public InformationStructure getInformationStructure() {
+        return informationStructure;
+    }
+
+    /**
+     * @return The schema, without constraints
+     */
+    public Schema getSchema() {
+        return schema;
+    }
+
+    /**
+     * @return The population
+     */
+    public Population getPopulation() {
+        return population;
+    }
+}
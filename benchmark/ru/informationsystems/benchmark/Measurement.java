@@ -0,0 +1,160 @@
+package ru.informationsystems.benchmark;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Class that measures the throughput and allocation of a single benchmark operation.
+ *
+ * An operation is run in a number of warmup iterations, of which the results are discarded, followed by a number of
+ * measurement iterations. Each iteration repeats the operation until the iteration time has passed.
+ * Allocation is measured per thread, so only the memory allocated by the operation itself is counted.
+ */
+public class Measurement {
+
+    // Keeps the results of the operations reachable, so that the JIT compiler cannot remove them
+    public static volatile Object sink;
+
+    // The thread bean, if the JVM can measure the allocation of a thread
+    private static final com.sun.management.ThreadMXBean ALLOCATION = allocationBean();
+
+    // The operations per second of each measurement iteration
+    private double[] throughput;
+    // The amount of bytes allocated per operation, or NaN if this cannot be measured
+    private double bytesPerOperation;
+    // The amount of garbage collections during the measurement iterations
+    private long gcCount;
+    // The time spent in garbage collection during the measurement iterations, in milliseconds
+    private long gcTime;
+    // The last result of the operation
+    private Object result;
+
+    /**
+     * Measures an operation
+     * @param operation The operation
+     * @param warmupIterations The amount of warmup iterations
+     * @param iterations The amount of measurement iterations
+     * @param iterationMillis The duration of a single iteration, in milliseconds
+     */
+    public Measurement(Supplier<?> operation, int warmupIterations, int iterations, long iterationMillis) {
+        for (int i = 0; i < warmupIterations; i++) iterate(operation, iterationMillis);
+
+        long threadId = Thread.currentThread().getId();
+        long gcCountBefore = gcCount();
+        long gcTimeBefore = gcTime();
+        long allocatedBefore = ALLOCATION == null ? 0 : ALLOCATION.getThreadAllocatedBytes(threadId);
+
+        throughput = new double[iterations];
+        long operations = 0;
+        for (int i = 0; i < iterations; i++) {
+            long start = System.nanoTime();
+            long count = iterate(operation, iterationMillis);
+            throughput[i] = count * 1e9 / (System.nanoTime() - start);
+            operations += count;
+        }
+
+        long allocated = ALLOCATION == null ? 0 : ALLOCATION.getThreadAllocatedBytes(threadId) - allocatedBefore;
+        bytesPerOperation = ALLOCATION == null ? Double.NaN : (double) allocated / operations;
+        gcCount = gcCount() - gcCountBefore;
+        gcTime = gcTime() - gcTimeBefore;
+    }
+
+    /**
+     * Repeats the operation until the given time has passed. The operation is run at least once.
+     * @return The amount of times the operation was run
+     */
+    private long iterate(Supplier<?> operation, long iterationMillis) {
+        long end = System.nanoTime() + iterationMillis * 1_000_000;
+        long count = 0;
+        do {
+            result = operation.get();
+            sink = result;
+            count++;
+        } while (System.nanoTime() < end);
+        return count;
+    }
+
+    /**
+     * @return The mean amount of operations per second
+     */
+    public double getThroughput() {
+        double total = 0;
+        for (double value : throughput) total += value;
+        return total / throughput.length;
+    }
+
+    /**
+     * @return The standard deviation of the operations per second over the measurement iterations
+     */
+    public double getThroughputDeviation() {
+        if (throughput.length < 2) return 0;
+        double mean = getThroughput();
+        double total = 0;
+        for (double value : throughput) total += (value - mean) * (value - mean);
+        return Math.sqrt(total / (throughput.length - 1));
+    }
+
+    /**
+     * @return The amount of bytes allocated per operation, or NaN if this cannot be measured
+     */
+    public double getBytesPerOperation() {
+        return bytesPerOperation;
+    }
+
+    /**
+     * @return The amount of megabytes allocated per second, or NaN if this cannot be measured
+     */
+    public double getAllocationRate() {
+        return bytesPerOperation * getThroughput() / (1024 * 1024);
+    }
+
+    /**
+     * @return The amount of garbage collections during the measurement iterations
+     */
+    public long getGcCount() {
+        return gcCount;
+    }
+
+    /**
+     * @return The time spent in garbage collection during the measurement iterations, in milliseconds
+     */
+    public long getGcTime() {
+        return gcTime;
+    }
+
+    /**
+     * @return The last result of the operation
+     */
+    public Object getResult() {
+        return result;
+    }
+
+    private static long gcCount() {
+        long total = 0;
+        for (GarbageCollectorMXBean bean : garbageCollectors()) total += Math.max(0, bean.getCollectionCount());
+        return total;
+    }
+
+    private static long gcTime() {
+        long total = 0;
+        for (GarbageCollectorMXBean bean : garbageCollectors()) total += Math.max(0, bean.getCollectionTime());
+        return total;
+    }
+
+    private static List<GarbageCollectorMXBean> garbageCollectors() {
+        return ManagementFactory.getGarbageCollectorMXBeans();
+    }
+
+    private static com.sun.management.ThreadMXBean allocationBean() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)) return null;
+
+        com.sun.management.ThreadMXBean allocationBean = (com.sun.management.ThreadMXBean) bean;
+        if (!allocationBean.isThreadAllocatedMemorySupported()) return null;
+        allocationBean.setThreadAllocatedMemoryEnabled(true);
+        return allocationBean;
+    }
+}
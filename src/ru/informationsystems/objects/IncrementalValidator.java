@@ -0,0 +1,71 @@
+package ru.informationsystems.objects;
+
+import ru.informationsystems.objects.constraints.Constraint;
+import ru.informationsystems.objects.constraints.IncrementalEvaluator;
+import ru.informationsystems.objects.constraints.ValidationResult;
+import ru.informationsystems.objects.population.Population;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Class that keeps the validation results of a schema up to date while a population changes.
+ * Each constraint gets an incremental evaluator, which is notified of every change of the population. Revalidating
+ * after a change only evaluates the constraints that depend on the changed object types, and most constraints only
+ * update a summary of the population with the change.
+ */
+public class IncrementalValidator {
+
+    // The schema we validate
+    private Schema schema;
+    // The population we validate
+    private Population population;
+    // The constraints of the schema, in a fixed order
+    private List<Constraint> constraints;
+    // The evaluator of each constraint, in the same order
+    private List<IncrementalEvaluator> evaluators = new ArrayList<>();
+
+    public IncrementalValidator(Schema schema, Population population) {
+        this.schema = schema;
+        this.population = population;
+        this.constraints = new ArrayList<>(schema.getConstraints());
+
+        for (Constraint constraint : constraints) {
+            IncrementalEvaluator evaluator = constraint.createIncrementalEvaluator(population);
+            population.addListener(evaluator);
+            evaluators.add(evaluator);
+        }
+    }
+
+    /**
+     * @return The constraints of the schema, in the order of the results
+     */
+    public List<Constraint> getConstraints() {
+        return Collections.unmodifiableList(constraints);
+    }
+
+    /**
+     * Evaluates all constraints against the current population
+     * @return The results of the constraints, in the order of getConstraints()
+     */
+    public List<ValidationResult> evaluate() {
+        List<ValidationResult> results = new ArrayList<>();
+        for (IncrementalEvaluator evaluator : evaluators) results.add(evaluator.evaluate());
+        return results;
+    }
+
+    /**
+     * Validates the current population against all constraints, and prints the results to the console
+     */
+    public void validate() {
+        schema.printResults(constraints, evaluate());
+    }
+
+    /**
+     * Stops keeping track of the population
+     */
+    public void close() {
+        evaluators.forEach(population::removeListener);
+    }
+}
@@ -2,6 +2,9 @@ package ru.informationsystems.objects;
 
 import ru.informationsystems.objects.types.*;
 import ru.informationsystems.util.InformationStructurePrinter;
+import ru.informationsystems.util.JoinPathIndex;
+import ru.informationsystems.util.SpecializationIndex;
+import ru.informationsystems.util.TypeRelatednessIndex;
 
 import java.util.*;
 
@@ -12,6 +15,16 @@ public class InformationStructure {
 
     // The set of object types involved in this information structure
     private Set<ObjectType> objectTypes = new HashSet<>();
+    // The object types of this information structure, indexed by name
+    private Map<String, ObjectType> objectTypesByName = new HashMap<>();
+    // The predicators of the fact types of this information structure, indexed by name
+    private Map<String, Predicator> predicatorsByName = new HashMap<>();
+    // The type relatedness relation of the object types, computed when it is first needed
+    private TypeRelatednessIndex typeRelatedness;
+    // The specialization hierarchy of the entity types, computed when it is first needed
+    private SpecializationIndex specializations;
+    // The join paths of the collapses over the predicators of this information structure, determined when they are first needed
+    private JoinPathIndex joinPaths;
 
     /**
      * Adds an object type to the information structure
@@ -19,6 +32,94 @@ public class InformationStructure {
      */
     public void addObjectType(ObjectType objectType) {
         objectTypes.add(objectType);
+        objectTypesByName.put(objectType.getName(), objectType);
+        if (objectType instanceof FactType) {
+            for (Predicator predicator : ((FactType) objectType).getPredicators()) predicatorsByName.put(predicator.getName(), predicator);
+        }
+        invalidateIndexes();
+    }
+
+    /**
+     * Adds a predicator to a fact type of the information structure
+     * @param factType The fact type the predicator belongs to
+     * @param predicator The predicator to be added
+     */
+    public void addPredicator(FactType factType, Predicator predicator) {
+        factType.addPredicator(predicator);
+        predicatorsByName.put(predicator.getName(), predicator);
+        invalidateIndexes();
+    }
+
+    /**
+     * Adds a specialization from an object type to an entity type
+     * @param entityType The entity type that is specialized
+     * @param objectType The specialization
+     */
+    public void addSpecialization(EntityType entityType, ObjectType objectType) {
+        entityType.getSpecializations().add(objectType);
+        invalidateIndexes();
+    }
+
+    /**
+     * Adds a generalization from an object type to an entity type
+     * @param entityType The entity type that is generalized
+     * @param objectType The generalization
+     */
+    public void addGeneralization(EntityType entityType, ObjectType objectType) {
+        entityType.getGeneralizations().add(objectType);
+        invalidateIndexes();
+    }
+
+    /**
+     * Retrieves the type relatedness relation of this information structure.
+     * It is computed on the first call after the information structure was changed.
+     * @return The type relatedness relation
+     */
+    public synchronized TypeRelatednessIndex getTypeRelatedness() {
+        if (typeRelatedness == null) typeRelatedness = new TypeRelatednessIndex(objectTypes);
+        return typeRelatedness;
+    }
+
+    /**
+     * Retrieves the specialization hierarchy of the entity types of this information structure.
+     * It is computed on the first call after the information structure was changed.
+     * @return The specialization hierarchy
+     */
+    public synchronized SpecializationIndex getSpecializationIndex() {
+        if (specializations == null) specializations = new SpecializationIndex(objectTypes);
+        return specializations;
+    }
+
+    /**
+     * Retrieves the join paths of the collapses over the predicators of this information structure.
+     * Each join path is determined the first time it is needed after the information structure was changed.
+     * @return The join paths
+     */
+    public synchronized JoinPathIndex getJoinPaths() {
+        if (joinPaths == null) joinPaths = new JoinPathIndex(getTypeRelatedness());
+        return joinPaths;
+    }
+
+    /**
+     * Restores the relations that were computed from the structure of this information structure before, for example
+     * by a snapshot, so they do not have to be computed again. They have to be computed from the current object types.
+     * @param typeRelatedness The type relatedness relation
+     * @param specializations The specialization hierarchy
+     * @param joinPaths The join paths, which use the given type relatedness relation
+     */
+    public synchronized void restoreIndexes(TypeRelatednessIndex typeRelatedness, SpecializationIndex specializations, JoinPathIndex joinPaths) {
+        this.typeRelatedness = typeRelatedness;
+        this.specializations = specializations;
+        this.joinPaths = joinPaths;
+    }
+
+    /**
+     * Discards all relations that were computed from the structure of this information structure
+     */
+    private synchronized void invalidateIndexes() {
+        typeRelatedness = null;
+        specializations = null;
+        joinPaths = null;
     }
 
     /**
@@ -26,7 +127,25 @@ public class InformationStructure {
      * @return The set of object types
      */
     public Set<ObjectType> getObjectTypes() {
-        return objectTypes;
+        return Collections.unmodifiableSet(objectTypes);
+    }
+
+    /**
+     * Checks if there is an object type with the given name
+     * @param name The name of the object type
+     * @return Whether the object type exists
+     */
+    public boolean hasObjectType(String name) {
+        return objectTypesByName.containsKey(name);
+    }
+
+    /**
+     * Checks if there is a predicator with the given name
+     * @param name The name of the predicator
+     * @return Whether the predicator exists
+     */
+    public boolean hasPredicator(String name) {
+        return predicatorsByName.containsKey(name);
     }
 
     /**
@@ -36,12 +155,10 @@ public class InformationStructure {
      * @return The object type
      */
     public ObjectType getObjectType(String name) {
-        Optional<ObjectType> objectType = objectTypes.stream()
-                .filter(ot -> ot.getName().equals(name))
-                .findAny();
+        ObjectType objectType = objectTypesByName.get(name);
 
-        if (!objectType.isPresent()) throw new IllegalArgumentException("There does not exist an object type with name " + name);
-        return objectType.get();
+        if (objectType == null) throw new IllegalArgumentException("There does not exist an object type with name " + name);
+        return objectType;
     }
 
     /**
@@ -51,15 +168,10 @@ public class InformationStructure {
      * @return The predicator
      */
     public Predicator getPredicator(String name) {
-        Optional<Predicator> predicator = objectTypes.stream()
-                .filter(ot -> ot instanceof FactType)
-                .map(ot -> (FactType) ot)
-                .map(factType -> factType.getPredicators().stream().filter(pred -> pred.getName().equals(name)).findAny())
-                .filter(Optional::isPresent)
-                .findAny().get();
-
-        if (!predicator.isPresent()) throw new IllegalArgumentException("There does not exist a predicator with name " + name);
-        return predicator.get();
+        Predicator predicator = predicatorsByName.get(name);
+
+        if (predicator == null) throw new IllegalArgumentException("There does not exist a predicator with name " + name);
+        return predicator;
     }
 
     /**
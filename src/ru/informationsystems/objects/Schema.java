@@ -1,21 +1,46 @@
 package ru.informationsystems.objects;
 
 import ru.informationsystems.objects.constraints.Constraint;
+import ru.informationsystems.objects.constraints.ValidationContext;
+import ru.informationsystems.objects.constraints.ValidationListener;
+import ru.informationsystems.objects.constraints.ValidationResult;
+import ru.informationsystems.objects.constraints.ViolationReporting;
 import ru.informationsystems.objects.population.Population;
 
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 /**
  * Class for representing a schema
  */
 public class Schema {
 
+    // The default maximum amount of bytes of the collapsed tables that are shared during a validation
+    public static final long DEFAULT_COLLAPSE_CACHE_BYTES = 64L * 1024 * 1024;
+
     // The information structure of this schema
     private InformationStructure informationStructure;
     // The set of constraints that apply to this schema
     private Set<Constraint> constraints;
+    // The executor that validates the constraints concurrently, or null if they are validated one after another
+    private ExecutorService executor;
+    // The maximum amount of bytes of the collapsed tables that are shared during a validation
+    private long collapseCacheBytes = DEFAULT_COLLAPSE_CACHE_BYTES;
+    // How the violations of the constraints are reported
+    private ViolationReporting violationReporting = ViolationReporting.firstViolation();
+    // The listener that receives the metrics of each validation, or null
+    private ValidationListener listener;
+    // Whether the constraints of a validation share the joins of the collapses they read
+    private boolean sharedScans = true;
 
     public Schema(InformationStructure informationStructure, Set<Constraint> constraints) {
         this.informationStructure = informationStructure;
@@ -36,6 +61,59 @@ public class Schema {
         return constraints;
     }
 
+    /**
+     * Sets the executor that is used to validate the constraints concurrently, for example a ForkJoinPool or a
+     * virtual thread executor. The results are still printed in the same order, so the output is identical to
+     * sequential validation. The executor is not shut down by this schema.
+     * @param executor The executor, or null to validate the constraints one after another
+     */
+    public void setExecutor(ExecutorService executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Sets the maximum amount of memory of the collapsed tables that the constraints share during a validation.
+     * Constraints over the same predicators then only collapse the population once. When the limit is reached, the
+     * least recently used tables are dropped.
+     * @param bytes The maximum amount of bytes, or 0 to collapse the population for every constraint
+     */
+    public void setCollapseCacheSize(long bytes) {
+        if (bytes < 0) throw new IllegalArgumentException("The size of the collapse cache cannot be negative.");
+        this.collapseCacheBytes = bytes;
+    }
+
+    /**
+     * Sets how the violations of the constraints are reported. By default, each constraint stops at its first
+     * violation. When all violations are collected, each constraint counts all of its violations, and passes (a sample
+     * of) them to a sink while they are found, so a population with many violations can be reported without keeping
+     * them in memory.
+     * @param violationReporting The reporting, for example ViolationReporting.allViolations().limit(1000).build()
+     */
+    public void setViolationReporting(ViolationReporting violationReporting) {
+        if (violationReporting == null) throw new IllegalArgumentException("The violation reporting cannot be null.");
+        this.violationReporting = violationReporting;
+    }
+
+    /**
+     * Sets the listener that receives the metrics of each validation: the wall time, rows scanned, hash table sizes
+     * and violation count of each constraint, and the sizes of each join of the collapses. Nothing is measured if
+     * no listener is set.
+     * @param listener The listener, or null to measure nothing
+     */
+    public void setValidationListener(ValidationListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Sets whether the constraints of a validation are evaluated by a validation plan, in which constraints that read
+     * the same collapse share a single join of it. The results are the same either way, but a shared join reads the
+     * population once instead of once per constraint. Durations then include the whole join.
+     * @param sharedScans Whether the constraints share their scans, or false to evaluate each constraint on its own
+     */
+    public void setSharedScans(boolean sharedScans) {
+        this.sharedScans = sharedScans;
+    }
+
     /**
      * This method validates the information structure with the given population against the set of constraints.
      * The results of this validation are printed to the console.
@@ -47,23 +125,103 @@ public class Schema {
 
         System.out.println("Validating schema constraints...\n");
 
-        int constraintsSize = constraints.size();
+        // We fix the order of the constraints, and validate all of them
+        List<Constraint> orderedConstraints = new ArrayList<>(constraints);
+        ValidationContext context = new ValidationContext(population, collapseCacheBytes, violationReporting);
+        context.setListener(listener);
+        long start = System.nanoTime();
+        if (listener != null) listener.validationStarted(population, orderedConstraints);
+        List<ValidationResult> results = sharedScans
+                ? ValidationPlan.compile(orderedConstraints, context).execute(executor)
+                : validateAll(orderedConstraints, context);
+        if (listener != null) listener.validationFinished(orderedConstraints, results, System.nanoTime() - start);
+
+        printResults(orderedConstraints, results);
+    }
+
+    /**
+     * Determines as fast as possible whether a population satisfies all constraints, without printing anything.
+     * The constraints are evaluated in order of their estimated cost, so cheap constraints such as enumeration
+     * constraints are evaluated before set constraints over several fact types, and evaluation stops at the first
+     * violated constraint. If an executor was set, the constraints are evaluated concurrently, and the constraints that
+     * are still being evaluated are cancelled as soon as one of them is violated.
+     * @param population The population we validate
+     * @return Whether the population satisfies all constraints
+     */
+    public boolean isValid(Population population) {
+        List<Constraint> orderedConstraints = orderByCost(population);
+        ValidationContext context = new ValidationContext(population, collapseCacheBytes);
+        context.setListener(listener);
+
+        if (executor == null) {
+            for (Constraint constraint : orderedConstraints) {
+                if (!constraint.evaluate(context).isValid()) return false;
+            }
+            return true;
+        }
+
+        // We submit all constraints in order of their cost, and take the results in the order in which they finish
+        context.setCancellable();
+        CompletionService<ValidationResult> completionService = new ExecutorCompletionService<>(executor);
+        List<Future<ValidationResult>> futures = new ArrayList<>();
+        for (Constraint constraint : orderedConstraints) futures.add(completionService.submit(() -> constraint.evaluate(context)));
+
+        try {
+            for (int i = 0; i < futures.size(); i++) {
+                if (!completionService.take().get().isValid()) return false;
+            }
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("The validation was interrupted.", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            throw new IllegalStateException("A constraint could not be validated.", e.getCause());
+        } finally {
+            // The constraints that are still running stop at their next check for cancellation
+            context.cancel();
+            futures.forEach(future -> future.cancel(true));
+        }
+    }
+
+    /**
+     * Orders the constraints by their estimated cost on a population, cheapest first
+     * @param population The population we validate
+     * @return The ordered constraints
+     */
+    private List<Constraint> orderByCost(Population population) {
+        Map<Constraint, Long> costs = new HashMap<>();
+        for (Constraint constraint : constraints) costs.put(constraint, constraint.estimateCost(population));
+
+        List<Constraint> orderedConstraints = new ArrayList<>(constraints);
+        orderedConstraints.sort(Comparator.comparingLong(costs::get));
+        return orderedConstraints;
+    }
+
+    /**
+     * Prints the results of a validation to the console: the result of each constraint, followed by a summary table.
+     * @param orderedConstraints The constraints that were validated
+     * @param results The results of the constraints, in the same order
+     */
+    public void printResults(List<Constraint> orderedConstraints, List<ValidationResult> results) {
+        int constraintsSize = orderedConstraints.size();
         int index = 1;
         int amountOfValidatedConstraints = 0;
 
         // We create a list of resulting messages
         List<String> resultMessage = new ArrayList<>();
         // We loop through each constraint
-        for (Constraint constraint : constraints) {
+        for (int i = 0; i < orderedConstraints.size(); i++) {
+            Constraint constraint = orderedConstraints.get(i);
             // We retrieve the result of the constraint validation
-            boolean result = constraint.validate(population);
+            boolean result = results.get(i).isValid();
             // We add a table format to the list of results
             resultMessage.add(String.format("| %-5d | %-80s |   %2s \t  |", index, constraint.getInformation(), result ? "✓" : "✗"));
             // If the constraint was validated, increment this counter
             if (result) amountOfValidatedConstraints++;
             // Print the information of this constraint
             System.out.println(">> Constraint " + index + " <<");
-            constraint.printResult();
+            results.get(i).print();
             System.out.println();
             index++;
         }
@@ -77,4 +235,37 @@ public class Schema {
         System.out.println("All constraints were checked.");
         System.out.println(amountOfValidatedConstraints + " / " + constraintsSize + " constraints were valid.");
     }
+
+    /**
+     * Evaluates each of the given constraints against the population.
+     * If an executor was set, the constraints are evaluated concurrently.
+     * @param orderedConstraints The constraints to validate
+     * @param context The context of this validation, containing the population
+     * @return The results of the evaluations, in the same order as the constraints
+     */
+    private List<ValidationResult> validateAll(List<Constraint> orderedConstraints, ValidationContext context) {
+        List<ValidationResult> results = new ArrayList<>();
+
+        if (executor == null) {
+            for (Constraint constraint : orderedConstraints) results.add(constraint.evaluate(context));
+            return results;
+        }
+
+        // We submit all constraints, and then wait for each of them in order
+        List<Future<ValidationResult>> futures = new ArrayList<>();
+        for (Constraint constraint : orderedConstraints) futures.add(executor.submit(() -> constraint.evaluate(context)));
+
+        try {
+            for (Future<ValidationResult> future : futures) results.add(future.get());
+        } catch (InterruptedException e) {
+            futures.forEach(future -> future.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("The validation was interrupted.", e);
+        } catch (ExecutionException e) {
+            futures.forEach(future -> future.cancel(true));
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            throw new IllegalStateException("A constraint could not be validated.", e.getCause());
+        }
+        return results;
+    }
 }
@@ -0,0 +1,407 @@
+package ru.informationsystems.objects;
+
+import ru.informationsystems.objects.constraints.Constraint;
+import ru.informationsystems.objects.constraints.PlannedEvaluation;
+import ru.informationsystems.objects.constraints.Scan;
+import ru.informationsystems.objects.constraints.ScanConsumer;
+import ru.informationsystems.objects.constraints.ValidationContext;
+import ru.informationsystems.objects.constraints.ValidationResult;
+import ru.informationsystems.objects.population.RowCursor;
+import ru.informationsystems.objects.population.RowView;
+import ru.informationsystems.objects.population.ValueDictionary;
+import ru.informationsystems.objects.types.FactType;
+import ru.informationsystems.objects.types.Predicator;
+import ru.informationsystems.util.AssertionHandler;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Class that evaluates a list of constraints as a plan of shared scans.
+ *
+ * Each constraint is compiled into a planned evaluation: the scans of the collapses it reads, and the operators that
+ * consume their rows, such as hash aggregations, hash builds and set probes. The scans are grouped into stages, since a
+ * scan can use the result of an earlier stage, for example a probe of the keys that were built before. Within a stage,
+ * all scans of the same source are grouped into a single pass over it, which reads the source once with a single cursor
+ * and passes its rows to all consumers of the pass, until none of them needs more rows. A collapse that does not need
+ * any join is the table of its fact type, so a fact type with several constraints on it is read once per stage instead
+ * of once per constraint. A collapse that needs joins is joined once per pass, and since a pass that reads a whole
+ * collapse stores it in the collapse cache, later stages read the stored table instead of joining again.
+ *
+ * Constraints that do not read any collapse, such as enumeration and power type constraints, are evaluated on their own
+ * once the scans are done. Since the evaluations keep the state of a run, a plan is compiled for each run.
+ */
+public class ValidationPlan {
+
+    // The context of the run
+    private ValidationContext context;
+    // The constraints, in the order of the results
+    private List<Constraint> constraints = new ArrayList<>();
+    // The evaluation of each constraint, in the same order
+    private List<PlannedEvaluation> evaluations = new ArrayList<>();
+    // The context in which each constraint is evaluated, in the same order
+    private List<ValidationContext> contexts = new ArrayList<>();
+    // For each stage, the pass over each source that is scanned in that stage, in order of the first scan of the source
+    private List<Map<Object, Pass>> stages = new ArrayList<>();
+    // The amount of passes that each evaluation reads, in the same order
+    private List<Integer> passCounts = new ArrayList<>();
+    // The amount of passes of each evaluation that were not executed yet
+    private int[] remainingPasses;
+    // The time that was spent on the passes of each evaluation, in nanoseconds
+    private long[] durations;
+    // The result of each evaluation that was finished
+    private ValidationResult[] results;
+
+    private ValidationPlan(ValidationContext context) {
+        this.context = context;
+    }
+
+    /**
+     * Compiles the plan of a list of constraints for a validation run
+     * @param constraints The constraints, in the order of the results
+     * @param context The context of the run, containing the population we validate
+     * @return The plan
+     */
+    public static ValidationPlan compile(List<Constraint> constraints, ValidationContext context) {
+        ValidationPlan plan = new ValidationPlan(context);
+        for (Constraint constraint : constraints) {
+            ValidationContext constraintContext = context.forConstraint(constraint);
+            plan.add(constraint, constraint.createPlannedEvaluation(constraintContext), constraintContext);
+        }
+        return plan;
+    }
+
+    /**
+     * Adds an evaluation to this plan. Its scans are merged with the scans of the same source and stage.
+     * @param constraint The constraint of the evaluation
+     * @param evaluation The evaluation
+     * @param constraintContext The context in which the evaluation was created
+     */
+    private void add(Constraint constraint, PlannedEvaluation evaluation, ValidationContext constraintContext) {
+        int index = evaluations.size();
+        constraints.add(constraint);
+        evaluations.add(evaluation);
+        contexts.add(constraintContext);
+
+        int passes = 0;
+        for (Scan scan : evaluation.getScans()) {
+            while (stages.size() <= scan.getStage()) stages.add(new LinkedHashMap<>());
+            Pass pass = stages.get(scan.getStage()).computeIfAbsent(getSource(scan), source -> new Pass(scan));
+            if (!pass.owners.contains(index)) passes++;
+            pass.add(scan, index);
+        }
+        passCounts.add(passes);
+    }
+
+    /**
+     * Determines the source that a scan reads. A collapse that does not need any join is the table of the fact type of
+     * its first predicator. Otherwise, collapses are the same if their predicators are, in the same order.
+     * @param scan The scan
+     * @return The fact type or the list of predicators that identifies the source
+     */
+    private static Object getSource(Scan scan) {
+        Collection<Predicator> predicators = scan.getPredicators();
+        if (predicators.isEmpty() || !scan.getAssertionHandler().getJoins(predicators).isEmpty()) return new ArrayList<>(predicators);
+        return predicators.iterator().next().getFactType();
+    }
+
+    /**
+     * @return The constraints of this plan, in the order of the results
+     */
+    public List<Constraint> getConstraints() {
+        return Collections.unmodifiableList(constraints);
+    }
+
+    /**
+     * Executes the plan. If an executor is given, the passes of each stage are executed concurrently, and so are the
+     * constraints that are evaluated on their own. A plan can only be executed once.
+     * @param executor The executor, or null to execute the plan in the current thread
+     * @return The results of the constraints, in the order of getConstraints()
+     */
+    public List<ValidationResult> execute(ExecutorService executor) {
+        durations = new long[evaluations.size()];
+        remainingPasses = passCounts.stream().mapToInt(Integer::intValue).toArray();
+        results = new ValidationResult[evaluations.size()];
+        for (int stage = 0; stage < stages.size(); stage++) {
+            // The passes of a stage only depend on the passes of earlier stages
+            List<Supplier<ValidationResult>> tasks = new ArrayList<>();
+            for (Pass pass : stages.get(stage).values()) {
+                tasks.add(() -> {
+                    execute(pass);
+                    return null;
+                });
+            }
+            invokeAll(tasks, executor);
+        }
+
+        List<Integer> ownEvaluations = getOwnEvaluations();
+        List<Supplier<ValidationResult>> tasks = new ArrayList<>();
+        for (int index : ownEvaluations) tasks.add(() -> finish(index));
+        List<ValidationResult> ownResults = invokeAll(tasks, executor);
+        for (int i = 0; i < ownEvaluations.size(); i++) results[ownEvaluations.get(i)] = ownResults.get(i);
+        return Arrays.asList(results);
+    }
+
+    /**
+     * @return The indexes of the evaluations that do not read any collapse
+     */
+    private List<Integer> getOwnEvaluations() {
+        List<Integer> ownEvaluations = new ArrayList<>();
+        for (int i = 0; i < evaluations.size(); i++) {
+            if (passCounts.get(i) == 0) ownEvaluations.add(i);
+        }
+        return ownEvaluations;
+    }
+
+    /**
+     * Passes the rows of the source of a pass to its consumers. The source is read once for all consumers, in batches
+     * of rows, and each consumer reads a whole batch before the next one does, instead of competing with the other
+     * consumers for the cache on every row. A collapse that needs joins is joined while it is read. A consumer that needs no more rows is removed, and the
+     * source is not read further once no consumer is left. The consumers are released once the pass is done.
+     * @param pass The pass
+     */
+    private void execute(Pass pass) {
+        long start = System.nanoTime();
+        RowCursor rows = context.scan(pass.predicators, pass.ah);
+
+        // We start the consumers in the order of their scans, and leave out the ones that do not need this pass
+        int count = 0;
+        int[] active = new int[pass.consumers.size()];
+        for (int i = 0; i < pass.consumers.size(); i++) {
+            if (pass.consumers.get(i).start(rows)) active[count++] = i;
+        }
+
+        int[] rowsConsumed = new int[pass.consumers.size()];
+        Batch batch = new Batch(rows);
+        int row = 0;
+        for (int size; count > 0 && (size = batch.fill()) > 0; row += size) {
+            for (int i = 0; i < count; ) {
+                int consumed = batch.consume(pass.consumers.get(active[i]), row);
+                if (consumed == size) {
+                    i++;
+                    continue;
+                }
+                // The order of the other consumers is kept
+                rowsConsumed[active[i]] = row + consumed;
+                System.arraycopy(active, i + 1, active, i, --count - i);
+            }
+        }
+        for (int i = 0; i < count; i++) rowsConsumed[active[i]] = row;
+        long duration = System.nanoTime() - start;
+
+        // The source is shared, so each evaluation is charged with the time of the whole pass
+        pass.consumers = null;
+        Map<Integer, Integer> rowsScanned = new LinkedHashMap<>();
+        for (int i = 0; i < rowsConsumed.length; i++) rowsScanned.merge(pass.owners.get(i), rowsConsumed[i], Math::max);
+        rowsScanned.forEach((owner, ownerRows) -> complete(owner, ownerRows, duration));
+    }
+
+    /**
+     * Charges an evaluation with a pass it is done with, and finishes it if this was its last pass. The hash tables of
+     * the evaluation are then released before the rest of the plan is executed.
+     * @param owner The index of the evaluation
+     * @param rows The amount of rows the evaluation read in the pass
+     * @param duration The time that the pass took for the evaluation, in nanoseconds
+     */
+    private void complete(int owner, int rows, long duration) {
+        boolean finished;
+        synchronized (this) {
+            durations[owner] += duration;
+            // The cursors of the run do not count the rows of a constraint, unless the run is the context of the
+            // evaluation itself
+            if (contexts.get(owner) != context) contexts.get(owner).addRowsScanned(rows);
+            finished = --remainingPasses[owner] == 0;
+        }
+        if (finished) results[owner] = finish(owner);
+    }
+
+    /**
+     * Creates the result of an evaluation, and reports it to the listener of the run
+     * @param index The index of the evaluation
+     * @return The result
+     */
+    private ValidationResult finish(int index) {
+        long start = System.nanoTime();
+        ValidationResult result = evaluations.get(index).finish();
+        evaluations.set(index, null);
+        long duration;
+        synchronized (this) {
+            duration = durations[index];
+        }
+        result = result.withDuration(duration + System.nanoTime() - start);
+        if (context.getListener() != null) context.getListener().constraintEvaluated(constraints.get(index), result, contexts.get(index).getRowsScanned());
+        return result;
+    }
+
+    /**
+     * Runs tasks one after another, or concurrently if an executor is given
+     * @param tasks The tasks
+     * @param executor The executor, or null
+     * @return The results of the tasks, in the same order
+     */
+    private static List<ValidationResult> invokeAll(List<Supplier<ValidationResult>> tasks, ExecutorService executor) {
+        List<ValidationResult> results = new ArrayList<>();
+        if (executor == null) {
+            for (Supplier<ValidationResult> task : tasks) results.add(task.get());
+            return results;
+        }
+
+        // We submit all tasks, and then wait for each of them in order
+        List<Future<ValidationResult>> futures = new ArrayList<>();
+        for (Supplier<ValidationResult> task : tasks) futures.add(executor.submit(task::get));
+
+        try {
+            for (Future<ValidationResult> future : futures) results.add(future.get());
+        } catch (InterruptedException e) {
+            futures.forEach(future -> future.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("The validation was interrupted.", e);
+        } catch (ExecutionException e) {
+            futures.forEach(future -> future.cancel(true));
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            throw new IllegalStateException("A constraint could not be validated.", e.getCause());
+        }
+        return results;
+    }
+
+    /**
+     * Prints the plan to the console: for each stage, the sources that are read, and the operators that consume their
+     * rows
+     */
+    public void print() {
+        for (int stage = 0; stage < stages.size(); stage++) {
+            System.out.println("Stage " + (stage + 1) + ":");
+            print(stages.get(stage), "\t");
+        }
+
+        List<Integer> ownEvaluations = getOwnEvaluations();
+        if (ownEvaluations.isEmpty()) return;
+        System.out.println("Evaluated on their own:");
+        ownEvaluations.forEach(index -> System.out.println("\t" + constraints.get(index).getInformation()));
+    }
+
+    /**
+     * Prints the passes of a stage
+     * @param stage The pass over each source of the stage
+     * @param indent The indentation of the sources
+     */
+    private void print(Map<Object, Pass> stage, String indent) {
+        for (Map.Entry<Object, Pass> entry : stage.entrySet()) {
+            Pass pass = entry.getValue();
+            System.out.println(indent + (entry.getKey() instanceof FactType
+                    ? "Scan of fact type " + ((FactType) entry.getKey()).getName()
+                    : "Collapse join over {" + pass.predicators.stream().map(Predicator::getName).collect(Collectors.joining(", ")) + "}"));
+            for (int i = 0; i < pass.operations.size(); i++) {
+                System.out.println(indent + "\t-> " + pass.operations.get(i) + " for " + constraints.get(pass.owners.get(i)).getInformation());
+            }
+        }
+    }
+
+    /**
+     * A batch of rows of a cursor, which is a view of the row that a consumer reads. The ids of the rows are copied
+     * column by column, and the batch is positioned at each row while a consumer reads it.
+     */
+    private static class Batch implements RowView {
+
+        // The amount of rows of a batch, which keeps the ids of a batch of a few columns in the first level cache
+        private static final int SIZE = 1024;
+
+        // The cursor of which the rows are read
+        private RowCursor rows;
+        // The ids of the rows of the batch, for each column
+        private int[][] ids;
+        // The amount of rows in the batch
+        private int size;
+        // The row of the batch at which this view is positioned
+        private int position = -1;
+
+        private Batch(RowCursor rows) {
+            this.rows = rows;
+            this.ids = new int[rows.getPredicators().size()][SIZE];
+        }
+
+        /**
+         * Reads the next batch of rows of the cursor
+         * @return The amount of rows in the batch, or 0 if all rows were read
+         */
+        private int fill() {
+            size = 0;
+            while (size < SIZE && rows.next()) {
+                for (int column = 0; column < ids.length; column++) ids[column][size] = rows.getId(column);
+                size++;
+            }
+            return size;
+        }
+
+        /**
+         * Passes the rows of this batch to a consumer, until it needs no more rows
+         * @param consumer The consumer
+         * @param firstRow The index of the first row of the batch
+         * @return The amount of rows the consumer read
+         */
+        private int consume(ScanConsumer consumer, int firstRow) {
+            for (position = 0; position < size; position++) {
+                if (!consumer.next(this, firstRow + position)) return position + 1;
+            }
+            return size;
+        }
+
+        @Override
+        public List<Predicator> getPredicators() {
+            return rows.getPredicators();
+        }
+
+        @Override
+        public ValueDictionary getDictionary() {
+            return rows.getDictionary();
+        }
+
+        @Override
+        public int getId(int column) {
+            return ids[column][position];
+        }
+
+        @Override
+        public int getColumnIndex(Predicator predicator) {
+            return rows.getColumnIndex(predicator);
+        }
+    }
+
+    /**
+     * A single pass over a source, with the scans that read it
+     */
+    private static class Pass {
+
+        // The predicators of the first scan, which determine the collapse that is read
+        private Collection<Predicator> predicators;
+        // The assertion handler of the first scan
+        private AssertionHandler ah;
+        // What the consumer of each scan computes, in the order in which the scans were added
+        private List<String> operations = new ArrayList<>();
+        // The consumer of each scan, which is released once it read the source
+        private List<ScanConsumer> consumers = new ArrayList<>();
+        // The index of the evaluation of each scan
+        private List<Integer> owners = new ArrayList<>();
+
+        private Pass(Scan first) {
+            this.predicators = first.getPredicators();
+            this.ah = first.getAssertionHandler();
+        }
+
+        private void add(Scan scan, int owner) {
+            operations.add(scan.getOperation());
+            consumers.add(scan.getConsumer());
+            owners.add(owner);
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package ru.informationsystems.objects.constraints;
+
+import ru.informationsystems.objects.population.Population;
+import ru.informationsystems.objects.types.ObjectType;
+import ru.informationsystems.objects.types.Predicator;
+import ru.informationsystems.util.SchemaUtils;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Base class for constraints.
+ * A constraint only has to check a population and return the result, this class measures the time the check takes,
+ * and reports it to the listener of the validation. A constraint keeps no state of a validation, so it can be validated
+ * by several threads at the same time.
+ */
+public abstract class AbstractConstraint implements Constraint {
+
+    // The cost of hashing a combination of values, relative to reading or looking up a single value
+    protected static final int ROW_KEY_COST = 2;
+
+    /**
+     * Checks the constraint against the population of a validation context
+     * @param context The validation context, containing the input population we want to validate
+     * @return The result of the check
+     */
+    protected abstract ValidationResult check(ValidationContext context);
+
+    /**
+     * Passes each element of a set that does not occur in another set as a violation, until the check is told to stop
+     * @param elements The elements that should occur in the other set
+     * @param others The other set
+     * @param format Formats an element as the value of the violation
+     * @param violations The violations of the check
+     * @return The first element that does not occur in the other set, or null if there is none
+     */
+    protected static <T> T addMissing(Set<T> elements, Set<T> others, Function<T, String> format, ViolationReporting.Violations violations) {
+        T firstMissing = null;
+        for (T element : elements) {
+            if (others.contains(element)) continue;
+
+            if (firstMissing == null) firstMissing = element;
+            if (!violations.add(Violation.element(format.apply(element)))) break;
+        }
+        return firstMissing;
+    }
+
+    /**
+     * Estimates the cost of reading the collapse of predicators and hashing its rows.
+     * A collapse over a single fact type reads its table. Each join with another fact type hashes the rows joined so
+     * far and probes them with the new table, so the cost grows with the amount of fact types.
+     * @param population The population
+     * @param predicators The predicators of the collapse
+     * @return The estimated cost
+     */
+    protected static long estimateCollapseCost(Population population, Collection<Predicator> predicators) {
+        Set<ObjectType> factTypes = SchemaUtils.getFactTypes(predicators);
+        long rows = 0;
+        for (ObjectType factType : factTypes) rows += population.getSize(factType);
+        return rows * factTypes.size() * ROW_KEY_COST;
+    }
+
+    /**
+     * By default, a check reads the population of each of its dependencies about once
+     */
+    @Override
+    public long estimateCost(Population population) {
+        long cost = 0;
+        for (ObjectType objectType : getDependencies()) cost += population.getSize(objectType);
+        return cost;
+    }
+
+    @Override
+    public ValidationResult evaluate(Population population) {
+        return evaluate(new ValidationContext(population));
+    }
+
+    @Override
+    public ValidationResult evaluate(ValidationContext context) {
+        // If a listener is registered, the check runs in its own context, which measures the work of this constraint
+        ValidationContext constraintContext = context.forConstraint(this);
+        long start = System.nanoTime();
+        ValidationResult result = check(constraintContext).withDuration(System.nanoTime() - start);
+        if (context.getListener() != null) context.getListener().constraintEvaluated(this, result, constraintContext.getRowsScanned());
+        return result;
+    }
+
+    /**
+     * By default, the constraint is checked again after any change of one of its dependencies
+     */
+    @Override
+    public IncrementalEvaluator createIncrementalEvaluator(Population population) {
+        return new RecomputingEvaluator(this, population);
+    }
+
+    /**
+     * By default, the constraint does not share any scans, and is checked on its own when the plan finishes
+     */
+    @Override
+    public PlannedEvaluation createPlannedEvaluation(ValidationContext context) {
+        return new PlannedEvaluation() {
+            @Override
+            public List<Scan> getScans() {
+                return Collections.emptyList();
+            }
+
+            @Override
+            public ValidationResult finish() {
+                return check(context);
+            }
+        };
+    }
+
+    @Override
+    public boolean validate(Population population) {
+        return evaluate(population).isValid();
+    }
+}
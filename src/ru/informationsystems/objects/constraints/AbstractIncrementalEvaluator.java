@@ -0,0 +1,91 @@
+package ru.informationsystems.objects.constraints;
+
+import ru.informationsystems.objects.population.Population;
+import ru.informationsystems.objects.types.ObjectType;
+
+import java.util.Set;
+
+/**
+ * Base class for evaluators that keep a summary of the population, which is updated with every change.
+ * The result is given from the summary without reading the population: the summary keeps the invalid combinations or
+ * elements, and where they occur, so a violation is described in the same way as the check of the constraint does.
+ * This can be another violation than the first one that the check finds.
+ *
+ * The summary is built from the whole population on the first evaluation, and again after the whole population of
+ * a dependency was replaced. Only if a dependency has no population at all, the constraint itself is checked.
+ */
+public abstract class AbstractIncrementalEvaluator implements IncrementalEvaluator {
+
+    // The constraint we evaluate
+    private Constraint constraint;
+    // The population we evaluate against
+    private Population population;
+    // The object types that the constraint depends on
+    private Set<ObjectType> dependencies;
+    // The result that is given when the summary shows that the constraint is satisfied
+    private ValidationResult validResult;
+    // Whether the summary has to be built again from the whole population
+    private boolean stale = true;
+    // The last result, or null if the population changed since then
+    private ValidationResult result;
+
+    protected AbstractIncrementalEvaluator(Constraint constraint, Population population, String validMessage) {
+        this.constraint = constraint;
+        this.population = population;
+        this.dependencies = constraint.getDependencies();
+        this.validResult = ValidationResult.valid(validMessage);
+    }
+
+    /**
+     * Builds the summary from the whole population
+     * @param population The population
+     * @return Whether the summary could be built, if not the constraint is checked against the whole population
+     */
+    protected abstract boolean rebuild(Population population);
+
+    /**
+     * @return Whether the summary shows that the constraint is satisfied
+     */
+    protected abstract boolean isSatisfied();
+
+    /**
+     * Describes a violation that the summary contains. Only called if the summary shows that the constraint is violated.
+     * @param population The population
+     * @param violations The violations of the result, to which the described violation should be added
+     * @return The result
+     */
+    protected abstract ValidationResult describeViolation(Population population, ViolationReporting.Violations violations);
+
+    @Override
+    public ValidationResult evaluate() {
+        if (result != null) return result;
+
+        long start = System.nanoTime();
+        if (stale) stale = !rebuild(population);
+        if (stale) result = constraint.evaluate(population);
+        else if (isSatisfied()) result = validResult.withDuration(System.nanoTime() - start);
+        else result = describeViolation(population, ViolationReporting.firstViolation().start(constraint)).withDuration(System.nanoTime() - start);
+        return result;
+    }
+
+    /**
+     * @return Whether the summary is up to date, and should be updated with the next change
+     */
+    protected boolean isTracking() {
+        return !stale;
+    }
+
+    /**
+     * Forgets the last result. Should be called after every change of a dependency.
+     */
+    protected void changed() {
+        result = null;
+    }
+
+    @Override
+    public void populationReplaced(ObjectType objectType) {
+        if (!dependencies.contains(objectType)) return;
+        stale = true;
+        result = null;
+    }
+}
@@ -1,13 +1,35 @@
 package ru.informationsystems.objects.constraints;
 
 import ru.informationsystems.objects.population.Population;
+import ru.informationsystems.objects.types.ObjectType;
+
+import java.util.Set;
 
 public interface Constraint {
 
+    /**
+     * Evaluates the constraint against the given population.
+     * The result is a new, immutable object, so a constraint can evaluate several populations concurrently.
+     *
+     * @param population The input population we want to validate
+     * @return The result of the evaluation
+     */
+    ValidationResult evaluate(Population population);
+
+    /**
+     * Evaluates the constraint within a validation run.
+     * The constraint can share work, such as collapsed tables, with the other constraints of the run.
+     *
+     * @param context The validation context, containing the input population we want to validate
+     * @return The result of the evaluation
+     */
+    ValidationResult evaluate(ValidationContext context);
+
     /**
      * Validates the constraint against the given population.
      * If the population satisfies the constraint, the result will be true.
-     * Otherwise, it will be false.
+     * Otherwise, it will be false. The result is not kept, so a caller that needs to print it should evaluate the
+     * constraint and print the returned result instead.
      *
      * @param population The input population we want to validate
      * @return Whether the population satisfies the constraint
@@ -15,11 +37,37 @@ public interface Constraint {
     boolean validate(Population population);
 
     /**
-     * Prints constraint result information to the console.
-     * If an error was found, this method will give information about the error.
-     * If no error was found, it will show this.
+     * Creates an evaluator that keeps the result of this constraint up to date while the population changes.
+     * The evaluator is not registered as a listener of the population yet.
+     *
+     * @param population The population we want to validate
+     * @return The evaluator
+     */
+    IncrementalEvaluator createIncrementalEvaluator(Population population);
+
+    /**
+     * Creates the evaluation of this constraint within a validation plan, in which constraints that read the same
+     * collapse share a single scan of it. The evaluation does not measure itself, the plan reports it to the listener.
+     *
+     * @param context The context in which the constraint is evaluated, as given by forConstraint of the run
+     * @return The evaluation
+     */
+    PlannedEvaluation createPlannedEvaluation(ValidationContext context);
+
+    /**
+     * Gives the object types of which the population can influence the result of this constraint
+     * @return The set of object types
+     */
+    Set<ObjectType> getDependencies();
+
+    /**
+     * Estimates the amount of work that evaluating this constraint against a population takes, in the amount of values
+     * it reads or hashes. The estimate is only used to evaluate cheap constraints first, so it does not have to be exact.
+     *
+     * @param population The population we want to validate
+     * @return The estimated cost
      */
-    void printResult();
+    long estimateCost(Population population);
 
     /**
      * Gives information about the constraint.
@@ -2,7 +2,9 @@ package ru.informationsystems.objects.constraints;
 
 import ru.informationsystems.objects.population.Population;
 import ru.informationsystems.objects.types.LabelType;
+import ru.informationsystems.objects.types.ObjectType;
 
+import java.util.Collections;
 import java.util.List;
 import java.util.Set;
 
@@ -11,7 +13,7 @@ import java.util.Set;
  * An enumeration constraint is a constraint that is applied to a label type,
  * to indicate that this type can only contain specified values.
  */
-public class EnumerationConstraint implements Constraint {
+public class EnumerationConstraint extends AbstractConstraint {
 
     // The label type of this constraint
     private LabelType labelType;
@@ -24,49 +26,68 @@ public class EnumerationConstraint implements Constraint {
     }
 
     /**
-     * Validates the constraint against a given population.
-     * The result will be true if the population satisfies the constraint, and false otherwise.
+     * @return The label type of this constraint
+     */
+    public LabelType getLabelType() {
+        return labelType;
+    }
+
+    /**
+     * @return The allowed label values
+     */
+    public Set<String> getAllowedValues() {
+        return allowedValues;
+    }
+
+    /**
+     * Checks the constraint against a given population.
+     * The result will be valid if the population satisfies the constraint, and contain the invalid element otherwise.
+     * Each element that is not allowed is a violation.
      *
-     * @param population The input population we want to validate
+     * @param context The validation context, containing the input population we want to validate
      * @return the result of the validation
      */
     @Override
-    public boolean validate(Population population) {
+    protected ValidationResult check(ValidationContext context) {
+        Population population = context.getPopulation();
         // We retrieve the population of the label type
         List<String> pop = population.getLabelTypePopulation(labelType);
 
         // We loop through all elements in the population, and check if they are in the allowed elements list.
-        // If they are not, we return false.
-        for (String element : pop) {
-            if (!allowedValues.contains(element)) {
-                populationIsValid = false;
-                invalidElement = element;
-                return false;
-            }
+        // If they are not, the population is invalid.
+        ViolationReporting.Violations violations = context.violations(this);
+        String invalidElement = null;
+        int scanned = 0;
+        while (scanned < pop.size()) {
+            String element = pop.get(scanned++);
+            if (allowedValues.contains(element)) continue;
+
+            if (invalidElement == null) invalidElement = element;
+            if (!violations.add(Violation.element(element))) break;
         }
-        return true;
-    }
+        context.addRowsScanned(scanned);
 
-    // Variables used for error printing
-    private boolean populationIsValid = true;
-    private String invalidElement;
+        if (invalidElement != null) {
+            return ValidationResult.invalid("Failed to verify enumeration constraint.")
+                    .message("Reason: An invalid label type element was found.")
+                    .message("Element:")
+                    .message("\t" + invalidElement)
+                    .message("Allowed elements:")
+                    .message("\t" + String.join(", ", allowedValues))
+                    .violatingElement(invalidElement)
+                    .violations(violations)
+                    .build();
+        }
+        return ValidationResult.valid("Enumeration constraint was successfully verified.");
+    }
 
     /**
-     * Method for printing the result of the validation.
-     * If the validation was unsuccessful, it will print error information.
+     * Provides the object types of which the population can influence this constraint
+     * @return The label type of this constraint
      */
     @Override
-    public void printResult() {
-        if (populationIsValid) {
-            System.out.println("Enumeration constraint was successfully verified.");
-        } else {
-            System.out.println("Failed to verify enumeration constraint.");
-            System.out.println("Reason: An invalid label type element was found.");
-            System.out.println("Element:");
-            System.out.println("\t" + invalidElement);
-            System.out.println("Allowed elements:");
-            System.out.println("\t" + String.join(", ", allowedValues));
-        }
+    public Set<ObjectType> getDependencies() {
+        return Collections.singleton(labelType);
     }
 
     /**
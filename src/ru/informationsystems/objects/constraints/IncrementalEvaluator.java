@@ -0,0 +1,16 @@
+package ru.informationsystems.objects.constraints;
+
+import ru.informationsystems.objects.population.PopulationListener;
+
+/**
+ * An evaluator that keeps the result of a constraint up to date while its population changes.
+ * The evaluator has to be registered as a listener of the population, so that it is notified of every change.
+ */
+public interface IncrementalEvaluator extends PopulationListener {
+
+    /**
+     * Evaluates the constraint against the current population
+     * @return The result of the evaluation
+     */
+    ValidationResult evaluate();
+}
@@ -0,0 +1,136 @@
+package ru.informationsystems.objects.constraints;
+
+import ru.informationsystems.objects.population.KeyTable;
+import ru.informationsystems.objects.population.Population;
+import ru.informationsystems.objects.population.PopulationTable;
+import ru.informationsystems.objects.population.PositionIndex;
+import ru.informationsystems.objects.types.FactType;
+import ru.informationsystems.objects.types.Predicator;
+
+import java.util.*;
+
+/**
+ * Evaluator for constraints that limit how many times each combination of values occurs in a single fact type,
+ * such as uniqueness and occurrence frequency constraints.
+ * The summary contains the rows of each combination, in the same positions as the table of the fact type, and the
+ * combinations with an invalid amount of rows.
+ */
+public class KeyCountEvaluator extends AbstractIncrementalEvaluator {
+
+    // The fact type that contains all predicators
+    private FactType factType;
+    // The predicators of which the combination of values is counted
+    private Collection<Predicator> predicators;
+    // The minimum amount of rows of a combination
+    private int minimum;
+    // The maximum amount of rows of a combination
+    private int maximum;
+    // Describes a combination with an invalid amount of rows
+    private InvalidKey invalidKey;
+
+    // The columns of the predicators in the table of the fact type
+    private int[] columns;
+    // The combinations that occur in the table
+    private KeyTable keys;
+    // The combination of each row of the table
+    private PositionIndex rows;
+    // The combinations of which the amount of rows is not between the minimum and maximum
+    private Set<Integer> invalidKeys = new LinkedHashSet<>();
+
+    public KeyCountEvaluator(Constraint constraint, Population population, String validMessage, InvalidKey invalidKey,
+                             FactType factType, Collection<Predicator> predicators, int minimum, int maximum) {
+        super(constraint, population, validMessage);
+        this.invalidKey = invalidKey;
+        this.factType = factType;
+        this.predicators = predicators;
+        this.minimum = minimum;
+        this.maximum = maximum;
+    }
+
+    @Override
+    protected boolean rebuild(Population population) {
+        PopulationTable table = population.getFactTypeTable(factType);
+        if (table == null) return false;
+
+        columns = table.getColumnIndexes(predicators);
+        keys = new KeyTable(columns.length);
+        rows = new PositionIndex();
+        invalidKeys.clear();
+        for (int row = 0; row < table.size(); row++) insert(table, row);
+        return true;
+    }
+
+    @Override
+    protected boolean isSatisfied() {
+        return invalidKeys.isEmpty();
+    }
+
+    @Override
+    protected ValidationResult describeViolation(Population population, ViolationReporting.Violations violations) {
+        PopulationTable table = population.getFactTypeTable(factType);
+        int key = invalidKeys.iterator().next();
+
+        // We describe the first two rows of the combination that we find in the index
+        List<Map<Predicator, String>> keyRows = new ArrayList<>();
+        for (int row = rows.first(key); row >= 0 && keyRows.size() < 2; row = rows.next(row)) keyRows.add(table.getRow(row));
+        return invalidKey.describe(keyRows, rows.count(key), violations);
+    }
+
+    @Override
+    public void factInserted(FactType factType, PopulationTable table, int row) {
+        if (factType != this.factType) return;
+        if (isTracking()) insert(table, row);
+        changed();
+    }
+
+    @Override
+    public void factDeleted(FactType factType, PopulationTable table, int row) {
+        if (factType != this.factType) return;
+        if (isTracking()) {
+            // The index moves the last row in the same way as the table
+            int key = rows.remove(row);
+            update(key);
+            if (rows.count(key) == 0) keys.remove(key);
+        }
+        changed();
+    }
+
+    /**
+     * Adds a row of the table to the summary
+     * @param table The table of the fact type
+     * @param row The row index, which is the last row of the table
+     */
+    private void insert(PopulationTable table, int row) {
+        int key = keys.add(table, row, columns);
+        rows.add(key);
+        update(key);
+    }
+
+    /**
+     * Determines again whether a combination has an invalid amount of rows
+     * @param key The combination
+     */
+    private void update(int key) {
+        int count = rows.count(key);
+        if (count > 0 && !isValidCount(count)) invalidKeys.add(key);
+        else invalidKeys.remove(key);
+    }
+
+    private boolean isValidCount(int count) {
+        return count >= minimum && count <= maximum;
+    }
+
+    /**
+     * Describes a combination with an invalid amount of rows as the result of the constraint
+     */
+    public interface InvalidKey {
+
+        /**
+         * @param rows The first two rows of the combination, or only the first one if the combination occurs once
+         * @param count The amount of rows of the combination
+         * @param violations The violations of the result, to which the described violation should be added
+         * @return The result
+         */
+        ValidationResult describe(List<Map<Predicator, String>> rows, int count, ViolationReporting.Violations violations);
+    }
+}
@@ -0,0 +1,143 @@
+package ru.informationsystems.objects.constraints;
+
+import ru.informationsystems.objects.population.Population;
+import ru.informationsystems.objects.types.EntityType;
+import ru.informationsystems.objects.types.PowerType;
+
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Evaluator for constraints that limit in how many sets of a power type each element occurs,
+ * such as power type cover and exclusion constraints.
+ * The summary contains, for each element, the amount of sets that contain it and the amount of times it occurs in the
+ * population of the entity type, and the elements of the entity type with an invalid amount of sets.
+ */
+public class MembershipCountEvaluator extends AbstractIncrementalEvaluator {
+
+    // The power type
+    private PowerType powerType;
+    // The minimum amount of sets that an element should occur in
+    private int minimum;
+    // The maximum amount of sets that an element should occur in
+    private int maximum;
+    // Describes an element that occurs in an invalid amount of sets
+    private InvalidElement invalidElement;
+
+    // The amount of sets that contain each element
+    private Map<String, Integer> memberships = new HashMap<>();
+    // The amount of times each element occurs in the population of the entity type
+    private Map<String, Integer> elements = new HashMap<>();
+    // The elements of the entity type that occur in too few or too many sets
+    private Set<String> invalidElements = new LinkedHashSet<>();
+
+    public MembershipCountEvaluator(Constraint constraint, Population population, String validMessage,
+                                    InvalidElement invalidElement, PowerType powerType, int minimum, int maximum) {
+        super(constraint, population, validMessage);
+        this.invalidElement = invalidElement;
+        this.powerType = powerType;
+        this.minimum = minimum;
+        this.maximum = maximum;
+    }
+
+    @Override
+    protected boolean rebuild(Population population) {
+        List<Set<String>> sets = population.getPowerTypePopulation(powerType);
+        List<String> entityTypePopulation = population.getEntityTypePopulation(powerType.getElement());
+        if (sets == null || entityTypePopulation == null) return false;
+
+        memberships.clear();
+        elements.clear();
+        invalidElements.clear();
+        for (Set<String> set : sets) set.forEach(element -> updateMembership(element, 1));
+        for (String element : entityTypePopulation) updateElement(element, 1);
+        return true;
+    }
+
+    @Override
+    protected boolean isSatisfied() {
+        return invalidElements.isEmpty();
+    }
+
+    @Override
+    protected ValidationResult describeViolation(Population population, ViolationReporting.Violations violations) {
+        return invalidElement.describe(invalidElements.iterator().next(), violations);
+    }
+
+    @Override
+    public void powerTypeSetAdded(PowerType powerType, Set<String> set) {
+        if (powerType != this.powerType) return;
+        if (isTracking()) set.forEach(element -> updateMembership(element, 1));
+        changed();
+    }
+
+    @Override
+    public void powerTypeSetRemoved(PowerType powerType, Set<String> set) {
+        if (powerType != this.powerType) return;
+        if (isTracking()) set.forEach(element -> updateMembership(element, -1));
+        changed();
+    }
+
+    @Override
+    public void entityAdded(EntityType entityType, String value) {
+        if (entityType != powerType.getElement()) return;
+        if (isTracking()) updateElement(value, 1);
+        changed();
+    }
+
+    @Override
+    public void entityRemoved(EntityType entityType, String value) {
+        if (entityType != powerType.getElement()) return;
+        if (isTracking()) updateElement(value, -1);
+        changed();
+    }
+
+    /**
+     * Changes the amount of sets that contain an element
+     */
+    private void updateMembership(String element, int delta) {
+        put(memberships, element, memberships.getOrDefault(element, 0) + delta);
+        update(element);
+    }
+
+    /**
+     * Changes the amount of times an element occurs in the population of the entity type
+     */
+    private void updateElement(String element, int delta) {
+        put(elements, element, elements.getOrDefault(element, 0) + delta);
+        update(element);
+    }
+
+    /**
+     * Determines again whether an element is invalid. Only elements of the entity type can be invalid.
+     */
+    private void update(String element) {
+        if (elements.containsKey(element) && !isValidCount(memberships.getOrDefault(element, 0))) invalidElements.add(element);
+        else invalidElements.remove(element);
+    }
+
+    private boolean isValidCount(int count) {
+        return count >= minimum && count <= maximum;
+    }
+
+    private static void put(Map<String, Integer> counts, String key, int count) {
+        if (count == 0) counts.remove(key);
+        else counts.put(key, count);
+    }
+
+    /**
+     * Describes an element that occurs in an invalid amount of sets as the result of the constraint
+     */
+    public interface InvalidElement {
+
+        /**
+         * @param element The element
+         * @param violations The violations of the result, to which the described violation should be added
+         * @return The result
+         */
+        ValidationResult describe(String element, ViolationReporting.Violations violations);
+    }
+}
@@ -1,12 +1,19 @@
 package ru.informationsystems.objects.constraints;
 
+import ru.informationsystems.objects.population.GroupCounts;
 import ru.informationsystems.objects.population.Population;
+import ru.informationsystems.objects.population.RowView;
+import ru.informationsystems.objects.types.FactType;
+import ru.informationsystems.objects.types.ObjectType;
 import ru.informationsystems.objects.types.Predicator;
 import ru.informationsystems.util.AssertionHandler;
 import ru.informationsystems.util.SchemaUtils;
 
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -15,7 +22,10 @@ import java.util.stream.Collectors;
  * An occurrence frequency constraint is a constraint that is applied to a list of predicators,
  * to indicate how many times their combination is allowed in any population.
  */
-public class OccurrenceFrequencyConstraint implements Constraint {
+public class OccurrenceFrequencyConstraint extends AbstractConstraint {
+
+    // The message of a successful validation
+    private static final String VALID_MESSAGE = "Occurrence frequency constraint was successfully verified.";
 
     // The predicators that this constraint covers
     private Set<Predicator> predicators;
@@ -34,65 +44,200 @@ public class OccurrenceFrequencyConstraint implements Constraint {
     }
 
     /**
-     * Validates the constraint against a given population.
-     * The result will be true if the population satisfies the constraint, and false otherwise.
+     * @return The predicators this constraint spans
+     */
+    public Set<Predicator> getPredicators() {
+        return predicators;
+    }
+
+    /**
+     * @return The minimum amount of times a combination of values should occur
+     */
+    public int getMinimum() {
+        return minimum;
+    }
+
+    /**
+     * @return The maximum amount of times a combination of values should occur
+     */
+    public int getMaximum() {
+        return maximum;
+    }
+
+    /**
+     * Checks the constraint against a given population.
+     * The result will be valid if the population satisfies the constraint, and contain the invalid row otherwise.
+     * The first row of each combination of values with an invalid amount of occurrences is a violation.
      *
-     * @param population The input population we want to validate
+     * @param context The validation context, containing the input population we want to validate
      * @return the result of the validation
      */
     @Override
-    public boolean validate(Population population) {
-        // We collapse the population into a single table, containing all the information we need.
-        List<Map<Predicator, String>> result = SchemaUtils.collapse(population, predicators, ah);
-
-        // We loop through each entry in the table
-        for (int i = 0; i < result.size(); i++) {
-            Map<Predicator, String> row = result.get(i);
-            // We initialize a variable, that indicates how many times a population occurs
-            int occurrences = 0;
-
-            // We loop through all entries in the table
-            for (Map<Predicator, String> row2 : result) {
-                // If the two rows are the same for all predicators, we increment the occurrences count
-                if (SchemaUtils.fullRowsMatch(row, row2, predicators)) {
-                    occurrences++;
-                }
+    protected ValidationResult check(ValidationContext context) {
+        return PlannedEvaluation.execute(createPlannedEvaluation(context), context);
+    }
+
+    /**
+     * The occurrences are counted in a single scan, which the plan shares with the other constraints that read the
+     * collapse. If all violations are collected, a second scan reports the invalid rows.
+     */
+    @Override
+    public PlannedEvaluation createPlannedEvaluation(ValidationContext context) {
+        return new Evaluation(context);
+    }
+
+    /**
+     * The evaluation of this constraint. We count the occurrences of each combination of values in a single pass.
+     * Counting stops just above the maximum, since higher counts are invalid anyway.
+     */
+    private class Evaluation implements PlannedEvaluation, ScanConsumer {
+
+        // The validation context
+        private ValidationContext context;
+        // The violations of the check
+        private ViolationReporting.Violations violations;
+        // The columns of the predicators
+        private int[] columns;
+        // The occurrences of each combination of values
+        private GroupCounts groupCounts = new GroupCounts(maximum == Integer.MAX_VALUE ? maximum : maximum + 1);
+        // The first group with an invalid amount of occurrences, or -1
+        private int firstInvalidGroup = -1;
+        // The first row of each invalid group, or null if the groups were not checked yet
+        private BitSet invalidRows;
+
+        private Evaluation(ValidationContext context) {
+            this.context = context;
+            this.violations = context.violations(OccurrenceFrequencyConstraint.this);
+        }
+
+        @Override
+        public List<Scan> getScans() {
+            return Arrays.asList(
+                    new Scan(0, predicators, ah, "hash aggregation of the occurrences of each key", this),
+                    new Scan(1, predicators, ah, "filter on the first row of each invalid group", new ScanConsumer() {
+                        // If all violations are collected, we read the collapse again and report the first row of each
+                        // invalid group
+                        @Override
+                        public boolean start(RowView rows) {
+                            return violations.collectsAll() && !checkGroups().isEmpty();
+                        }
+
+                        @Override
+                        public boolean next(RowView rows, int row) {
+                            if (invalidRows.get(row)) violations.add(Violation.row(rows.getRow()));
+                            return row + 1 < invalidRows.length();
+                        }
+                    }));
+        }
+
+        @Override
+        public boolean start(RowView rows) {
+            columns = rows.getColumnIndexes(predicators);
+            return true;
+        }
+
+        @Override
+        public boolean next(RowView rows, int row) {
+            int group = groupCounts.add(rows, columns, row);
+            // A group with too many occurrences is invalid. Unless all violations are collected, the rest of the
+            // collapse is not needed.
+            if (groupCounts.getCount(group) > maximum && firstInvalidGroup < 0) {
+                firstInvalidGroup = group;
+                return violations.collectsAll();
             }
+            return true;
+        }
 
-            // If there were not enough occurrences, or too many occurrences, the population is not valid
-            if (occurrences < minimum || occurrences > maximum) {
-                this.invalidElement = row;
-                this.occurrences = occurrences;
-                populationIsValid = false;
-                return false;
+        /**
+         * We loop through the groups, in the order in which they occur in the collapse, and remember the first row of
+         * each group with too few or too many occurrences
+         * @return The first row of each invalid group
+         */
+        private BitSet checkGroups() {
+            if (invalidRows != null) return invalidRows;
+            invalidRows = new BitSet();
+            for (int group = 0; group < groupCounts.size(); group++) {
+                int occurrences = groupCounts.getCount(group);
+                if (occurrences >= minimum && occurrences <= maximum) continue;
+                if (firstInvalidGroup < 0) firstInvalidGroup = group;
+                invalidRows.set(groupCounts.getFirstRow(group));
             }
+            return invalidRows;
         }
-        return true;
+
+        @Override
+        public ValidationResult finish() {
+            context.hashTableBuilt("occurrences of each combination of values", groupCounts.size());
+            if (firstInvalidGroup < 0 || violations.collectsAll()) checkGroups();
+            if (firstInvalidGroup < 0) return ValidationResult.valid(VALID_MESSAGE);
+            return invalid(context, groupCounts, firstInvalidGroup, violations);
+        }
+    }
+
+    /**
+     * Creates the result of a group with an invalid amount of occurrences
+     * @param context The validation context
+     * @param groupCounts The counted groups
+     * @param group The invalid group
+     * @param violations The violations of the check, the first row of the group is added if no violation was added yet
+     * @return The result
+     */
+    private ValidationResult invalid(ValidationContext context, GroupCounts groupCounts, int group, ViolationReporting.Violations violations) {
+        Map<Predicator, String> invalidElement = context.getRow(predicators, ah, groupCounts.getFirstRow(group));
+        if (violations.getCount() == 0) violations.add(Violation.row(invalidElement));
+        return invalid(invalidElement, groupCounts.getCount(group), violations);
+    }
+
+    /**
+     * Creates the result of a row of which the combination of values has an invalid amount of occurrences
+     * @param invalidElement The row
+     * @param occurrences The amount of occurrences of its combination
+     * @param violations The violations of the check
+     * @return The result
+     */
+    private ValidationResult invalid(Map<Predicator, String> invalidElement, int occurrences, ViolationReporting.Violations violations) {
+        return ValidationResult.invalid("Failed to verify occurrence frequency constraint.")
+                .message("Reason: An invalid row was found.")
+                .message("Row:")
+                .message("\t{" + invalidElement.entrySet().stream().map(e -> e.getKey().getName() + " > " + e.getValue()).collect(Collectors.joining(", ")) + "}")
+                .message("Amount of occurrences:")
+                .message("\t" + (occurrences > maximum ? "more than " + maximum : occurrences))
+                .message("Expected amount of occurrences:")
+                .message("\t" + minimum + " <= o <= " + maximum)
+                .violatingRow(invalidElement)
+                .violations(violations)
+                .build();
     }
 
-    // Variables used for error printing
-    private boolean populationIsValid = true;
-    private Map<Predicator, String> invalidElement;
-    private int occurrences;
+    /**
+     * If all predicators belong to a single fact type, the amount of rows of each combination of values is kept up to
+     * date. Otherwise, the constraint is checked again after each change.
+     */
+    @Override
+    public IncrementalEvaluator createIncrementalEvaluator(Population population) {
+        Optional<FactType> factType = SchemaUtils.getSingleFactType(predicators);
+        if (!factType.isPresent()) return super.createIncrementalEvaluator(population);
+        return new KeyCountEvaluator(this, population, VALID_MESSAGE, (rows, count, violations) -> {
+            violations.add(Violation.row(rows.get(0)));
+            return invalid(rows.get(0), count, violations);
+        }, factType.get(), predicators, minimum, maximum);
+    }
 
     /**
-     * Method for printing the result of the validation.
-     * If the validation was unsuccessful, it will print error information.
+     * The collapse of the predicators is read once, and each of its rows is hashed
      */
     @Override
-    public void printResult() {
-        if (populationIsValid) {
-            System.out.println("Occurrence frequency constraint was successfully verified.");
-        } else {
-            System.out.println("Failed to verify occurrence frequency constraint.");
-            System.out.println("Reason: An invalid row was found.");
-            System.out.println("Row:");
-            System.out.println("\t{" + invalidElement.entrySet().stream().map(e -> e.getKey().getName() + " > " + e.getValue()).collect(Collectors.joining(", ")) + "}");
-            System.out.println("Amount of occurrences:");
-            System.out.println("\t" + occurrences);
-            System.out.println("Expected amount of occurrences:");
-            System.out.println("\t" + minimum + " <= o <= " + maximum);
-        }
+    public long estimateCost(Population population) {
+        return estimateCollapseCost(population, predicators);
+    }
+
+    /**
+     * Provides the object types of which the population can influence this constraint
+     * @return The fact types of the predicators
+     */
+    @Override
+    public Set<ObjectType> getDependencies() {
+        return SchemaUtils.getFactTypes(predicators);
     }
 
     /**
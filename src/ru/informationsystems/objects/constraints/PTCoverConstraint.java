@@ -1,9 +1,14 @@
 package ru.informationsystems.objects.constraints;
 
+import ru.informationsystems.objects.population.IdColumn;
+import ru.informationsystems.objects.population.MembershipCounts;
 import ru.informationsystems.objects.population.Population;
+import ru.informationsystems.objects.population.ValueDictionary;
+import ru.informationsystems.objects.types.ObjectType;
 import ru.informationsystems.objects.types.PowerType;
 
-import java.util.List;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.Set;
 
 /**
@@ -11,7 +16,10 @@ import java.util.Set;
  * A power type cover constraint is used to indicate that each element in a powertype's entity type must
  * occur in at least one of the sets in the power type.
  */
-public class PTCoverConstraint implements Constraint {
+public class PTCoverConstraint extends AbstractConstraint {
+
+    // The message of a successful validation
+    private static final String VALID_MESSAGE = "Power type cover constraint was successfully verified.";
 
     // The power type of this constraint
     private PowerType powerType;
@@ -21,55 +29,80 @@ public class PTCoverConstraint implements Constraint {
     }
 
     /**
-     * Validates the constraint against a given population.
-     * The result will be true if the population satisfies the constraint, and false otherwise.
+     * @return The power type of this constraint
+     */
+    public PowerType getPowerType() {
+        return powerType;
+    }
+
+    /**
+     * Checks the constraint against a given population.
+     * The result will be valid if the population satisfies the constraint, and contain the invalid element otherwise.
+     * Each element that does not occur in any set is a violation.
      *
-     * @param population The input population we want to validate
+     * @param context The validation context, containing the input population we want to validate
      * @return the result of the validation
      */
     @Override
-    public boolean validate(Population population) {
-        // We retrieve the population that belongs to this power type
-        List<Set<String>> powerTypePopulation = population.getPowerTypePopulation(powerType);
-        // We retrieve the population that belongs to the entity type
-        List<String> entityTypePopulation = population.getEntityTypePopulation(powerType.getElement());
+    protected ValidationResult check(ValidationContext context) {
+        Population population = context.getPopulation();
+        // We retrieve the population that belongs to the entity type, as dictionary ids
+        IdColumn entityTypePopulation = population.getEntityTypeColumn(powerType.getElement());
+
+        // We accumulate, in a single pass over the bitmaps of all sets, the elements that occur in one and in several sets.
+        // An element that does not occur in a set makes the population invalid.
+        // The counts are shared with the other constraints on this power type.
+        MembershipCounts counts = context.getMembershipCounts(powerType);
+        ViolationReporting.Violations violations = context.violations(this);
+        int invalidId = ValueDictionary.NO_VALUE;
+        int scanned = 0;
+        while (scanned < entityTypePopulation.size()) {
+            int id = entityTypePopulation.get(scanned++);
+            if (counts.getCount(id) != 0) continue;
+
+            if (invalidId == ValueDictionary.NO_VALUE) invalidId = id;
+            if (!violations.add(Violation.element(population.getDictionary().get(id)))) break;
+        }
+        context.addRowsScanned(scanned);
 
-        // We use streams to check if there is an element that does not occur in a set.
-        // If this is the case, the result of this stream will be false.
-        // If all elements occur in a set, the result will be true.
-        return entityTypePopulation.stream()
-                .noneMatch(element -> {
-                    long result = powerTypePopulation.stream()
-                            .flatMap(Set::stream)
-                            .filter(elt -> elt.equals(element))
-                            .count();
+        if (invalidId == ValueDictionary.NO_VALUE) return ValidationResult.valid(VALID_MESSAGE);
+        return invalid(population.getDictionary().get(invalidId), violations);
+    }
 
-                    if (result == 0) {
-                        populationIsValid = false;
-                        invalidElement = element;
-                    }
-                    return result == 0;
-                });
+    /**
+     * Creates the result of an element that does not occur in any power type set
+     * @param invalidElement The element
+     * @param violations The violations of the check
+     * @return The result
+     */
+    private ValidationResult invalid(String invalidElement, ViolationReporting.Violations violations) {
+        return ValidationResult.invalid("Failed to verify power type cover constraint.")
+                .message("Reason: An element was found that does not occur in any power type set.")
+                .message("Element:")
+                .message("\t" + invalidElement)
+                .violatingElement(invalidElement)
+                .violations(violations)
+                .build();
     }
 
-    // Variables used for error printing
-    private boolean populationIsValid = true;
-    private String invalidElement;
+    /**
+     * The amount of sets that contain each element is kept up to date, an element should occur in at least one set
+     */
+    @Override
+    public IncrementalEvaluator createIncrementalEvaluator(Population population) {
+        return new MembershipCountEvaluator(this, population, VALID_MESSAGE, (element, violations) -> {
+            violations.add(Violation.element(element));
+            return invalid(element, violations);
+        }, powerType, 1, Integer.MAX_VALUE);
+    }
 
     /**
-     * Method for printing the result of the validation.
-     * If the validation was unsuccessful, it will print error information.
+     * Provides the object types of which the population can influence this constraint
+     * @return The power type and its element type
      */
     @Override
-    public void printResult() {
-        if (populationIsValid) {
-            System.out.println("Power type cover constraint was successfully verified.");
-        } else {
-            System.out.println("Failed to verify power type cover constraint.");
-            System.out.println("Reason: An element was found that does not occur in any power type set.");
-            System.out.println("Element:");
-            System.out.println("\t" + invalidElement);
-        }
+    public Set<ObjectType> getDependencies() {
+        return new HashSet<>(Arrays.asList(powerType, powerType.getElement()));
     }
 
     /**
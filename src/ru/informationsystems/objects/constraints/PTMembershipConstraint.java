@@ -1,20 +1,23 @@
 package ru.informationsystems.objects.constraints;
 
+import ru.informationsystems.objects.population.IdBitmap;
 import ru.informationsystems.objects.population.Population;
+import ru.informationsystems.objects.population.PopulationTable;
+import ru.informationsystems.objects.population.ValueDictionary;
 import ru.informationsystems.objects.types.FactType;
+import ru.informationsystems.objects.types.ObjectType;
 import ru.informationsystems.objects.types.PowerType;
 import ru.informationsystems.objects.types.Predicator;
 
-import java.util.Arrays;
-import java.util.List;
-import java.util.Map;
+import java.util.Collections;
+import java.util.Set;
 
 /**
  * This class represents a power type membership constraint.
  * A power type membership constraint is used to indicate that when an element is in a fact type,
  * it must also be in the power type set that belongs to this fact type.
  */
-public class PTMembershipConstraint implements Constraint {
+public class PTMembershipConstraint extends AbstractConstraint {
 
     // The power type of this constraint
     private PowerType powerType;
@@ -39,68 +42,88 @@ public class PTMembershipConstraint implements Constraint {
     }
 
     /**
-     * Validates the constraint against a given population.
-     * The result will be true if the population satisfies the constraint, and false otherwise.
+     * @return The power type of this constraint
+     */
+    public PowerType getPowerType() {
+        return powerType;
+    }
+
+    /**
+     * @return The fact type of this constraint
+     */
+    public FactType getFactType() {
+        return factType;
+    }
+
+    /**
+     * Checks the constraint against a given population.
+     * The result will be valid if the population satisfies the constraint, and contain the invalid element otherwise.
+     * Each element of a row that does not occur in the set of the row is a violation.
      *
-     * @param population The input population we want to validate
+     * @param context The validation context, containing the input population we want to validate
      * @return the result of the validation
      */
     @Override
-    public boolean validate(Population population) {
-        // We retrieve the population that belongs to the fact type
-        List<Map<Predicator, String>> factTypePopulations = population.getFactTypePopulations(factType);
+    protected ValidationResult check(ValidationContext context) {
+        Population population = context.getPopulation();
+        ValueDictionary dictionary = population.getDictionary();
+        // We retrieve the population that belongs to the fact type, as a table of dictionary ids
+        PopulationTable table = population.getFactTypeTable(factType);
+        int powerTypeColumn = table.getColumnIndex(powerTypePredicator);
 
         // We loop through all rows in the population
-        for (Map<Predicator, String> factTypePopulation : factTypePopulations) {
-            // We determine the value that the power type predicator in this fact type has
-            String powerTypeValue = factTypePopulation.entrySet().stream()
-                    .filter(e -> e.getKey().equals(powerTypePredicator))
-                    .map(Map.Entry::getValue)
-                    .findAny()
-                    .orElse("");
-            powerTypeValue = powerTypeValue.replaceAll("[{}]", "");
-            // We split that value into a list of elements that are in the power type set
-            List<String> powerTypeValues = Arrays.asList(powerTypeValue.split(","));
-
-            // We loop through all entries in the fact type population
-            for (Map.Entry<Predicator, String> entry : factTypePopulation.entrySet()) {
-                if (!entry.getKey().equals(powerTypePredicator)) {
-                    // We check if the power type set contains the entry value.
-                    // If this is not the case, the constraint was violated
-                    if (!powerTypeValue.contains(entry.getValue())) {
-                        populationIsValid = false;
-                        invalidElement = entry.getValue();
-                        powerTypeSet = powerTypeValues;
-                        return false;
+        ViolationReporting.Violations violations = context.violations(this);
+        int invalidRow = -1;
+        int invalidId = ValueDictionary.NO_VALUE;
+        boolean stopped = false;
+        int scanned = 0;
+        while (scanned < table.size() && !stopped) {
+            int row = scanned++;
+            // We retrieve the power type set of this row, which was parsed when the population was loaded
+            IdBitmap powerTypeSet = dictionary.getSet(table.getId(row, powerTypeColumn));
+
+            // We loop through all other values in the row
+            for (int column = 0; column < table.getPredicators().size() && !stopped; column++) {
+                int id = table.getId(row, column);
+                if (column == powerTypeColumn || id == ValueDictionary.NO_VALUE) continue;
+
+                // We check if the power type set contains the value.
+                // If this is not the case, the constraint was violated
+                if (powerTypeSet == null || !powerTypeSet.contains(id)) {
+                    if (invalidRow < 0) {
+                        invalidRow = row;
+                        invalidId = id;
                     }
+                    stopped = !violations.add(Violation.element(table.getRow(row), dictionary.get(id)));
                 }
             }
         }
+        context.addRowsScanned(scanned);
 
-        return true;
-    }
+        if (invalidRow >= 0) {
+            String powerTypeValue = dictionary.get(table.getId(invalidRow, powerTypeColumn));
+            return ValidationResult.invalid("Failed to verify power type membership constraint.")
+                    .message("Reason: An element was found in a fact type population, that did not occur in the according power type set.")
+                    .message("Element:")
+                    .message("\t" + dictionary.get(invalidId))
+                    .message("Power type set:")
+                    .message("\t" + (powerTypeValue == null ? "{}" : powerTypeValue))
+                    .violatingRow(table.getRow(invalidRow))
+                    .violatingElement(dictionary.get(invalidId))
+                    .violations(violations)
+                    .build();
+        }
 
-    // Variables used for error printing
-    private boolean populationIsValid = true;
-    private String invalidElement;
-    private List<String> powerTypeSet;
+        return ValidationResult.valid("Power type membership constraint was successfully verified.");
+    }
 
     /**
-     * Method for printing the result of the validation.
-     * If the validation was unsuccessful, it will print error information.
+     * Provides the object types of which the population can influence this constraint
+     * @return The fact type of this constraint
      */
     @Override
-    public void printResult() {
-        if (populationIsValid) {
-            System.out.println("Power type membership constraint was successfully verified.");
-        } else {
-            System.out.println("Failed to verify power type membership constraint.");
-            System.out.println("Reason: An element was found in a fact type population, that did not occur in the according power type set.");
-            System.out.println("Element:");
-            System.out.println("\t" + invalidElement);
-            System.out.println("Power type set:");
-            System.out.println("\t{" + String.join(", ", powerTypeSet) + "}");
-        }
+    public Set<ObjectType> getDependencies() {
+        return Collections.singleton(factType);
     }
 
     /**
@@ -1,9 +1,11 @@
 package ru.informationsystems.objects.constraints;
 
 import ru.informationsystems.objects.population.Population;
+import ru.informationsystems.objects.population.PowerTypeTable;
+import ru.informationsystems.objects.types.ObjectType;
 import ru.informationsystems.objects.types.PowerType;
 
-import java.util.List;
+import java.util.Collections;
 import java.util.Set;
 
 /**
@@ -11,7 +13,7 @@ import java.util.Set;
  * A power type cardinality constraint is used to indicate that each set in a power type's population must
  * have at least {minimum} and at most {maximum} elements.
  */
-public class PTSetCardinalityConstraint implements Constraint {
+public class PTSetCardinalityConstraint extends AbstractConstraint {
 
     // The power type of this constraint
     private PowerType powerType;
@@ -27,52 +29,77 @@ public class PTSetCardinalityConstraint implements Constraint {
     }
 
     /**
-     * Validates the constraint against a given population.
-     * The result will be true if the population satisfies the constraint, and false otherwise.
+     * @return The power type of this constraint
+     */
+    public PowerType getPowerType() {
+        return powerType;
+    }
+
+    /**
+     * @return The minimum number of elements in a set
+     */
+    public int getMinimum() {
+        return minimum;
+    }
+
+    /**
+     * @return The maximum number of elements in a set
+     */
+    public int getMaximum() {
+        return maximum;
+    }
+
+    /**
+     * Checks the constraint against a given population.
+     * The result will be valid if the population satisfies the constraint, and contain the invalid set otherwise.
+     * Each set with a wrong cardinality is a violation.
      *
-     * @param population The input population we want to validate
+     * @param context The validation context, containing the input population we want to validate
      * @return the result of the validation
      */
     @Override
-    public boolean validate(Population population) {
-        // We retrieve the population that belongs to this power type
-        List<Set<String>> powerTypePopulation = population.getPowerTypePopulation(powerType);
+    protected ValidationResult check(ValidationContext context) {
+        Population population = context.getPopulation();
+        // We retrieve the population that belongs to this power type, as bitmaps of dictionary ids
+        PowerTypeTable powerTypePopulation = population.getPowerTypeTable(powerType);
 
-        // We use streams, and we check how many times an element occurs in a set.
-        // If it is less then the minimum amount, or more than the maximum amount, the population is invalid.
-        // Otherwise, it is valid.
-        return powerTypePopulation.stream()
-                .noneMatch(set -> {
-                    int elements = set.size();
-                    if (elements < minimum || elements > maximum) {
-                        invalidElement = set;
-                        populationIsValid = false;
-                        return true;
-                    } else return false;
-                });
-    }
+        // We look for a set with less than the minimum amount, or more than the maximum amount of elements.
+        // The cardinality of a bitmap is the sum of the cardinalities of its containers, so no set has to be decoded.
+        // If there is no such set, the population is valid.
+        ViolationReporting.Violations violations = context.violations(this);
+        int invalidIndex = -1;
+        int scanned = 0;
+        while (scanned < powerTypePopulation.size()) {
+            int index = scanned++;
+            int cardinality = powerTypePopulation.getSet(index).cardinality();
+            if (cardinality >= minimum && cardinality <= maximum) continue;
 
-    // Variables used for error printing
-    private boolean populationIsValid = true;
-    private Set<String> invalidElement;
+            if (invalidIndex < 0) invalidIndex = index;
+            if (!violations.add(Violation.element(powerTypePopulation.format(index)))) break;
+        }
+        context.addRowsScanned(scanned);
+
+        if (invalidIndex < 0) return ValidationResult.valid("Power type cardinality constraint was successfully verified.");
+        String invalidElement = powerTypePopulation.format(invalidIndex);
+        return ValidationResult.invalid("Failed to verify power type cardinality constraint.")
+                .message("Reason: A set was found with a wrong cardinality.")
+                .message("Element:")
+                .message("\t" + invalidElement)
+                .message("Cardinalities:")
+                .message("\tExpected: " + minimum + " <= c <= " + maximum)
+                .message("\tActual: " + powerTypePopulation.getSet(invalidIndex).cardinality())
+                .violatingElement(invalidElement)
+                .violations(violations)
+                .build();
+    }
 
     /**
-     * Method for printing the result of the validation.
-     * If the validation was unsuccessful, it will print error information.
+     * Provides the object types of which the population can influence this constraint
+     * @return The power type of this constraint
      */
     @Override
-    public void printResult() {
-        if (populationIsValid) {
-            System.out.println("Power type cardinality constraint was successfully verified.");
-        } else {
-            System.out.println("Failed to verify power type cardinality constraint.");
-            System.out.println("Reason: A set was found with a wrong cardinality.");
-            System.out.println("Element:");
-            System.out.println("\t{" + String.join(", ", invalidElement) + "}");
-            System.out.println("Cardinalities:");
-            System.out.println("\tExpected: " + minimum + " <= c <= " + maximum);
-            System.out.println("\tActual: " + invalidElement.size());
-        }
+    public Set<ObjectType> getDependencies() {
+        return Collections.singleton(powerType);
     }
 
     /**
@@ -0,0 +1,68 @@
+package ru.informationsystems.objects.constraints;
+
+import ru.informationsystems.objects.population.RowCursor;
+import ru.informationsystems.objects.types.Predicator;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The evaluation of a constraint within a validation plan.
+ * Instead of reading the collapses it needs itself, the evaluation declares them as scans. The plan reads each collapse
+ * once per stage for all constraints of the run, and passes its rows to the consumers of the scans. After all stages,
+ * the evaluation creates the result.
+ *
+ * An evaluation keeps the state of a single run, so it is created for each run.
+ */
+public interface PlannedEvaluation {
+
+    /**
+     * @return The scans of this evaluation, which is empty if the constraint does not read any collapse
+     */
+    List<Scan> getScans();
+
+    /**
+     * Creates the result of the constraint, after the scans of all stages were executed
+     * @return The result of the evaluation
+     */
+    ValidationResult finish();
+
+    /**
+     * Executes the scans of a single evaluation on its own, and creates its result. The stages are executed in order,
+     * and the scans of a stage that read the same collapse share a cursor over it.
+     * @param evaluation The evaluation
+     * @param context The context in which the evaluation was created, which reads the collapses
+     * @return The result of the evaluation
+     */
+    static ValidationResult execute(PlannedEvaluation evaluation, ValidationContext context) {
+        List<Scan> scans = evaluation.getScans();
+        int stages = scans.stream().mapToInt(Scan::getStage).max().orElse(-1) + 1;
+        for (int stage = 0; stage < stages; stage++) {
+            // We group the scans of the stage by their collapse, in the order of the first scan of each collapse
+            Map<List<Predicator>, List<Scan>> collapses = new LinkedHashMap<>();
+            for (Scan scan : scans) {
+                if (scan.getStage() != stage) continue;
+                collapses.computeIfAbsent(new ArrayList<>(scan.getPredicators()), predicators -> new ArrayList<>()).add(scan);
+            }
+
+            for (List<Scan> collapse : collapses.values()) {
+                RowCursor rows = context.scan(collapse.get(0).getPredicators(), collapse.get(0).getAssertionHandler());
+                List<ScanConsumer> consumers = new ArrayList<>();
+                for (Scan scan : collapse) {
+                    if (scan.getConsumer().start(rows)) consumers.add(scan.getConsumer());
+                }
+
+                // A consumer that needs no more rows is removed, and the collapse is read until none is left
+                for (int row = 0; !consumers.isEmpty() && rows.next(); row++) {
+                    for (int i = 0; i < consumers.size(); ) {
+                        if (consumers.get(i).next(rows, row)) i++;
+                        else consumers.remove(i);
+                    }
+                }
+            }
+        }
+        return evaluation.finish();
+    }
+}
@@ -0,0 +1,88 @@
+package ru.informationsystems.objects.constraints;
+
+import ru.informationsystems.objects.population.Population;
+import ru.informationsystems.objects.population.PopulationTable;
+import ru.informationsystems.objects.types.*;
+
+import java.util.Set;
+
+/**
+ * An evaluator that keeps no state of its own: it remembers the last result, and checks the constraint again once
+ * the population of one of its dependencies has changed.
+ */
+public class RecomputingEvaluator implements IncrementalEvaluator {
+
+    // The constraint we evaluate
+    private Constraint constraint;
+    // The population we evaluate against
+    private Population population;
+    // The object types that the constraint depends on
+    private Set<ObjectType> dependencies;
+    // The last result, or null if a dependency changed since then
+    private ValidationResult result;
+
+    public RecomputingEvaluator(Constraint constraint, Population population) {
+        this.constraint = constraint;
+        this.population = population;
+        this.dependencies = constraint.getDependencies();
+    }
+
+    @Override
+    public ValidationResult evaluate() {
+        if (result == null) result = constraint.evaluate(population);
+        return result;
+    }
+
+    /**
+     * Forgets the last result if the changed object type is a dependency
+     * @param objectType The changed object type
+     */
+    private void changed(ObjectType objectType) {
+        if (dependencies.contains(objectType)) result = null;
+    }
+
+    @Override
+    public void entityAdded(EntityType entityType, String value) {
+        changed(entityType);
+    }
+
+    @Override
+    public void entityRemoved(EntityType entityType, String value) {
+        changed(entityType);
+    }
+
+    @Override
+    public void labelAdded(LabelType labelType, String value) {
+        changed(labelType);
+    }
+
+    @Override
+    public void labelRemoved(LabelType labelType, String value) {
+        changed(labelType);
+    }
+
+    @Override
+    public void factInserted(FactType factType, PopulationTable table, int row) {
+        changed(factType);
+    }
+
+    @Override
+    public void factDeleted(FactType factType, PopulationTable table, int row) {
+        changed(factType);
+    }
+
+    @Override
+    public void powerTypeSetAdded(PowerType powerType, Set<String> set) {
+        changed(powerType);
+    }
+
+    @Override
+    public void powerTypeSetRemoved(PowerType powerType, Set<String> set) {
+        changed(powerType);
+    }
+
+    @Override
+    public void populationReplaced(ObjectType objectType) {
+        changed(objectType);
+    }
+}
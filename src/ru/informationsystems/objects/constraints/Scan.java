@@ -0,0 +1,71 @@
+package ru.informationsystems.objects.constraints;
+
+import ru.informationsystems.objects.types.Predicator;
+import ru.informationsystems.util.AssertionHandler;
+
+import java.util.Collection;
+
+/**
+ * This class represents a scan of the collapse of a population over a collection of predicators, as part of the
+ * evaluation of a constraint in a validation plan.
+ *
+ * Scans are executed in stages, so a scan can use the results of the scans of earlier stages, such as a hash table that
+ * it probes. Within a stage, the plan reads each collapse once, and passes each of its rows to all scans of the collapse.
+ */
+public class Scan {
+
+    // The stage in which the collapse is read
+    private int stage;
+    // The predicators of the collapse
+    private Collection<Predicator> predicators;
+    // The assertion handler we can use for collapsing the population
+    private AssertionHandler ah;
+    // What the consumer computes from the rows
+    private String operation;
+    // The consumer of the rows
+    private ScanConsumer consumer;
+
+    public Scan(int stage, Collection<Predicator> predicators, AssertionHandler assertionHandler, String operation, ScanConsumer consumer) {
+        if (stage < 0) throw new IllegalArgumentException("The stage of a scan cannot be negative.");
+        this.stage = stage;
+        this.predicators = predicators;
+        this.ah = assertionHandler;
+        this.operation = operation;
+        this.consumer = consumer;
+    }
+
+    /**
+     * @return The stage in which the collapse is read
+     */
+    public int getStage() {
+        return stage;
+    }
+
+    /**
+     * @return The predicators of the collapse
+     */
+    public Collection<Predicator> getPredicators() {
+        return predicators;
+    }
+
+    /**
+     * @return The assertion handler we can use for collapsing the population
+     */
+    public AssertionHandler getAssertionHandler() {
+        return ah;
+    }
+
+    /**
+     * @return What the consumer computes from the rows, for example "hash aggregation of the occurrences of each key"
+     */
+    public String getOperation() {
+        return operation;
+    }
+
+    /**
+     * @return The consumer of the rows
+     */
+    public ScanConsumer getConsumer() {
+        return consumer;
+    }
+}
@@ -0,0 +1,28 @@
+package ru.informationsystems.objects.constraints;
+
+import ru.informationsystems.objects.population.RowView;
+
+/**
+ * An operator that consumes the rows of a scan in a validation plan, such as a hash aggregation or a set probe.
+ * The rows of a scan can be passed to several consumers, so a consumer only gets a view of the current row, which it
+ * cannot move to another row.
+ */
+public interface ScanConsumer {
+
+    /**
+     * Prepares the consumer for the rows of the scan, for example by determining the columns of its predicators
+     * @param rows The view of the rows, which is not positioned at any row yet
+     * @return Whether the consumer needs the rows of the scan
+     */
+    default boolean start(RowView rows) {
+        return true;
+    }
+
+    /**
+     * Reads the current row of the scan
+     * @param rows The view, which is positioned at the row
+     * @param row The index of the row
+     * @return Whether the consumer needs the rows that follow
+     */
+    boolean next(RowView rows, int row);
+}
@@ -1,20 +1,26 @@
 package ru.informationsystems.objects.constraints;
 
 import ru.informationsystems.objects.population.Population;
+import ru.informationsystems.objects.population.RowView;
+import ru.informationsystems.objects.population.KeyTable;
+import ru.informationsystems.objects.types.FactType;
+import ru.informationsystems.objects.types.ObjectType;
 import ru.informationsystems.objects.types.Predicator;
 import ru.informationsystems.util.AssertionHandler;
 import ru.informationsystems.util.ConstraintBuilder;
 import ru.informationsystems.util.SchemaUtils;
 
-import java.util.List;
-import java.util.Map;
+import java.util.*;
 import java.util.stream.Collectors;
 
 /**
  * This class represents a set constraint. A set constraint determines if a list of predicators
  * should be equal, be a subset of, or be an exclusion of another list of predicators.
  */
-public class SetConstraint implements Constraint {
+public class SetConstraint extends AbstractConstraint {
+
+    // The message of a successful validation
+    private static final String VALID_MESSAGE = "Set constraint was successfully verified.";
 
     // The type of set constraint that is used (Equal, Subset, Exclusion)
     private ConstraintBuilder.SetConstr constraintType;
@@ -30,114 +36,244 @@ public class SetConstraint implements Constraint {
     }
 
     /**
-     * Validates the constraint against a given population.
-     * The result will be true if the population satisfies the constraint, and false otherwise.
+     * @return The type of set constraint
+     */
+    public ConstraintBuilder.SetConstr getConstraintType() {
+        return constraintType;
+    }
+
+    /**
+     * @return The map that maps each predicator of the first population to a predicator of the second population
+     */
+    public Map<Predicator, Predicator> getPredicatorMap() {
+        return predicatorMap;
+    }
+
+    /**
+     * Checks the constraint against a given population.
+     * The result will be valid if the population satisfies the constraint, and contain the invalid element otherwise.
+     * Each row that is invalid is a violation.
      *
-     * @param population The input population we want to validate
+     * @param context The validation context, containing the input population we want to validate
      * @return the result of the validation
      */
     @Override
-    public boolean validate(Population population) {
-        // We retrieve the population of the first set of predicators
-        List<Map<Predicator, String>> population1 = SchemaUtils.collapse(population, predicatorMap.keySet(), ah);
-        // We retrieve the population of the second set of predicators
-        List<Map<Predicator, String>> population2 = SchemaUtils.collapse(population, predicatorMap.values(), ah);
-
-        // We make a case distinction on the different constraint types
-        switch (constraintType) {
-            default:
-            case EQUAL:
-                // If they are equal, we check that every population in population1 occurs in population2...
-                reason = "An element was found that did not occur in the other population.";
-                for (Map<Predicator, String> pop1 : population1) {
-                    if (!existsAnEqual(pop1, population2, true)) {
-                        invalidElement = pop1;
-                        populationIsValid = false;
-                        return false;
-                    }
-                }
-                // ...and the other way around
-                for (Map<Predicator, String> pop2 : population2) {
-                    if (!existsAnEqual(pop2, population1, false)) {
-                        invalidElement = pop2;
-                        populationIsValid = false;
-                        return false;
-                    }
+    protected ValidationResult check(ValidationContext context) {
+        return PlannedEvaluation.execute(createPlannedEvaluation(context), context);
+    }
+
+    /**
+     * The keys of population2 are built in the first stage, and probed with population1 in the second stage. An
+     * equality constraint builds the keys of population1 during the same scan, and probes them with population2 in a
+     * third stage. The plan shares each of these scans with the other constraints that read the same collapse.
+     */
+    @Override
+    public PlannedEvaluation createPlannedEvaluation(ValidationContext context) {
+        return new Evaluation(context);
+    }
+
+    /**
+     * The evaluation of this constraint.
+     * The keys of population2 are always read completely, population1 is only read up to its first invalid row,
+     * unless all violations are collected.
+     */
+    private class Evaluation implements PlannedEvaluation {
+
+        // The validation context
+        private ValidationContext context;
+        // The violations of the check
+        private ViolationReporting.Violations violations;
+        // The columns of the matched predicators in population1, in matching order
+        private int[] keyColumns1;
+        // The columns of the matched predicators in population2, in matching order
+        private int[] keyColumns2;
+        // The keys of population1, which are only built for an equality constraint
+        private KeyTable keys1;
+        // The keys of population2
+        private KeyTable keys2;
+        // The probe of the keys of population2 with population1
+        private Probe probe1;
+        // The probe of the keys of population1 with population2, which is only done for an equality constraint
+        private Probe probe2;
+
+        private Evaluation(ValidationContext context) {
+            this.context = context;
+            this.violations = context.violations(SetConstraint.this);
+            // If they are an exclusion, we check that no population in population1 occurs in population2.
+            // The other way around does not have to be checked: an element of population2 occurring in population1
+            // means that this element of population1 occurs in population2 as well.
+            this.probe1 = new Probe(constraintType == ConstraintBuilder.SetConstr.EXCLUSION, true, "keys of the second population");
+            // If they are equal, we also check that every population in population2 occurs in population1
+            this.probe2 = new Probe(false, false, "keys of the first population");
+        }
+
+        /**
+         * @return Whether the keys of population1 are needed, which is the case for an equality constraint if
+         * population1 has no invalid row, or if all violations are collected
+         */
+        private boolean needsKeys1() {
+            return constraintType == ConstraintBuilder.SetConstr.EQUAL && (probe1.firstInvalidRow == null || violations.collectsAll());
+        }
+
+        @Override
+        public List<Scan> getScans() {
+            List<Scan> scans = new ArrayList<>();
+            scans.add(new Scan(0, predicatorMap.values(), ah, "hash build of the keys of the second population", new ScanConsumer() {
+                @Override
+                public boolean start(RowView rows) {
+                    determineColumns(rows);
+                    return true;
                 }
-                return true;
-            case SUBSET:
-                // If they are a subset, we check that every population in population1 occurs in population2
-                reason = "An element was found that did not occur in the other population.";
-                for (Map<Predicator, String> pop1 : population1) {
-                    if (!existsAnEqual(pop1, population2, true)) {
-                        invalidElement = pop1;
-                        populationIsValid = false;
-                        return false;
-                    }
+
+                @Override
+                public boolean next(RowView rows, int row) {
+                    keys2.add(rows, keyColumns2);
+                    return true;
                 }
+            }));
+            scans.add(new Scan(1, predicatorMap.keySet(), ah, (probe1.exclusion ? "anti-join" : "semi-join") + " probe of the keys of the second population", probe1));
+            if (constraintType != ConstraintBuilder.SetConstr.EQUAL) return scans;
+
+            // The keys of population1 are built while it is probed, until it turns out they are not needed
+            scans.add(new Scan(1, predicatorMap.keySet(), ah, "hash build of the keys of the first population", (rows, row) -> {
+                if (!needsKeys1()) return false;
+                keys1.add(rows, keyColumns1);
                 return true;
-            case EXCLUSION:
-                // If they are an exclusion, we check that every population in population1 does not occur in population2...
-                reason = "An element was found that occurs in the other population.";
-                for (Map<Predicator, String> pop1 : population1) {
-                    if (existsAnEqual(pop1, population2, true)) {
-                        invalidElement = pop1;
-                        populationIsValid = false;
-                        return false;
-                    }
-                }
-                // ...and the other way around
-                for (Map<Predicator, String> pop2 : population2) {
-                    if (existsAnEqual(pop2, population1, false)) {
-                        invalidElement = pop2;
-                        populationIsValid = false;
-                        return false;
-                    }
+            }));
+            scans.add(new Scan(2, predicatorMap.values(), ah, "semi-join probe of the keys of the first population", probe2));
+            return scans;
+        }
+
+        /**
+         * We determine, for each matching, the column in both populations. Population1 is only read in a later stage,
+         * so its columns are determined from its predicators, without collapsing it.
+         * Matchings of which a predicator does not occur in its population are not compared.
+         * @param population2 The rows of population2
+         */
+        private void determineColumns(RowView population2) {
+            List<Predicator> population1 = SchemaUtils.collapsePredicators(context.getPopulation(), predicatorMap.keySet(), ah);
+            List<Integer> columns1 = new ArrayList<>();
+            List<Integer> columns2 = new ArrayList<>();
+            for (Map.Entry<Predicator, Predicator> entry : predicatorMap.entrySet()) {
+                int column1 = population1.indexOf(entry.getKey());
+                int column2 = population2.getColumnIndex(entry.getValue());
+                if (column1 >= 0 && column2 >= 0) {
+                    columns1.add(column1);
+                    columns2.add(column2);
                 }
+            }
+            keyColumns1 = columns1.stream().mapToInt(Integer::intValue).toArray();
+            keyColumns2 = columns2.stream().mapToInt(Integer::intValue).toArray();
+            keys1 = new KeyTable(keyColumns1.length);
+            keys2 = new KeyTable(keyColumns2.length);
+        }
+
+        @Override
+        public ValidationResult finish() {
+            Map<Predicator, String> invalidElement = probe1.firstInvalidRow != null ? probe1.firstInvalidRow : probe2.firstInvalidRow;
+            return result(invalidElement, violations);
+        }
+
+        /**
+         * A probe of a set of keys with every row of a population, which passes each invalid row as a violation until
+         * it is told to stop.
+         * With an exclusion probe (anti-join), a row is invalid if its key occurs in the set.
+         * Otherwise (semi-join), a row is invalid if its key does not occur in the set.
+         */
+        private class Probe implements ScanConsumer {
+
+            // The keys of the other population
+            private KeyTable keys;
+            // Whether this is an exclusion probe
+            private boolean exclusion;
+            // Whether this probe reads population1, otherwise it reads population2
+            private boolean ofPopulation1;
+            // What the keys are, for reporting the size of the set
+            private String purpose;
+            // The columns of the matched predicators, in matching order
+            private int[] keyColumns;
+            // The first invalid row, or null if all rows were valid
+            private Map<Predicator, String> firstInvalidRow;
+
+            private Probe(boolean exclusion, boolean ofPopulation1, String purpose) {
+                this.exclusion = exclusion;
+                this.ofPopulation1 = ofPopulation1;
+                this.purpose = purpose;
+            }
+
+            @Override
+            public boolean start(RowView rows) {
+                if (!ofPopulation1 && !needsKeys1()) return false;
+                keys = ofPopulation1 ? keys2 : keys1;
+                keyColumns = ofPopulation1 ? keyColumns1 : keyColumns2;
+                context.hashTableBuilt(purpose, keys.size());
                 return true;
+            }
+
+            @Override
+            public boolean next(RowView rows, int row) {
+                if (keys.find(rows, keyColumns) >= 0 != exclusion) return true;
+
+                Map<Predicator, String> invalidRow = rows.getRow();
+                if (firstInvalidRow == null) firstInvalidRow = invalidRow;
+                return violations.add(Violation.row(invalidRow));
+            }
         }
     }
 
     /**
-     * This method determines if there is an instance of pop1 in population2.
-     * It uses the predicatorMap to determine this. The 'right' boolean determines the direction that the
-     * predicatorMap is checked (left to right, or right to left).
-     *
-     * @param pop1 The row we want to check
-     * @param population2 The population that the row could be in
-     * @param right Whether we check left to right or right to left
-     * @return whether pop1 occurred in population2
+     * Creates the result of the validation
+     * @param invalidElement The invalid row, or null if there was none
+     * @param violations The violations of the check
+     * @return The result
      */
-    private boolean existsAnEqual(Map<Predicator, String> pop1, List<Map<Predicator, String>> population2, boolean right) {
-        // We loop through all subpopulations
-        for (Map<Predicator, String> pop2 : population2) {
-            // We check if they match using this static util method
-            if (SchemaUtils.fullRowsMatch(pop1, pop2, predicatorMap, right)) {
-                return true;
-            }
-        }
-        return false;
+    private ValidationResult result(Map<Predicator, String> invalidElement, ViolationReporting.Violations violations) {
+        if (invalidElement == null) return ValidationResult.valid(VALID_MESSAGE);
+        String reason = constraintType == ConstraintBuilder.SetConstr.EXCLUSION
+                ? "An element was found that occurs in the other population."
+                : "An element was found that did not occur in the other population.";
+        return ValidationResult.invalid("Failed to verify set constraint.")
+                .message("Reason: " + reason)
+                .message("Element:")
+                .message("\t{" + invalidElement.entrySet().stream().map(e -> e.getKey().getName() + " > " + e.getValue()).collect(Collectors.joining(", ")) + "}")
+                .violatingRow(invalidElement)
+                .violations(violations)
+                .build();
+    }
+
+    /**
+     * If both sides of the constraint belong to a single fact type, the amount of witnesses of each combination of
+     * values on both sides is kept up to date. Otherwise, the constraint is checked again after each change.
+     */
+    @Override
+    public IncrementalEvaluator createIncrementalEvaluator(Population population) {
+        Optional<FactType> factType1 = SchemaUtils.getSingleFactType(predicatorMap.keySet());
+        Optional<FactType> factType2 = SchemaUtils.getSingleFactType(predicatorMap.values());
+        if (!factType1.isPresent() || !factType2.isPresent()) return super.createIncrementalEvaluator(population);
+        return new SetWitnessEvaluator(this, population, VALID_MESSAGE, (row, violations) -> {
+            violations.add(Violation.row(row));
+            return result(row, violations);
+        }, constraintType, predicatorMap, factType1.get(), factType2.get());
     }
 
-    // Variables used for error printing
-    private boolean populationIsValid = true;
-    private String reason;
-    private Map<Predicator, String> invalidElement;
+    /**
+     * The collapses of both sides are read and hashed, an equality constraint does so in both directions
+     */
+    @Override
+    public long estimateCost(Population population) {
+        long cost = estimateCollapseCost(population, predicatorMap.keySet()) + estimateCollapseCost(population, predicatorMap.values());
+        return constraintType == ConstraintBuilder.SetConstr.EQUAL ? 2 * cost : cost;
+    }
 
     /**
-     * Method for printing the result of the validation.
-     * If the validation was unsuccessful, it will print error information.
+     * Provides the object types of which the population can influence this constraint
+     * @return The fact types of both sides of this constraint
      */
     @Override
-    public void printResult() {
-        if (populationIsValid) {
-            System.out.println("Set constraint was successfully verified.");
-        } else {
-            System.out.println("Failed to verify set constraint.");
-            System.out.println("Reason: " + reason);
-            System.out.println("Element:");
-            System.out.println("\t{" + invalidElement.entrySet().stream().map(e -> e.getKey().getName() + " > " + e.getValue()).collect(Collectors.joining(", ")) + "}");
-        }
+    public Set<ObjectType> getDependencies() {
+        Set<ObjectType> dependencies = SchemaUtils.getFactTypes(predicatorMap.keySet());
+        dependencies.addAll(SchemaUtils.getFactTypes(predicatorMap.values()));
+        return dependencies;
     }
 
     /**
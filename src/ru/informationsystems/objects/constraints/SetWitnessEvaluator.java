@@ -0,0 +1,177 @@
+package ru.informationsystems.objects.constraints;
+
+import ru.informationsystems.objects.population.KeyTable;
+import ru.informationsystems.objects.population.Population;
+import ru.informationsystems.objects.population.PopulationTable;
+import ru.informationsystems.objects.population.PositionIndex;
+import ru.informationsystems.objects.types.FactType;
+import ru.informationsystems.objects.types.Predicator;
+import ru.informationsystems.util.ConstraintBuilder;
+
+import java.util.*;
+
+/**
+ * Evaluator for set constraints of which both sides are a single fact type.
+ * The summary contains, for each combination of values of the matched predicators, the rows on each side that have it
+ * (the witnesses), and the combinations that occur only on the first side, only on the second side, or on both sides.
+ */
+public class SetWitnessEvaluator extends AbstractIncrementalEvaluator {
+
+    // The type of set constraint
+    private ConstraintBuilder.SetConstr constraintType;
+    // The matchings of the constraint
+    private Map<Predicator, Predicator> predicatorMap;
+    // The fact type of the first side
+    private FactType factType1;
+    // The fact type of the second side
+    private FactType factType2;
+    // Describes a row of which the combination violates the constraint
+    private InvalidRow invalidRow;
+
+    // The columns of the matched predicators in the table of each side
+    private int[] columns1;
+    private int[] columns2;
+    // The combinations that occur on either side
+    private KeyTable keys;
+    // The combination of each row of the table of each side
+    private PositionIndex rows1;
+    private PositionIndex rows2;
+    // The combinations that occur only on the first side, only on the second side, and on both sides
+    private Set<Integer> onlyFirst = new LinkedHashSet<>();
+    private Set<Integer> onlySecond = new LinkedHashSet<>();
+    private Set<Integer> both = new LinkedHashSet<>();
+
+    public SetWitnessEvaluator(Constraint constraint, Population population, String validMessage, InvalidRow invalidRow,
+                               ConstraintBuilder.SetConstr constraintType, Map<Predicator, Predicator> predicatorMap,
+                               FactType factType1, FactType factType2) {
+        super(constraint, population, validMessage);
+        this.invalidRow = invalidRow;
+        this.constraintType = constraintType;
+        this.predicatorMap = predicatorMap;
+        this.factType1 = factType1;
+        this.factType2 = factType2;
+    }
+
+    @Override
+    protected boolean rebuild(Population population) {
+        PopulationTable table1 = population.getFactTypeTable(factType1);
+        PopulationTable table2 = population.getFactTypeTable(factType2);
+        if (table1 == null || table2 == null) return false;
+
+        // Matchings of which a predicator is not a column of its table are not compared
+        List<Integer> matched1 = new ArrayList<>();
+        List<Integer> matched2 = new ArrayList<>();
+        for (Map.Entry<Predicator, Predicator> entry : predicatorMap.entrySet()) {
+            int column1 = table1.getColumnIndex(entry.getKey());
+            int column2 = table2.getColumnIndex(entry.getValue());
+            if (column1 >= 0 && column2 >= 0) {
+                matched1.add(column1);
+                matched2.add(column2);
+            }
+        }
+        columns1 = matched1.stream().mapToInt(Integer::intValue).toArray();
+        columns2 = matched2.stream().mapToInt(Integer::intValue).toArray();
+
+        keys = new KeyTable(columns1.length);
+        rows1 = new PositionIndex();
+        rows2 = new PositionIndex();
+        onlyFirst.clear();
+        onlySecond.clear();
+        both.clear();
+        for (int row = 0; row < table1.size(); row++) update(insert(rows1, table1, row, columns1));
+        for (int row = 0; row < table2.size(); row++) update(insert(rows2, table2, row, columns2));
+        return true;
+    }
+
+    @Override
+    protected boolean isSatisfied() {
+        switch (constraintType) {
+            default:
+            case EQUAL:
+                return onlyFirst.isEmpty() && onlySecond.isEmpty();
+            case SUBSET:
+                return onlyFirst.isEmpty();
+            case EXCLUSION:
+                return both.isEmpty();
+        }
+    }
+
+    @Override
+    protected ValidationResult describeViolation(Population population, ViolationReporting.Violations violations) {
+        // As in the check, a row of the first side is described if it violates the constraint
+        if (constraintType == ConstraintBuilder.SetConstr.EXCLUSION) return describe(population, factType1, rows1, both, violations);
+        if (!onlyFirst.isEmpty()) return describe(population, factType1, rows1, onlyFirst, violations);
+        return describe(population, factType2, rows2, onlySecond, violations);
+    }
+
+    /**
+     * Describes a row of a side of which the combination violates the constraint
+     */
+    private ValidationResult describe(Population population, FactType factType, PositionIndex rows, Set<Integer> invalidKeys,
+                                      ViolationReporting.Violations violations) {
+        int row = rows.first(invalidKeys.iterator().next());
+        return invalidRow.describe(population.getFactTypeTable(factType).getRow(row), violations);
+    }
+
+    @Override
+    public void factInserted(FactType factType, PopulationTable table, int row) {
+        if (factType != factType1 && factType != factType2) return;
+        if (isTracking()) {
+            if (factType == factType1) update(insert(rows1, table, row, columns1));
+            if (factType == factType2) update(insert(rows2, table, row, columns2));
+        }
+        changed();
+    }
+
+    @Override
+    public void factDeleted(FactType factType, PopulationTable table, int row) {
+        if (factType != factType1 && factType != factType2) return;
+        if (isTracking()) {
+            // The indexes move the last row in the same way as the table
+            if (factType == factType1) update(rows1.remove(row));
+            if (factType == factType2) update(rows2.remove(row));
+        }
+        changed();
+    }
+
+    /**
+     * Adds a row of a table to the index of its side
+     * @return The combination of the row
+     */
+    private int insert(PositionIndex rows, PopulationTable table, int row, int[] columns) {
+        int key = keys.add(table, row, columns);
+        rows.add(key);
+        return key;
+    }
+
+    /**
+     * Determines again on which sides a combination occurs, and forgets it if it does not occur anymore
+     * @param key The combination
+     */
+    private void update(int key) {
+        boolean first = rows1.count(key) > 0;
+        boolean second = rows2.count(key) > 0;
+        update(onlyFirst, key, first && !second);
+        update(onlySecond, key, second && !first);
+        update(both, key, first && second);
+        if (!first && !second) keys.remove(key);
+    }
+
+    private static void update(Set<Integer> keys, int key, boolean contains) {
+        if (contains) keys.add(key);
+        else keys.remove(key);
+    }
+
+    /**
+     * Describes a row of which the combination violates the constraint as the result of the constraint
+     */
+    public interface InvalidRow {
+
+        /**
+         * @param row The row, of the first side unless only rows of the second side violate the constraint
+         * @param violations The violations of the result, to which the described violation should be added
+         * @return The result
+         */
+        ValidationResult describe(Map<Predicator, String> row, ViolationReporting.Violations violations);
+    }
+}
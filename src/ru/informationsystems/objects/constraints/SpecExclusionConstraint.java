@@ -1,6 +1,8 @@
 package ru.informationsystems.objects.constraints;
 
+import ru.informationsystems.objects.population.IdColumn;
 import ru.informationsystems.objects.population.Population;
+import ru.informationsystems.objects.population.ValueDictionary;
 import ru.informationsystems.objects.types.EntityType;
 import ru.informationsystems.objects.types.ObjectType;
 
@@ -12,7 +14,10 @@ import java.util.stream.Collectors;
  * A specialization exclusion constraint is used to indicate that two specializations have no
  * common elements.
  */
-public class SpecExclusionConstraint implements Constraint {
+public class SpecExclusionConstraint extends AbstractConstraint {
+
+    // The owner of an element that was already reported as a conflict
+    private static final int REPORTED = -1;
 
     // The set of entity types that should exclude each other
     private Set<EntityType> entityTypes;
@@ -22,66 +27,94 @@ public class SpecExclusionConstraint implements Constraint {
     }
 
     /**
-     * Validates the constraint against a given population.
-     * The result will be true if the population satisfies the constraint, and false otherwise.
+     * @return The entity types that should exclude each other
+     */
+    public Set<EntityType> getEntityTypes() {
+        return entityTypes;
+    }
+
+    /**
+     * Checks the constraint against a given population.
+     * The result will be valid if the population satisfies the constraint, and contain all invalid elements otherwise.
+     * Each element that occurs in several entity type populations is a violation. All of them are found in a single
+     * pass, so they are counted even if only the first one is reported. If all violations are collected, they are
+     * passed to the sink instead of being kept in the result.
      *
-     * @param population The input population we want to validate
+     * @param context The validation context, containing the input population we want to validate
      * @return the result of the validation
      */
     @Override
-    public boolean validate(Population population) {
-        // We loop through all entity types
-        for (EntityType entityType : entityTypes) {
-            // We retrieve their population
-            List<String> entityTypePopulation = population.getEntityTypePopulation(entityType);
+    protected ValidationResult check(ValidationContext context) {
+        Population population = context.getPopulation();
+        List<EntityType> types = new ArrayList<>(entityTypes);
+        List<IdColumn> columns = new ArrayList<>();
+        int elements = 0;
+        for (EntityType entityType : types) {
+            IdColumn column = population.getEntityTypeColumn(entityType);
+            columns.add(column);
+            if (column != null) elements += column.size();
+        }
 
-            // We again loop through all the entity types
-            for (EntityType entityType2 : entityTypes) {
-                if (entityType != entityType2) {
-                    // And also retrieve their population
-                    List<String> entityType2Population = population.getEntityTypePopulation(entityType2);
+        // We loop through the elements of all entity types once, and assign each element the entity type in which it
+        // was seen first. The owners are kept in an open addressing hash table on the ids of the elements.
+        // An element that is seen again in another entity type violates the constraint, and is reported once.
+        // Unless all violations are collected, the ids of the conflicting elements are kept for the result.
+        ValueDictionary dictionary = population.getDictionary();
+        ViolationReporting.Violations violations = context.violations(this);
+        int[] ids = new int[Integer.highestOneBit(Math.max(elements, 1) * 2 - 1) << 1];
+        int[] owners = new int[ids.length];
+        Arrays.fill(ids, ValueDictionary.NO_VALUE);
+        int mask = ids.length - 1;
+        int distinct = 0;
+        int[] firstConflict = null;
+        List<Integer> conflicts = new ArrayList<>();
+        for (int type = 0; type < types.size(); type++) {
+            IdColumn column = columns.get(type);
+            for (int i = 0; column != null && i < column.size(); i++) {
+                int id = column.get(i);
+                int slot = (id * 0x9E3779B9) >>> 1 & mask;
+                while (ids[slot] != ValueDictionary.NO_VALUE && ids[slot] != id) slot = (slot + 1) & mask;
 
-                    // We check if there is an element that occurs in any of the other entity types.
-                    // If this is the case, the constraint was validated
-                    for (String element : entityTypePopulation) {
-                        if (entityType2Population.contains(element)) {
-                            populationIsValid = false;
-                            invalidElement = element;
-                            invalidElementEntityType = entityType.getName();
-                            invalidElementComparedEntityType = entityType2.getName();
-                            return false;
-                        }
-                    }
+                if (ids[slot] == ValueDictionary.NO_VALUE) {
+                    ids[slot] = id;
+                    owners[slot] = type;
+                    distinct++;
+                } else if (owners[slot] != type && owners[slot] != REPORTED) {
+                    if (firstConflict == null) firstConflict = new int[]{id, owners[slot], type};
+                    violations.add(Violation.element(dictionary.get(id)));
+                    if (!violations.collectsAll()) conflicts.add(id);
+                    owners[slot] = REPORTED;
                 }
             }
         }
-        return true;
-    }
+        context.addRowsScanned(elements);
+        context.hashTableBuilt("entity type of each element", distinct);
 
-    // Variables used for error printing
-    private boolean populationIsValid = true;
-    private String invalidElement;
-    private String invalidElementEntityType;
-    private String invalidElementComparedEntityType;
+        if (firstConflict == null) return ValidationResult.valid("Specification exclusion constraint was successfully verified.");
+        // We describe the first conflict, and add all conflicting elements to the result
+        ValidationResult.Builder builder = ValidationResult.invalid("Failed to verify specification exclusion constraint.")
+                .message("Reason: An element was found that occurs in another entity type population.")
+                .message("Element:")
+                .message("\t" + dictionary.get(firstConflict[0]))
+                .message("From entity type:")
+                .message("\t" + types.get(firstConflict[1]).getName())
+                .message("Duplicate was found in entity type:")
+                .message("\t" + types.get(firstConflict[2]).getName());
+        if (violations.collectsAll()) return builder.violatingElement(dictionary.get(firstConflict[0])).violations(violations).build();
+
+        builder.message("Amount of elements that occur in more than one entity type population:")
+                .message("\t" + conflicts.size());
+        for (int id : conflicts) builder.violatingElement(dictionary.get(id));
+        return builder.violations(violations).build();
+    }
 
     /**
-     * Method for printing the result of the validation.
-     * If the validation was unsuccessful, it will print error information.
+     * Provides the object types of which the population can influence this constraint
+     * @return The entity types of this constraint
      */
     @Override
-    public void printResult() {
-        if (populationIsValid) {
-            System.out.println("Specification exclusion constraint was successfully verified.");
-        } else {
-            System.out.println("Failed to verify specification exclusion constraint.");
-            System.out.println("Reason: An element was found that occurs in another entity type population.");
-            System.out.println("Element:");
-            System.out.println("\t" + invalidElement);
-            System.out.println("From entity type:");
-            System.out.println("\t" + invalidElementEntityType);
-            System.out.println("Duplicate was found in entity type:");
-            System.out.println("\t" + invalidElementComparedEntityType);
-        }
+    public Set<ObjectType> getDependencies() {
+        return new HashSet<>(entityTypes);
     }
 
     /**
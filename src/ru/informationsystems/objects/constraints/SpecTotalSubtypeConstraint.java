@@ -4,9 +4,9 @@ import ru.informationsystems.objects.InformationStructure;
 import ru.informationsystems.objects.population.Population;
 import ru.informationsystems.objects.types.EntityType;
 import ru.informationsystems.objects.types.ObjectType;
-import ru.informationsystems.util.SchemaUtils;
 
 import java.util.*;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 /**
@@ -14,7 +14,7 @@ import java.util.stream.Collectors;
  * A specialization total subtype constraint is used to indicate that one or more entity types together
  * have the same population as their lowest common ancestor.
  */
-public class SpecTotalSubtypeConstraint implements Constraint {
+public class SpecTotalSubtypeConstraint extends AbstractConstraint {
 
     // The lowest common ancestor of the entity types
     private EntityType lowestCommonAncestor;
@@ -24,32 +24,39 @@ public class SpecTotalSubtypeConstraint implements Constraint {
     public SpecTotalSubtypeConstraint(Set<EntityType> entityTypes, InformationStructure informationStructure) {
         this.entityTypes = entityTypes;
 
-        // We loop through all entity types, and keep calculating the lowest common ancestor of the current entity type
-        // and the previous lowest common ancestor
-        Queue<EntityType> queue = new LinkedList<>(entityTypes);
-        EntityType lowestCommonAncestor = queue.poll();
-        while (!queue.isEmpty()) {
-            EntityType head = queue.poll();
-
-            Optional<EntityType> optional = SchemaUtils.getLowestCommonAncestor(head, lowestCommonAncestor, informationStructure);
-            if (!optional.isPresent()) throw new IllegalArgumentException("No common ancestor in the given entity type list.");
-            else lowestCommonAncestor = optional.get();
-        }
-        if (lowestCommonAncestor == null) throw new IllegalArgumentException("No common ancestor in the given entity type list.");
+        // We determine the lowest common ancestor of all entity types at once, from the specialization hierarchy
+        Optional<EntityType> lowestCommonAncestor = informationStructure.getSpecializationIndex().getLowestCommonAncestor(entityTypes);
+        if (!lowestCommonAncestor.isPresent()) throw new IllegalArgumentException("No common ancestor in the given entity type list.");
 
         // In the end, the lowest common ancestor is set
-        this.lowestCommonAncestor = lowestCommonAncestor;
+        this.lowestCommonAncestor = lowestCommonAncestor.get();
+    }
+
+    /**
+     * @return The entity types of this constraint
+     */
+    public Set<EntityType> getEntityTypes() {
+        return entityTypes;
     }
 
     /**
-     * Validates the constraint against a given population.
-     * The result will be true if the population satisfies the constraint, and false otherwise.
+     * @return The lowest common ancestor of the entity types
+     */
+    public EntityType getLowestCommonAncestor() {
+        return lowestCommonAncestor;
+    }
+
+    /**
+     * Checks the constraint against a given population.
+     * The result will be valid if the population satisfies the constraint, and invalid otherwise.
+     * Each element that occurs in only one of the ancestor and the union of the entity types is a violation.
      *
-     * @param population The input population we want to validate
+     * @param context The validation context, containing the input population we want to validate
      * @return the result of the validation
      */
     @Override
-    public boolean validate(Population population) {
+    protected ValidationResult check(ValidationContext context) {
+        Population population = context.getPopulation();
         // We retrieve the population of the ancestor entity type, and put it in a set
         Set<String> ancestorPopulation = new HashSet<>(population.getEntityTypePopulation(lowestCommonAncestor));
 
@@ -58,31 +65,38 @@ public class SpecTotalSubtypeConstraint implements Constraint {
                 .map(population::getEntityTypePopulation)
                 .flatMap(List::stream)
                 .collect(Collectors.toSet());
+        context.addRowsScanned(population.getSize(lowestCommonAncestor) + entityTypes.stream().mapToLong(population::getSize).sum());
+        context.hashTableBuilt("elements of the lowest common ancestor", ancestorPopulation.size());
+        context.hashTableBuilt("elements of the entity types", entityTypesPopulation.size());
+
+        // The sets should be equal, so each element that occurs in only one of them is a violation
+        ViolationReporting.Violations violations = context.violations(this);
+        String invalidElement = addMissing(ancestorPopulation, entityTypesPopulation, Function.identity(), violations);
+        if (invalidElement == null || violations.collectsAll()) {
+            String missingElement = addMissing(entityTypesPopulation, ancestorPopulation, Function.identity(), violations);
+            if (invalidElement == null) invalidElement = missingElement;
+        }
 
         // We return if they were equal.
-        if (ancestorPopulation.equals(entityTypesPopulation)) {
-            return true;
+        if (invalidElement == null) {
+            return ValidationResult.valid("Specialization total subtype constraint was successfully verified.");
         } else {
-            populationIsValid = false;
-            return false;
+            return ValidationResult.invalid("Failed to verify specialization total subtype constraint.")
+                    .message("Reason: An element was found in the lowest common ancestor that did not occur in any of the entity types.")
+                    .violations(violations)
+                    .build();
         }
     }
 
-    // Variables used for error printing
-    private boolean populationIsValid = true;
-
     /**
-     * Method for printing the result of the validation.
-     * If the validation was unsuccessful, it will print error information.
+     * Provides the object types of which the population can influence this constraint
+     * @return The entity types of this constraint and their lowest common ancestor
      */
     @Override
-    public void printResult() {
-        if (populationIsValid) {
-            System.out.println("Specialization total subtype constraint was successfully verified.");
-        } else {
-            System.out.println("Failed to verify specialization total subtype constraint.");
-            System.out.println("Reason: An element was found in the lowest common ancestor that did not occur in any of the entity types.");
-        }
+    public Set<ObjectType> getDependencies() {
+        Set<ObjectType> dependencies = new HashSet<>(entityTypes);
+        dependencies.add(lowestCommonAncestor);
+        return dependencies;
     }
 
     /**
@@ -1,15 +1,19 @@
 package ru.informationsystems.objects.constraints;
 
+import ru.informationsystems.objects.population.IdBitmap;
 import ru.informationsystems.objects.population.Population;
+import ru.informationsystems.objects.population.PopulationTable;
+import ru.informationsystems.objects.population.PowerTypeTable;
+import ru.informationsystems.objects.population.ValueDictionary;
 import ru.informationsystems.objects.types.EntityType;
 import ru.informationsystems.objects.types.ObjectType;
 import ru.informationsystems.objects.types.PowerType;
 import ru.informationsystems.objects.types.Predicator;
+import ru.informationsystems.util.SchemaUtils;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Map;
+import java.util.HashSet;
 import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 /**
@@ -17,7 +21,7 @@ import java.util.stream.Collectors;
  * A total role constraint is used to indicate that each element in the population of a set of predicators should occur
  * in the union of their base types.
  */
-public class TotalRoleConstraint implements Constraint {
+public class TotalRoleConstraint extends AbstractConstraint {
 
     // The set of predicators
     private Set<Predicator> predicators;
@@ -27,65 +31,93 @@ public class TotalRoleConstraint implements Constraint {
     }
 
     /**
-     * Validates the constraint against a given population.
-     * The result will be true if the population satisfies the constraint, and false otherwise.
+     * @return The predicators this constraint spans
+     */
+    public Set<Predicator> getPredicators() {
+        return predicators;
+    }
+
+    /**
+     * Checks the constraint against a given population.
+     * The result will be valid if the population satisfies the constraint, and invalid otherwise.
+     * Each element that occurs in only one of the unions, and each row without a power type set, is a violation.
      *
-     * @param population The input population we want to validate
+     * @param context The validation context, containing the input population we want to validate
      * @return the result of the validation
      */
     @Override
-    public boolean validate(Population population) {
+    protected ValidationResult check(ValidationContext context) {
+        Population population = context.getPopulation();
         //TODO: Test this stuff
 
-        // We retrieve the total set of elements of the base types populations of each of the predicators
-        Set<String> totalLeftUnion = predicators.stream()
-                .map(pred -> {
-                    ObjectType base = pred.getBase();
-                    if (base instanceof EntityType) return population.getEntityTypePopulation((EntityType) base);
-                    else if (base instanceof PowerType) {
-                        return population.getPowerTypePopulation((PowerType) base).stream()
-                                .map(set -> "{" + String.join(", ", set) + "}")
-                                .collect(Collectors.toList());
-                    } else return new ArrayList<String>();
-                })
-                .flatMap(List::stream)
-                .collect(Collectors.toSet());
+        // We retrieve the total set of elements of the base types populations of each of the predicators.
+        // The sets of power types are kept apart, and compared by their bitmaps instead of their formatted values.
+        Set<String> totalLeftUnion = new HashSet<>();
+        Set<IdBitmap> totalLeftSets = new HashSet<>();
+        for (Predicator pred : predicators) {
+            ObjectType base = pred.getBase();
+            context.addRowsScanned(population.getSize(base));
+            if (base instanceof EntityType) totalLeftUnion.addAll(population.getEntityTypePopulation((EntityType) base));
+            else if (base instanceof PowerType) {
+                PowerTypeTable table = population.getPowerTypeTable((PowerType) base);
+                for (int i = 0; i < table.size(); i++) totalLeftSets.add(table.getSet(i));
+            }
+        }
 
-        // We retrieve the total set of elements of the populations of each of the predicators
-        Set<String> totalRightUnion = predicators.stream()
-                .map(pred -> {
-                    List<Map<Predicator, String>> pop = population.getFactTypePopulations(pred.getFactType());
-                    return pop.stream()
-                            .map(map -> map.get(pred))
-                            .collect(Collectors.toSet());
-                })
-                .flatMap(Set::stream)
-                .collect(Collectors.toSet());
+        // We retrieve the total set of elements of the populations of each of the predicators.
+        // A value of a predicator with a power type base was resolved to its set when the population was loaded.
+        ValueDictionary dictionary = population.getDictionary();
+        Set<String> totalRightUnion = new HashSet<>();
+        Set<IdBitmap> totalRightSets = new HashSet<>();
+        ViolationReporting.Violations violations = context.violations(this);
+        for (Predicator pred : predicators) {
+            PopulationTable table = population.getFactTypeTable(pred.getFactType());
+            int column = table.getColumnIndex(pred);
+            for (int row = 0; row < table.size(); row++) {
+                int id = table.getId(row, column);
+                if (pred.getBase() instanceof PowerType) {
+                    IdBitmap set = dictionary.getSet(id);
+                    if (set != null) totalRightSets.add(set);
+                    // A row without a set is a violation
+                    else if (!violations.add(Violation.row(table.getRow(row)))) return invalid(violations);
+                } else totalRightUnion.add(dictionary.get(id));
+            }
+            context.addRowsScanned(table.size());
+        }
+        context.hashTableBuilt("elements of the base types", totalLeftUnion.size() + totalLeftSets.size());
+        context.hashTableBuilt("elements of the predicators", totalRightUnion.size() + totalRightSets.size());
 
+        // The unions should be equal, so each element that occurs in only one of them is a violation
+        boolean valid = violations.getCount() == 0
+                && addMissing(totalLeftUnion, totalRightUnion, Function.identity(), violations) == null;
+        if (valid || violations.collectsAll()) valid &= addMissing(totalRightUnion, totalLeftUnion, Function.identity(), violations) == null;
+        if (valid || violations.collectsAll()) valid &= addMissing(totalLeftSets, totalRightSets, set -> PowerTypeTable.format(set, dictionary), violations) == null;
+        if (valid || violations.collectsAll()) valid &= addMissing(totalRightSets, totalLeftSets, set -> PowerTypeTable.format(set, dictionary), violations) == null;
 
-        if (totalLeftUnion.equals(totalRightUnion)) {
-            return true;
-        } else {
-            populationIsValid = false;
-            return false;
-        }
+        return valid ? ValidationResult.valid("Total role constraint was successfully verified.") : invalid(violations);
     }
 
-    // Variables used for error printing
-    private boolean populationIsValid = true;
+    /**
+     * Creates the result of a violated constraint
+     * @param violations The violations of the check
+     * @return The result
+     */
+    private ValidationResult invalid(ViolationReporting.Violations violations) {
+        return ValidationResult.invalid("Failed to verify total role constraint.")
+                .message("Reason: An element was found that occurs in the set of base type populations, but not in the set of predicator populations.")
+                .violations(violations)
+                .build();
+    }
 
     /**
-     * Method for printing the result of the validation.
-     * If the validation was unsuccessful, it will print error information.
+     * Provides the object types of which the population can influence this constraint
+     * @return The fact types of the predicators and their base types
      */
     @Override
-    public void printResult() {
-        if (populationIsValid) {
-            System.out.println("Total role constraint was successfully verified.");
-        } else {
-            System.out.println("Failed to verify total role constraint.");
-            System.out.println("Reason: An element was found that occurs in the set of base type populations, but not in the set of predicator populations.");
-        }
+    public Set<ObjectType> getDependencies() {
+        Set<ObjectType> dependencies = SchemaUtils.getFactTypes(predicators);
+        for (Predicator predicator : predicators) dependencies.add(predicator.getBase());
+        return dependencies;
     }
 
     /**
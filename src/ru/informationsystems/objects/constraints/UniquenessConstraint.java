@@ -1,8 +1,10 @@
 package ru.informationsystems.objects.constraints;
 
-import ru.informationsystems.objects.population.Pair;
+import ru.informationsystems.objects.population.GroupCounts;
 import ru.informationsystems.objects.population.Population;
+import ru.informationsystems.objects.population.RowView;
 import ru.informationsystems.objects.types.FactType;
+import ru.informationsystems.objects.types.ObjectType;
 import ru.informationsystems.objects.types.Predicator;
 import ru.informationsystems.util.AssertionHandler;
 import ru.informationsystems.util.SchemaUtils;
@@ -15,7 +17,10 @@ import java.util.stream.Collectors;
  * A uniqueness constraint is used to indicate that a set of values, derived from a set of predicators,
  * can only occur once in a population.
  */
-public class UniquenessConstraint implements Constraint {
+public class UniquenessConstraint extends AbstractConstraint {
+
+    // The message of a successful validation
+    private static final String VALID_MESSAGE = "Uniqueness constraint was successfully verified.";
 
     // The set of predicators
     private Set<Predicator> predicators;
@@ -28,56 +33,141 @@ public class UniquenessConstraint implements Constraint {
     }
 
     /**
-     * Validates the constraint against a given population.
-     * The result will be true if the population satisfies the constraint, and false otherwise.
+     * @return The predicators this constraint spans
+     */
+    public Set<Predicator> getPredicators() {
+        return predicators;
+    }
+
+    /**
+     * Checks the constraint against a given population.
+     * The result will be valid if the population satisfies the constraint, and contain the first duplicate rows otherwise.
+     * Each row that duplicates an earlier row is a violation.
      *
-     * @param population The input population we want to validate
+     * @param context The validation context, containing the input population we want to validate
      * @return the result of the validation
      */
     @Override
-    public boolean validate(Population population) {
-        // We retrieve the population from the collapse method
-        List<Map<Predicator, String>> result = SchemaUtils.collapse(population, predicators, ah);
+    protected ValidationResult check(ValidationContext context) {
+        return PlannedEvaluation.execute(createPlannedEvaluation(context), context);
+    }
+
+    /**
+     * The collapse is read in a single scan, which the plan shares with the other constraints that read it
+     */
+    @Override
+    public PlannedEvaluation createPlannedEvaluation(ValidationContext context) {
+        return new Evaluation(context);
+    }
+
+    /**
+     * The evaluation of this constraint. We loop through each row in the collapse once, and remember the first row of
+     * each combination of values. If a combination was already seen, we found a duplicate. Unless all violations are
+     * collected, the rest of the collapse is not needed.
+     */
+    private class Evaluation implements PlannedEvaluation, ScanConsumer {
 
-        // We loop through each entry in the table
-        for (int i = 0; i < result.size(); i++) {
-            Map<Predicator, String> row = result.get(i);
+        // The validation context
+        private ValidationContext context;
+        // The violations of the check
+        private ViolationReporting.Violations violations;
+        // The columns of the predicators that have to be unique
+        private int[] columns;
+        // The first row of each combination of values
+        private GroupCounts firstRows = new GroupCounts(1);
+        // The row that the first duplicate duplicates
+        private int duplicateRow = -1;
+        // The first duplicate, or null if there is none
+        private Map<Predicator, String> duplicatePopulation2;
+
+        private Evaluation(ValidationContext context) {
+            this.context = context;
+            this.violations = context.violations(UniquenessConstraint.this);
+        }
+
+        @Override
+        public List<Scan> getScans() {
+            return Collections.singletonList(new Scan(0, predicators, ah, "hash aggregation of the first row of each key", this));
+        }
 
-            // For each entry, we loop through all the entries that are following
-            for (int j = i + 1; j < result.size(); j++) {
-                Map<Predicator, String> row2 = result.get(j);
+        @Override
+        public boolean start(RowView rows) {
+            columns = rows.getColumnIndexes(predicators);
+            return true;
+        }
 
-                duplicatePopulation1 = row;
-                duplicatePopulation2 = row2;
+        @Override
+        public boolean next(RowView rows, int row) {
+            int combinations = firstRows.size();
+            int combination = firstRows.add(rows, columns, row);
+            if (combination == combinations) return true;
 
-                if (SchemaUtils.fullRowsMatch(row, row2, predicators)) return false;
+            Map<Predicator, String> duplicatePopulation = rows.getRow();
+            if (duplicatePopulation2 == null) {
+                duplicateRow = firstRows.getFirstRow(combination);
+                duplicatePopulation2 = duplicatePopulation;
             }
+            return violations.add(Violation.row(duplicatePopulation));
+        }
+
+        @Override
+        public ValidationResult finish() {
+            context.hashTableBuilt("first row of each combination of values", firstRows.size());
+            if (duplicatePopulation2 == null) return ValidationResult.valid(VALID_MESSAGE);
+
+            // We describe the first duplicate, together with the row it duplicates
+            return invalid(context.getRow(predicators, ah, duplicateRow), duplicatePopulation2, violations);
         }
-        populationIsValid = true;
-        return true;
     }
 
-    // Variables used for error printing
-    private boolean populationIsValid = false;
-    private Map<Predicator, String> duplicatePopulation1;
-    private Map<Predicator, String> duplicatePopulation2;
+    /**
+     * Creates the result of a duplicate row
+     * @param duplicatePopulation1 The row that is duplicated
+     * @param duplicatePopulation2 The duplicate
+     * @param violations The violations of the check
+     * @return The result
+     */
+    private ValidationResult invalid(Map<Predicator, String> duplicatePopulation1, Map<Predicator, String> duplicatePopulation2,
+                                     ViolationReporting.Violations violations) {
+        ValidationResult.Builder builder = ValidationResult.invalid("Failed to verify uniqueness constraint.")
+                .message("Reason: A duplicate population was found.")
+                .message("Population 1:");
+        duplicatePopulation1.forEach((p, s) -> builder.message("\t" + p.getName() + ": " + s));
+        builder.message("Population 2:");
+        duplicatePopulation2.forEach((p, s) -> builder.message("\t" + p.getName() + ": " + s));
+        return builder.violatingRow(duplicatePopulation1).violatingRow(duplicatePopulation2).violations(violations).build();
+    }
 
     /**
-     * Method for printing the result of the validation.
-     * If the validation was unsuccessful, it will print error information.
+     * If all predicators belong to a single fact type, the amount of rows of each combination of values is kept up to
+     * date, and a combination is invalid if it occurs more than once. Otherwise, the constraint is checked again after
+     * each change.
      */
     @Override
-    public void printResult() {
-        if (populationIsValid) {
-            System.out.println("Uniqueness constraint was successfully verified.");
-        } else {
-            System.out.println("Failed to verify uniqueness constraint.");
-            System.out.println("Reason: A duplicate population was found.");
-            System.out.println("Population 1:");
-            duplicatePopulation1.forEach((p, s) -> System.out.println("\t" + p.getName() + ": " + s));
-            System.out.println("Population 2:");
-            duplicatePopulation2.forEach((p, s) -> System.out.println("\t" + p.getName() + ": " + s));
-        }
+    public IncrementalEvaluator createIncrementalEvaluator(Population population) {
+        Optional<FactType> factType = SchemaUtils.getSingleFactType(predicators);
+        if (!factType.isPresent()) return super.createIncrementalEvaluator(population);
+        return new KeyCountEvaluator(this, population, VALID_MESSAGE, (rows, count, violations) -> {
+            violations.add(Violation.row(rows.get(1)));
+            return invalid(rows.get(0), rows.get(1), violations);
+        }, factType.get(), predicators, 1, 1);
+    }
+
+    /**
+     * The collapse of the predicators is read once, and each of its rows is hashed
+     */
+    @Override
+    public long estimateCost(Population population) {
+        return estimateCollapseCost(population, predicators);
+    }
+
+    /**
+     * Provides the object types of which the population can influence this constraint
+     * @return The fact types of the predicators
+     */
+    @Override
+    public Set<ObjectType> getDependencies() {
+        return SchemaUtils.getFactTypes(predicators);
     }
 
     /**
@@ -0,0 +1,304 @@
+package ru.informationsystems.objects.constraints;
+
+import ru.informationsystems.objects.population.MembershipCounts;
+import ru.informationsystems.objects.population.Population;
+import ru.informationsystems.objects.population.PopulationTable;
+import ru.informationsystems.objects.population.RowCursor;
+import ru.informationsystems.objects.population.ValueDictionary;
+import ru.informationsystems.objects.types.PowerType;
+import ru.informationsystems.objects.types.Predicator;
+import ru.informationsystems.util.AssertionHandler;
+import ru.informationsystems.util.CollapseCache;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Class that contains the state of a single validation run: the population that is validated, and the work that the
+ * constraints of the run can share, such as the collapsed tables.
+ * A context is created for each run, and can be used by several constraints at the same time.
+ *
+ * If a listener is registered, each constraint is evaluated with its own context, which shares the state of the run
+ * and measures the work of that constraint.
+ */
+public class ValidationContext {
+
+    // The population we validate
+    private Population population;
+    // The collapsed tables that are shared between the constraints
+    private CollapseCache collapseCache;
+    // How the violations of the constraints are reported
+    private ViolationReporting reporting;
+    // The membership counts of each power type, which are shared between the constraints
+    private Map<PowerType, MembershipCounts> membershipCounts = new ConcurrentHashMap<>();
+    // Whether the checks of this run can be cancelled, in which case the cursors of the run check for cancellation
+    private boolean cancellable;
+    // Whether this run was cancelled, shared with the contexts of the constraints
+    private AtomicBoolean cancelled = new AtomicBoolean();
+    // The listener that receives the metrics of the run, or null
+    private ValidationListener listener;
+    // The constraint that is measured by this context, or null if this is the context of the run
+    private Constraint constraint;
+    // The amount of rows and elements that the constraint read
+    private long rowsScanned;
+
+    /**
+     * Creates a context that does not share any collapsed tables
+     * @param population The population we validate
+     */
+    public ValidationContext(Population population) {
+        this(population, 0);
+    }
+
+    /**
+     * Creates a context that shares collapsed tables between constraints
+     * @param population The population we validate
+     * @param collapseCacheBytes The maximum amount of bytes of the shared collapsed tables, 0 disables sharing
+     */
+    public ValidationContext(Population population, long collapseCacheBytes) {
+        this(population, collapseCacheBytes, ViolationReporting.firstViolation());
+    }
+
+    /**
+     * Creates a context that shares collapsed tables between constraints, and reports violations in the given way
+     * @param population The population we validate
+     * @param collapseCacheBytes The maximum amount of bytes of the shared collapsed tables, 0 disables sharing
+     * @param reporting How the violations of the constraints are reported
+     */
+    public ValidationContext(Population population, long collapseCacheBytes, ViolationReporting reporting) {
+        this.population = population;
+        this.collapseCache = new CollapseCache(population, collapseCacheBytes);
+        this.reporting = reporting;
+    }
+
+    /**
+     * Creates the context of a single constraint, which shares the state of a run
+     * @param run The context of the run
+     * @param constraint The constraint
+     */
+    private ValidationContext(ValidationContext run, Constraint constraint) {
+        this.population = run.population;
+        this.collapseCache = run.collapseCache;
+        this.reporting = run.reporting;
+        this.membershipCounts = run.membershipCounts;
+        this.cancellable = run.cancellable;
+        this.cancelled = run.cancelled;
+        this.listener = run.listener;
+        this.constraint = constraint;
+    }
+
+    /**
+     * Registers a listener that receives the metrics of the run. This should be done before the run starts.
+     * @param listener The listener, or null to measure nothing
+     */
+    public void setListener(ValidationListener listener) {
+        this.listener = listener;
+        collapseCache.setListener(listener);
+    }
+
+    /**
+     * @return The listener that receives the metrics of the run, or null
+     */
+    public ValidationListener getListener() {
+        return listener;
+    }
+
+    /**
+     * Creates the context in which a constraint is evaluated. Without a listener there is nothing to measure, so the
+     * context of the run is used.
+     * @param constraint The constraint
+     * @return The context of the constraint
+     */
+    public ValidationContext forConstraint(Constraint constraint) {
+        return listener == null ? this : new ValidationContext(this, constraint);
+    }
+
+    /**
+     * Adds to the amount of rows and elements that the constraint of this context read.
+     * A constraint calls this for the populations it reads directly, the rows of scans are counted by their cursors.
+     * @param rows The amount of rows or elements
+     */
+    public void addRowsScanned(long rows) {
+        if (constraint != null) rowsScanned += rows;
+    }
+
+    /**
+     * @return The amount of rows and elements that the constraint of this context read
+     */
+    public long getRowsScanned() {
+        return rowsScanned;
+    }
+
+    /**
+     * Reports a hash table that the constraint of this context built to the listener
+     * @param purpose What the hash table contains
+     * @param entries The amount of entries of the hash table
+     */
+    public void hashTableBuilt(String purpose, long entries) {
+        if (constraint != null) listener.hashTableBuilt(constraint, purpose, entries);
+    }
+
+    /**
+     * Collapses the population over the given predicators. Constraints in the same run that span the same
+     * predicators receive the same table, so the table should not be modified.
+     *
+     * @param predicators The predicators that the constraint spans
+     * @param ah The assertion handler we can use for checking type relatedness
+     * @return A table representing the collapsed population
+     */
+    public PopulationTable collapse(Collection<Predicator> predicators, AssertionHandler ah) {
+        return collapseCache.collapse(predicators, ah);
+    }
+
+    /**
+     * Creates a cursor over the collapse of the population over the given predicators. The rows are joined while they
+     * are read, unless another constraint in the same run already read the whole collapse.
+     *
+     * @param predicators The predicators that the constraint spans
+     * @param ah The assertion handler we can use for checking type relatedness
+     * @return A cursor over the collapsed population
+     */
+    public RowCursor scan(Collection<Predicator> predicators, AssertionHandler ah) {
+        checkCancelled();
+        RowCursor cursor = collapseCache.scan(predicators, ah);
+        return cancellable || constraint != null ? new ContextCursor(cursor) : cursor;
+    }
+
+    /**
+     * Retrieves a single row of the collapse of the population over the given predicators.
+     * The collapse is read again up to this row, so this is meant for reporting a violation that was already found.
+     *
+     * @param predicators The predicators that the constraint spans
+     * @param ah The assertion handler we can use for checking type relatedness
+     * @param row The index of the row
+     * @return The row, mapping each predicator to its value
+     */
+    public Map<Predicator, String> getRow(Collection<Predicator> predicators, AssertionHandler ah, int row) {
+        RowCursor cursor = collapseCache.scan(predicators, ah);
+        for (int i = 0; i <= row; i++) {
+            if (!cursor.next()) throw new IndexOutOfBoundsException("Index: " + row + ", Size: " + i);
+        }
+        addRowsScanned(row + 1);
+        return cursor.getRow();
+    }
+
+    /**
+     * Retrieves, for each element of a power type, the amount of sets of the population that contain it.
+     * The counts are determined once per validation, so several constraints on the same power type share them.
+     *
+     * @param powerType The power type
+     * @return The membership counts
+     */
+    public MembershipCounts getMembershipCounts(PowerType powerType) {
+        checkCancelled();
+        return membershipCounts.computeIfAbsent(powerType, type -> new MembershipCounts(population.getPowerTypeTable(type)));
+    }
+
+    /**
+     * Starts counting the violations of a check of a constraint.
+     * A constraint passes each violation it finds, and stops when it is told to.
+     *
+     * @param constraint The constraint that is checked
+     * @return The violations of the check
+     */
+    public ViolationReporting.Violations violations(Constraint constraint) {
+        checkCancelled();
+        return reporting.start(constraint);
+    }
+
+    /**
+     * Makes the checks of this run cancellable. The cursors that the checks read then check for cancellation every
+     * few thousand rows, which is why this is not done by default.
+     */
+    public void setCancellable() {
+        this.cancellable = true;
+    }
+
+    /**
+     * Cancels this run. A check that is still running stops with a CancellationException the next time it reads the
+     * context, and checks that start afterwards stop immediately.
+     */
+    public void cancel() {
+        cancelled.set(true);
+    }
+
+    /**
+     * @return Whether this run was cancelled
+     */
+    public boolean isCancelled() {
+        return cancelled.get();
+    }
+
+    /**
+     * Stops the current check if this run was cancelled
+     * @throws CancellationException If this run was cancelled
+     */
+    public void checkCancelled() {
+        if (cancelled.get()) throw new CancellationException("The validation was cancelled.");
+    }
+
+    /**
+     * @return The population we validate
+     */
+    public Population getPopulation() {
+        return population;
+    }
+
+    /**
+     * @return The collapsed tables that are shared between the constraints
+     */
+    public CollapseCache getCollapseCache() {
+        return collapseCache;
+    }
+
+    /**
+     * A cursor that counts the rows that the constraint of this context reads, and checks for cancellation of the run
+     * once every CHECK_INTERVAL rows
+     */
+    private class ContextCursor implements RowCursor {
+
+        // The amount of rows between two checks for cancellation, a power of two
+        private static final int CHECK_INTERVAL = 4096;
+
+        // The cursor we read
+        private RowCursor cursor;
+        // The amount of rows that were read
+        private int rows;
+
+        private ContextCursor(RowCursor cursor) {
+            this.cursor = cursor;
+        }
+
+        @Override
+        public List<Predicator> getPredicators() {
+            return cursor.getPredicators();
+        }
+
+        @Override
+        public ValueDictionary getDictionary() {
+            return cursor.getDictionary();
+        }
+
+        @Override
+        public boolean next() {
+            if ((++rows & (CHECK_INTERVAL - 1)) == 0 && cancellable) checkCancelled();
+            if (!cursor.next()) return false;
+            addRowsScanned(1);
+            return true;
+        }
+
+        @Override
+        public int getId(int column) {
+            return cursor.getId(column);
+        }
+
+        @Override
+        public int getColumnIndex(Predicator predicator) {
+            return cursor.getColumnIndex(predicator);
+        }
+    }
+}
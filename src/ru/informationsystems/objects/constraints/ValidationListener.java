@@ -0,0 +1,63 @@
+package ru.informationsystems.objects.constraints;
+
+import ru.informationsystems.objects.population.Population;
+import ru.informationsystems.objects.types.Predicator;
+
+import java.util.List;
+
+/**
+ * Listener for the metrics of a validation, for example to feed them into a monitoring system.
+ * All methods do nothing by default, so a listener only has to implement the metrics it is interested in.
+ *
+ * A listener is only called if it is registered, and nothing is measured otherwise. If the constraints are validated
+ * concurrently, the methods are called from several threads at the same time.
+ */
+public interface ValidationListener {
+
+    /**
+     * Called before the constraints of a schema are validated
+     * @param population The population that is validated
+     * @param constraints The constraints, in the order in which their results are reported
+     */
+    default void validationStarted(Population population, List<Constraint> constraints) {}
+
+    /**
+     * Called after a constraint was evaluated. The wall time of the evaluation is the duration of the result, and the
+     * amount of violations that were found is its violation count.
+     * @param constraint The constraint
+     * @param result The result of the evaluation
+     * @param rowsScanned The amount of rows and elements that the evaluation read
+     */
+    default void constraintEvaluated(Constraint constraint, ValidationResult result, long rowsScanned) {}
+
+    /**
+     * Called after the evaluation of a constraint built a hash table
+     * @param constraint The constraint
+     * @param purpose What the hash table contains, i.e. "keys of the first population"
+     * @param entries The amount of entries of the hash table
+     */
+    default void hashTableBuilt(Constraint constraint, String purpose, long entries) {}
+
+    /**
+     * Called after a join of a collapse was executed. The table of the new fact type is indexed in a hash table, which
+     * is probed with each row of the current table. A collapse that is read with a cursor joins its rows while they
+     * are read, and only reports its joins once all rows were read.
+     * @param predicators The predicators of the collapse
+     * @param step The index of the join, starting at 0
+     * @param left The predicator of the current table we join on
+     * @param right The predicator of the new fact type we join on
+     * @param inputRows The amount of rows of the current table
+     * @param tableRows The amount of rows of the table of the new fact type, which are all in the hash table
+     * @param outputRows The amount of rows of the joined table
+     */
+    default void joinExecuted(List<Predicator> predicators, int step, Predicator left, Predicator right,
+                              long inputRows, long tableRows, long outputRows) {}
+
+    /**
+     * Called after the constraints of a schema were validated
+     * @param constraints The constraints
+     * @param results The results of the constraints, in the same order
+     * @param duration The wall time of the whole validation, in nanoseconds
+     */
+    default void validationFinished(List<Constraint> constraints, List<ValidationResult> results, long duration) {}
+}
@@ -0,0 +1,187 @@
+package ru.informationsystems.objects.constraints;
+
+import ru.informationsystems.objects.types.Predicator;
+
+import java.util.*;
+
+/**
+ * This class represents the result of validating a constraint against a population.
+ * A result is immutable, so it can safely be shared between threads.
+ */
+public final class ValidationResult {
+
+    // Whether the population satisfies the constraint
+    private final boolean valid;
+    // The lines that describe the result
+    private final List<String> messages;
+    // The fact rows that violate the constraint
+    private final List<Map<Predicator, String>> violatingRows;
+    // The elements that violate the constraint
+    private final List<String> violatingElements;
+    // The amount of violations that were found
+    private final long violationCount;
+    // The time the validation took, in nanoseconds
+    private final long duration;
+
+    private ValidationResult(boolean valid, List<String> messages, List<Map<Predicator, String>> violatingRows,
+                             List<String> violatingElements, long violationCount, long duration) {
+        this.valid = valid;
+        this.messages = messages;
+        this.violatingRows = violatingRows;
+        this.violatingElements = violatingElements;
+        this.violationCount = violationCount;
+        this.duration = duration;
+    }
+
+    /**
+     * Creates the result of a successful validation
+     * @param message The line that describes the result
+     * @return The result
+     */
+    public static ValidationResult valid(String message) {
+        return new ValidationResult(true, Collections.singletonList(message), Collections.emptyList(), Collections.emptyList(), 0, 0);
+    }
+
+    /**
+     * Starts building the result of a failed validation
+     * @param message The first line that describes the result
+     * @return A builder for the result
+     */
+    public static Builder invalid(String message) {
+        return new Builder(message);
+    }
+
+    /**
+     * Creates a copy of this result with the given duration
+     * @param duration The time the validation took, in nanoseconds
+     * @return The result
+     */
+    public ValidationResult withDuration(long duration) {
+        return new ValidationResult(valid, messages, violatingRows, violatingElements, violationCount, duration);
+    }
+
+    /**
+     * @return Whether the population satisfies the constraint
+     */
+    public boolean isValid() {
+        return valid;
+    }
+
+    /**
+     * @return The lines that describe the result
+     */
+    public List<String> getMessages() {
+        return messages;
+    }
+
+    /**
+     * @return The fact rows that violate the constraint
+     */
+    public List<Map<Predicator, String>> getViolatingRows() {
+        return violatingRows;
+    }
+
+    /**
+     * @return The elements that violate the constraint
+     */
+    public List<String> getViolatingElements() {
+        return violatingElements;
+    }
+
+    /**
+     * The amount of violations that were found. A constraint that stops at its first violation usually finds one,
+     * unless it finds all of its violations in the same pass anyway.
+     * @return The amount of violations
+     */
+    public long getViolationCount() {
+        return violationCount;
+    }
+
+    /**
+     * @return The time the validation took, in nanoseconds
+     */
+    public long getDuration() {
+        return duration;
+    }
+
+    /**
+     * Prints the result to the console
+     */
+    public void print() {
+        messages.forEach(System.out::println);
+    }
+
+    /**
+     * Builder class for the result of a failed validation
+     */
+    public static class Builder {
+
+        // The lines that describe the result
+        private List<String> messages = new ArrayList<>();
+        // The fact rows that violate the constraint
+        private List<Map<Predicator, String>> violatingRows = new ArrayList<>();
+        // The elements that violate the constraint
+        private List<String> violatingElements = new ArrayList<>();
+        // The amount of violations that were found
+        private long violationCount = 1;
+
+        private Builder(String message) {
+            messages.add(message);
+        }
+
+        /**
+         * Adds a line that describes the result
+         * @param message The line
+         * @return The builder
+         */
+        public Builder message(String message) {
+            messages.add(message);
+            return this;
+        }
+
+        /**
+         * Adds a fact row that violates the constraint. The row is copied.
+         * @param row The row
+         * @return The builder
+         */
+        public Builder violatingRow(Map<Predicator, String> row) {
+            violatingRows.add(Collections.unmodifiableMap(new LinkedHashMap<>(row)));
+            return this;
+        }
+
+        /**
+         * Adds an element that violates the constraint
+         * @param element The element
+         * @return The builder
+         */
+        public Builder violatingElement(String element) {
+            violatingElements.add(element);
+            return this;
+        }
+
+        /**
+         * Sets the amount of violations that were found.
+         * If all violations were collected, a line with the amount of found and reported violations is added.
+         * @param violations The violations of the check
+         * @return The builder
+         */
+        public Builder violations(ViolationReporting.Violations violations) {
+            violationCount = violations.getCount();
+            if (violations.collectsAll()) {
+                messages.add("Violations:");
+                messages.add("\t" + violations.getCount() + " found, " + violations.getReportedCount() + " reported");
+            }
+            return this;
+        }
+
+        /**
+         * Builds the result
+         * @return The result
+         */
+        public ValidationResult build() {
+            return new ValidationResult(false, Collections.unmodifiableList(new ArrayList<>(messages)),
+                    Collections.unmodifiableList(new ArrayList<>(violatingRows)),
+                    Collections.unmodifiableList(new ArrayList<>(violatingElements)), violationCount, 0);
+        }
+    }
+}
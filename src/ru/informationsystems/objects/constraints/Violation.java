@@ -0,0 +1,80 @@
+package ru.informationsystems.objects.constraints;
+
+import ru.informationsystems.objects.types.Predicator;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * This class represents a single violation of a constraint: a fact row, an element, or an element of a fact row.
+ * A violation is immutable, so it can safely be passed to a sink on another thread.
+ */
+public final class Violation {
+
+    // The fact row that violates the constraint, or an empty map if the violation is not a row
+    private final Map<Predicator, String> row;
+    // The element that violates the constraint, or null if the violation is not a single element
+    private final String element;
+
+    private Violation(Map<Predicator, String> row, String element) {
+        this.row = row;
+        this.element = element;
+    }
+
+    /**
+     * Creates a violation of a fact row. The row is copied.
+     * @param row The row
+     * @return The violation
+     */
+    public static Violation row(Map<Predicator, String> row) {
+        return new Violation(Collections.unmodifiableMap(new LinkedHashMap<>(row)), null);
+    }
+
+    /**
+     * Creates a violation of an element
+     * @param element The element
+     * @return The violation
+     */
+    public static Violation element(String element) {
+        return new Violation(Collections.emptyMap(), element);
+    }
+
+    /**
+     * Creates a violation of an element in a fact row. The row is copied.
+     * @param row The row
+     * @param element The element
+     * @return The violation
+     */
+    public static Violation element(Map<Predicator, String> row, String element) {
+        return new Violation(Collections.unmodifiableMap(new LinkedHashMap<>(row)), element);
+    }
+
+    /**
+     * @return The fact row that violates the constraint, or an empty map if the violation is not a row
+     */
+    public Map<Predicator, String> getRow() {
+        return row;
+    }
+
+    /**
+     * @return The element that violates the constraint, or null if the violation is not a single element
+     */
+    public String getElement() {
+        return element;
+    }
+
+    /**
+     * Formats the violation as a single line, i.e. {p1 > a, p2 > b} or the element itself
+     * @return The formatted violation
+     */
+    @Override
+    public String toString() {
+        String formattedRow = "{" + row.entrySet().stream()
+                .map(e -> e.getKey().getName() + " > " + e.getValue())
+                .collect(Collectors.joining(", ")) + "}";
+        if (element == null) return formattedRow;
+        return row.isEmpty() ? element : element + " in " + formattedRow;
+    }
+}
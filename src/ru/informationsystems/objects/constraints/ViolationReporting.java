@@ -0,0 +1,171 @@
+package ru.informationsystems.objects.constraints;
+
+/**
+ * Class that determines how the violations of a constraint are reported.
+ *
+ * By default, a constraint stops at its first violation and describes it in its result. When all violations are
+ * collected, a constraint reads the whole population in a single pass and counts every violation. The violations are
+ * passed to a sink while they are found, so they are not kept in memory: only every n-th violation is passed when
+ * sampling, and at most a limited amount of violations is passed per constraint.
+ */
+public final class ViolationReporting {
+
+    // Whether a constraint stops at its first violation
+    private final boolean firstViolationOnly;
+    // The maximum amount of violations that is passed to the sink per constraint
+    private final long limit;
+    // Only every n-th violation is passed to the sink
+    private final int sampleInterval;
+    // The sink that receives the violations, or null if they are only counted
+    private final ViolationSink sink;
+
+    private ViolationReporting(boolean firstViolationOnly, long limit, int sampleInterval, ViolationSink sink) {
+        this.firstViolationOnly = firstViolationOnly;
+        this.limit = limit;
+        this.sampleInterval = sampleInterval;
+        this.sink = sink;
+    }
+
+    /**
+     * Creates the default reporting, in which each constraint stops at its first violation
+     * @return The reporting
+     */
+    public static ViolationReporting firstViolation() {
+        return new ViolationReporting(true, 0, 1, null);
+    }
+
+    /**
+     * Starts building a reporting in which each constraint collects all of its violations
+     * @return A builder for the reporting
+     */
+    public static Builder allViolations() {
+        return new Builder();
+    }
+
+    /**
+     * @return Whether a constraint stops at its first violation
+     */
+    public boolean isFirstViolationOnly() {
+        return firstViolationOnly;
+    }
+
+    /**
+     * Starts counting the violations of a single check of a constraint
+     * @param constraint The constraint that is checked
+     * @return The violations of the check
+     */
+    Violations start(Constraint constraint) {
+        return new Violations(constraint);
+    }
+
+    /**
+     * Class that counts the violations of a single check of a constraint, and passes them to the sink
+     */
+    public class Violations {
+
+        // The constraint that is checked
+        private final Constraint constraint;
+        // The amount of violations that were found
+        private long count;
+        // The amount of violations that were passed to the sink
+        private long reported;
+
+        private Violations(Constraint constraint) {
+            this.constraint = constraint;
+        }
+
+        /**
+         * Adds a violation that was found
+         * @param violation The violation
+         * @return Whether the constraint should continue looking for violations
+         */
+        public boolean add(Violation violation) {
+            count++;
+            if (firstViolationOnly) return false;
+
+            if (sink != null && reported < limit && (count - 1) % sampleInterval == 0) {
+                sink.accept(constraint, violation);
+                reported++;
+            }
+            return true;
+        }
+
+        /**
+         * @return Whether all violations are collected, instead of only the first one
+         */
+        public boolean collectsAll() {
+            return !firstViolationOnly;
+        }
+
+        /**
+         * @return The amount of violations that were found
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * @return The amount of violations that were passed to the sink
+         */
+        public long getReportedCount() {
+            return reported;
+        }
+    }
+
+    /**
+     * Builder class for a reporting in which each constraint collects all of its violations
+     */
+    public static class Builder {
+
+        // The maximum amount of violations that is passed to the sink per constraint
+        private long limit = Long.MAX_VALUE;
+        // Only every n-th violation is passed to the sink
+        private int sampleInterval = 1;
+        // The sink that receives the violations, or null if they are only counted
+        private ViolationSink sink;
+
+        private Builder() {
+        }
+
+        /**
+         * Sets the maximum amount of violations that is passed to the sink per constraint.
+         * The violations after the limit are still counted.
+         * @param limit The maximum amount of violations
+         * @return The builder
+         */
+        public Builder limit(long limit) {
+            if (limit < 0) throw new IllegalArgumentException("The limit of reported violations cannot be negative.");
+            this.limit = limit;
+            return this;
+        }
+
+        /**
+         * Only passes every n-th violation of a constraint to the sink, starting with the first one
+         * @param interval The interval n, 1 passes every violation
+         * @return The builder
+         */
+        public Builder sample(int interval) {
+            if (interval < 1) throw new IllegalArgumentException("The sample interval should be at least 1.");
+            this.sampleInterval = interval;
+            return this;
+        }
+
+        /**
+         * Sets the sink that receives the violations while they are found
+         * @param sink The sink, or null to only count the violations
+         * @return The builder
+         */
+        public Builder sink(ViolationSink sink) {
+            this.sink = sink;
+            return this;
+        }
+
+        /**
+         * Builds the reporting
+         * @return The reporting
+         */
+        public ViolationReporting build() {
+            return new ViolationReporting(false, limit, sampleInterval, sink);
+        }
+    }
+}
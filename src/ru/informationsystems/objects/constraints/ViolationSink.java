@@ -0,0 +1,31 @@
+package ru.informationsystems.objects.constraints;
+
+import java.io.PrintStream;
+
+/**
+ * Interface for receiving the violations of constraints while they are validated, instead of keeping them in the
+ * results. If the constraints are validated concurrently, a sink receives violations from several threads at once.
+ */
+@FunctionalInterface
+public interface ViolationSink {
+
+    /**
+     * Receives a violation
+     * @param constraint The constraint that is violated
+     * @param violation The violation
+     */
+    void accept(Constraint constraint, Violation violation);
+
+    /**
+     * Creates a sink that prints each violation on its own line, after the information of its constraint
+     * @param out The stream to print to
+     * @return The sink
+     */
+    static ViolationSink printTo(PrintStream out) {
+        return (constraint, violation) -> {
+            synchronized (out) {
+                out.println(constraint.getInformation() + "\t" + violation);
+            }
+        };
+    }
+}
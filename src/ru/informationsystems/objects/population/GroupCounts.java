@@ -0,0 +1,107 @@
+package ru.informationsystems.objects.population;
+
+import java.util.Arrays;
+
+/**
+ * Class for counting how many times each combination of values occurs in a table.
+ * The rows are grouped on the ids of a number of columns in a single hash aggregation pass, either over a whole table
+ * or one row at a time.
+ * Groups are numbered in the order in which they first occur in the table.
+ */
+public class GroupCounts {
+
+    // The group of each key, which is created for the width of the first key
+    private KeyTable groups;
+    // The amount of rows in each group
+    private int[] counts = new int[16];
+    // The first row of each group
+    private int[] firstRows = new int[16];
+
+    // The highest count that is of interest
+    private int limit;
+
+    /**
+     * Creates empty group counts, to which rows can be added one at a time.
+     * Once a group reaches the given limit, its count is no longer increased.
+     * @param limit The highest count that is of interest
+     */
+    public GroupCounts(int limit) {
+        this.limit = limit;
+    }
+
+    /**
+     * Groups the rows of a table and counts the rows of each group.
+     * Once a group reaches the given limit, its count is no longer increased.
+     * @param table The table
+     * @param columns The column indexes to group on
+     * @param limit The highest count that is of interest
+     */
+    public GroupCounts(PopulationTable table, int[] columns, int limit) {
+        this(limit);
+        for (int row = 0; row < table.size(); row++) add(RowKey.of(table, row, columns), row);
+    }
+
+    /**
+     * Counts a row in the group of its key
+     * @param key The key of the row
+     * @param row The index of the row
+     * @return The group of the row
+     */
+    public int add(RowKey key, int row) {
+        if (groups == null) groups = new KeyTable(key.getIds().length);
+        return count(groups.add(key.getIds()), row);
+    }
+
+    /**
+     * Counts the current row of a view in the group of its key, without creating the key
+     * @param rows The view, which is positioned at the row
+     * @param columns The column indexes to group on
+     * @param row The index of the row
+     * @return The group of the row
+     */
+    public int add(RowView rows, int[] columns, int row) {
+        if (groups == null) groups = new KeyTable(columns.length);
+        return count(groups.add(rows, columns), row);
+    }
+
+    /**
+     * Counts a row in a group
+     * @param group The group
+     * @param row The index of the row
+     * @return The group
+     */
+    private int count(int group, int row) {
+        if (group == counts.length) {
+            counts = Arrays.copyOf(counts, group * 2);
+            firstRows = Arrays.copyOf(firstRows, group * 2);
+        }
+        if (counts[group] == 0) firstRows[group] = row;
+        if (counts[group] < limit) counts[group]++;
+        return group;
+    }
+
+    /**
+     * @return The amount of groups
+     */
+    public int size() {
+        return groups == null ? 0 : groups.size();
+    }
+
+    /**
+     * Retrieves the amount of rows in a group, limited by the limit that was given when counting
+     * @param group The group
+     * @return The amount of rows
+     */
+    public int getCount(int group) {
+        return counts[group];
+    }
+
+    /**
+     * Retrieves the first row of a group
+     * @param group The group
+     * @return The index of the row in the table
+     */
+    public int getFirstRow(int group) {
+        return firstRows[group];
+    }
+}
@@ -0,0 +1,461 @@
+package ru.informationsystems.objects.population;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Class for representing a set of dictionary ids as a compressed bitmap.
+ * The ids are split on their upper 16 bits into containers. A container with few ids stores its lower 16 bits in a
+ * sorted array, a container with many ids stores them as a bitmap of 2^16 bits. Sparse and dense sets are therefore
+ * both stored compactly, and the cardinality, union and intersection of sets are computed a container at a time.
+ *
+ * Each container uses the smallest of both representations, so two bitmaps with the same ids have the same containers.
+ */
+public class IdBitmap {
+
+    // The maximum amount of ids in an array container, above this a bitmap container is smaller
+    private static final int ARRAY_LIMIT = 4096;
+
+    // The upper 16 bits of the ids of each container, in ascending order
+    private int[] keys = new int[4];
+    // The containers, in the same order as the keys
+    private Container[] containers = new Container[4];
+    // The amount of containers
+    private int size;
+    // The amount of ids in all containers
+    private int cardinality;
+
+    /**
+     * Creates a bitmap that contains the given ids
+     * @param ids The ids
+     * @return The bitmap
+     */
+    public static IdBitmap of(int... ids) {
+        IdBitmap bitmap = new IdBitmap();
+        for (int id : ids) bitmap.add(id);
+        return bitmap;
+    }
+
+    /**
+     * Adds an id to this bitmap
+     * @param id The id, which should not be negative
+     */
+    public void add(int id) {
+        if (id < 0) throw new IllegalArgumentException("A bitmap can only contain ids that are not negative.");
+        int index = find(id >>> 16);
+        if (index < 0) {
+            index = -index - 1;
+            insert(index, id >>> 16, new ArrayContainer());
+        }
+        cardinality -= containers[index].cardinality();
+        containers[index] = containers[index].add((char) id);
+        cardinality += containers[index].cardinality();
+    }
+
+    /**
+     * Checks whether this bitmap contains an id
+     * @param id The id
+     * @return Whether the id is in this bitmap
+     */
+    public boolean contains(int id) {
+        if (id < 0) return false;
+        int index = find(id >>> 16);
+        return index >= 0 && containers[index].contains((char) id);
+    }
+
+    /**
+     * @return The amount of ids in this bitmap
+     */
+    public int cardinality() {
+        return cardinality;
+    }
+
+    /**
+     * @return Whether this bitmap contains no ids
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Creates the intersection of two bitmaps
+     * @param bitmap1 The first bitmap
+     * @param bitmap2 The second bitmap
+     * @return A new bitmap with the ids that occur in both bitmaps
+     */
+    public static IdBitmap and(IdBitmap bitmap1, IdBitmap bitmap2) {
+        IdBitmap result = new IdBitmap();
+        int i = 0;
+        int j = 0;
+        while (i < bitmap1.size && j < bitmap2.size) {
+            if (bitmap1.keys[i] < bitmap2.keys[j]) i++;
+            else if (bitmap2.keys[j] < bitmap1.keys[i]) j++;
+            else {
+                Container container = bitmap1.containers[i].and(bitmap2.containers[j]);
+                if (container.cardinality() > 0) result.insert(result.size, bitmap1.keys[i], container);
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Performs an action for each id in this bitmap, in ascending order
+     * @param action The action
+     */
+    public void forEach(IntConsumer action) {
+        for (int i = 0; i < size; i++) containers[i].forEach(keys[i] << 16, action);
+    }
+
+    /**
+     * @return The ids in this bitmap, in ascending order
+     */
+    public int[] toArray() {
+        int[] ids = new int[cardinality()];
+        int[] index = new int[1];
+        forEach(id -> ids[index[0]++] = id);
+        return ids;
+    }
+
+    /**
+     * Searches the container with the given upper 16 bits
+     * @return The index of the container, or (-(insertion point) - 1) if there is no such container
+     */
+    private int find(int key) {
+        return Arrays.binarySearch(keys, 0, size, key);
+    }
+
+    private void insert(int index, int key, Container container) {
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            containers = Arrays.copyOf(containers, size * 2);
+        }
+        System.arraycopy(keys, index, keys, index + 1, size - index);
+        System.arraycopy(containers, index, containers, index + 1, size - index);
+        keys[index] = key;
+        containers[index] = container;
+        cardinality += container.cardinality();
+        size++;
+    }
+
+    @Override
+    public boolean equals(Object object) {
+        if (!(object instanceof IdBitmap)) return false;
+        IdBitmap other = (IdBitmap) object;
+        if (size != other.size) return false;
+        for (int i = 0; i < size; i++) {
+            if (keys[i] != other.keys[i] || !containers[i].equals(other.containers[i])) return false;
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 1;
+        for (int i = 0; i < size; i++) hash = 31 * (31 * hash + keys[i]) + containers[i].hashCode();
+        return hash;
+    }
+
+    /**
+     * Class for accumulating the union of many bitmaps.
+     * While accumulating, an array container becomes a bitmap container as soon as it is no longer small, so a bitmap
+     * is added in time proportional to its own amount of ids, instead of the amount of ids in the union so far.
+     * The containers of a union are therefore not always as small as possible, but a lookup in a bitmap container
+     * takes constant time.
+     */
+    public static class Union {
+
+        // The maximum amount of ids in an array container of the union, above this it becomes a bitmap container
+        private static final int ARRAY_LIMIT = 256;
+
+        // The union so far
+        private IdBitmap union = new IdBitmap();
+
+        /**
+         * Adds all ids of a bitmap to the union
+         * @param bitmap The bitmap, which is not changed
+         */
+        public void add(IdBitmap bitmap) {
+            for (int i = 0; i < bitmap.size; i++) {
+                int index = union.find(bitmap.keys[i]);
+                if (index < 0) {
+                    union.insert(-index - 1, bitmap.keys[i], bitmap.containers[i].copy());
+                    continue;
+                }
+                Container container = union.containers[index];
+                union.cardinality -= container.cardinality();
+                container = container.or(bitmap.containers[i]);
+                if (container instanceof ArrayContainer && container.cardinality() > ARRAY_LIMIT) container = ((ArrayContainer) container).toBitmap();
+                union.containers[index] = container;
+                union.cardinality += container.cardinality();
+            }
+        }
+
+        /**
+         * Checks whether the union so far contains an id
+         * @param id The id
+         * @return Whether the id is in the union
+         */
+        public boolean contains(int id) {
+            return union.contains(id);
+        }
+
+        /**
+         * Creates the intersection of the union so far and a bitmap
+         * @param bitmap The bitmap
+         * @return A new bitmap with the ids of the given bitmap that occur in the union
+         */
+        public IdBitmap and(IdBitmap bitmap) {
+            return IdBitmap.and(bitmap, union);
+        }
+    }
+
+    /**
+     * A container of the lower 16 bits of the ids with the same upper 16 bits
+     */
+    private abstract static class Container {
+
+        /**
+         * Adds a value to this container
+         * @return The container that contains the value, which is a bitmap container if this array container is full
+         */
+        abstract Container add(char value);
+
+        abstract boolean contains(char value);
+
+        abstract int cardinality();
+
+        abstract Container copy();
+
+        /**
+         * Adds the values of another container to this container
+         * @return The container that contains the union, which may be a new container
+         */
+        abstract Container or(Container other);
+
+        /**
+         * Creates the intersection of this container and another container
+         * @return A new container, which may be empty
+         */
+        abstract Container and(Container other);
+
+        /**
+         * Performs an action for each id in this container, in ascending order
+         * @param base The upper 16 bits of the ids
+         * @param action The action
+         */
+        abstract void forEach(int base, IntConsumer action);
+    }
+
+    /**
+     * A container that stores its values in a sorted array
+     */
+    private static class ArrayContainer extends Container {
+
+        // The values, in ascending order
+        private char[] values;
+        // The amount of values
+        private int cardinality;
+
+        private ArrayContainer() {
+            this(new char[4], 0);
+        }
+
+        private ArrayContainer(char[] values, int cardinality) {
+            this.values = values;
+            this.cardinality = cardinality;
+        }
+
+        @Override
+        Container add(char value) {
+            int index = Arrays.binarySearch(values, 0, cardinality, value);
+            if (index >= 0) return this;
+            if (cardinality == ARRAY_LIMIT) return toBitmap().add(value);
+
+            index = -index - 1;
+            if (cardinality == values.length) values = Arrays.copyOf(values, Math.min(Math.max(cardinality * 2, 4), ARRAY_LIMIT));
+            System.arraycopy(values, index, values, index + 1, cardinality - index);
+            values[index] = value;
+            cardinality++;
+            return this;
+        }
+
+        @Override
+        boolean contains(char value) {
+            return Arrays.binarySearch(values, 0, cardinality, value) >= 0;
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        Container copy() {
+            return new ArrayContainer(Arrays.copyOf(values, Math.max(cardinality, 1)), cardinality);
+        }
+
+        @Override
+        Container or(Container other) {
+            if (other instanceof BitmapContainer) return other.copy().or(this);
+
+            // We merge both sorted arrays
+            ArrayContainer array = (ArrayContainer) other;
+            char[] merged = new char[cardinality + array.cardinality];
+            int count = 0;
+            int i = 0;
+            int j = 0;
+            while (i < cardinality || j < array.cardinality) {
+                if (j == array.cardinality || (i < cardinality && values[i] < array.values[j])) merged[count++] = values[i++];
+                else if (i == cardinality || array.values[j] < values[i]) merged[count++] = array.values[j++];
+                else {
+                    merged[count++] = values[i++];
+                    j++;
+                }
+            }
+            ArrayContainer result = new ArrayContainer(merged, count);
+            return count > ARRAY_LIMIT ? result.toBitmap() : result;
+        }
+
+        @Override
+        Container and(Container other) {
+            char[] result = new char[cardinality];
+            int count = 0;
+            for (int i = 0; i < cardinality; i++) {
+                if (other.contains(values[i])) result[count++] = values[i];
+            }
+            return new ArrayContainer(result, count);
+        }
+
+        @Override
+        void forEach(int base, IntConsumer action) {
+            for (int i = 0; i < cardinality; i++) action.accept(base | values[i]);
+        }
+
+        private BitmapContainer toBitmap() {
+            BitmapContainer bitmap = new BitmapContainer();
+            for (int i = 0; i < cardinality; i++) bitmap.add(values[i]);
+            return bitmap;
+        }
+
+        @Override
+        public boolean equals(Object object) {
+            if (!(object instanceof ArrayContainer)) return false;
+            ArrayContainer other = (ArrayContainer) object;
+            return Arrays.equals(values, 0, cardinality, other.values, 0, other.cardinality);
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = 1;
+            for (int i = 0; i < cardinality; i++) hash = 31 * hash + values[i];
+            return hash;
+        }
+    }
+
+    /**
+     * A container that stores its values as a bitmap of 2^16 bits
+     */
+    private static class BitmapContainer extends Container {
+
+        // The bits, 64 values per word
+        private long[] words = new long[1024];
+        // The amount of values
+        private int cardinality;
+
+        @Override
+        Container add(char value) {
+            long bit = 1L << value;
+            if ((words[value >>> 6] & bit) == 0) {
+                words[value >>> 6] |= bit;
+                cardinality++;
+            }
+            return this;
+        }
+
+        @Override
+        boolean contains(char value) {
+            return (words[value >>> 6] & (1L << value)) != 0;
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        Container copy() {
+            BitmapContainer copy = new BitmapContainer();
+            copy.words = words.clone();
+            copy.cardinality = cardinality;
+            return copy;
+        }
+
+        @Override
+        Container or(Container other) {
+            if (other instanceof ArrayContainer) {
+                other.forEach(0, value -> add((char) value));
+                return this;
+            }
+            long[] otherWords = ((BitmapContainer) other).words;
+            cardinality = 0;
+            for (int i = 0; i < words.length; i++) {
+                words[i] |= otherWords[i];
+                cardinality += Long.bitCount(words[i]);
+            }
+            return this;
+        }
+
+        @Override
+        Container and(Container other) {
+            if (other instanceof ArrayContainer) return other.and(this);
+
+            // The intersection of two bitmaps can be small enough for an array
+            BitmapContainer result = new BitmapContainer();
+            long[] otherWords = ((BitmapContainer) other).words;
+            for (int i = 0; i < words.length; i++) {
+                result.words[i] = words[i] & otherWords[i];
+                result.cardinality += Long.bitCount(result.words[i]);
+            }
+            return result.cardinality > ARRAY_LIMIT ? result : result.toArray();
+        }
+
+        @Override
+        void forEach(int base, IntConsumer action) {
+            for (int i = 0; i < words.length; i++) {
+                long word = words[i];
+                while (word != 0) {
+                    action.accept(base | (i << 6) | Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+        }
+
+        private ArrayContainer toArray() {
+            char[] values = new char[Math.max(cardinality, 1)];
+            int[] count = new int[1];
+            forEach(0, value -> values[count[0]++] = (char) value);
+            return new ArrayContainer(values, cardinality);
+        }
+
+        @Override
+        public boolean equals(Object object) {
+            return object instanceof BitmapContainer && Arrays.equals(words, ((BitmapContainer) object).words);
+        }
+
+        @Override
+        public int hashCode() {
+            // The same hash as an array container with the same values, although both are never equal
+            int hash = 1;
+            for (int i = 0; i < words.length; i++) {
+                long word = words[i];
+                while (word != 0) {
+                    hash = 31 * hash + ((i << 6) | Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package ru.informationsystems.objects.population;
+
+import java.util.Arrays;
+
+/**
+ * Class for representing a growable column of dictionary ids.
+ * It is used for the populations of entity types and label types.
+ */
+public class IdColumn {
+
+    // The ids in this column
+    private int[] ids;
+    // The amount of ids in this column
+    private int size;
+    // The distinct ids in this column, which is built on the first removal and kept up to date afterwards
+    private KeyTable keys;
+    // The positions at which each id of keys occurs, or null if keys was not built yet
+    private PositionIndex positions;
+    // The id that is added to or looked up in keys
+    private int[] current = new int[1];
+
+    public IdColumn(int[] ids) {
+        this.ids = ids;
+        this.size = ids.length;
+    }
+
+    /**
+     * Adds an id to the end of this column
+     * @param id The id
+     */
+    public void add(int id) {
+        if (size == ids.length) ids = Arrays.copyOf(ids, Math.max(16, size * 2));
+        ids[size++] = id;
+        if (positions != null) {
+            current[0] = id;
+            positions.add(keys.add(current));
+        }
+    }
+
+    /**
+     * Removes an occurrence of an id from this column. The last id of the column takes its place.
+     * The first removal indexes all ids, after which a removal and every addition take constant time.
+     * @param id The id
+     * @return Whether the id occurred in this column
+     */
+    public boolean remove(int id) {
+        if (positions == null) {
+            keys = new KeyTable(1);
+            positions = new PositionIndex();
+            for (int i = 0; i < size; i++) {
+                current[0] = ids[i];
+                positions.add(keys.add(current));
+            }
+        }
+
+        current[0] = id;
+        int key = keys.find(current);
+        if (key < 0) return false;
+
+        // The index moves the last id in the same way as the column
+        int position = positions.first(key);
+        positions.remove(position);
+        if (positions.count(key) == 0) keys.remove(key);
+        ids[position] = ids[--size];
+        return true;
+    }
+
+    /**
+     * @return The amount of ids in this column
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Retrieves an id in this column
+     * @param index The index of the id
+     * @return The id
+     */
+    public int get(int index) {
+        if (index < 0 || index >= size) throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        return ids[index];
+    }
+}
@@ -0,0 +1,219 @@
+package ru.informationsystems.objects.population;
+
+import java.util.Arrays;
+
+/**
+ * Class for representing a hash table of the combinations of ids of rows on a number of columns (keys).
+ * Each distinct key is numbered in the order in which it was first added, so the number can index an array with a
+ * value for each key. The keys are stored in flat arrays of ids instead of an object per key, so a table with many keys
+ * takes little memory, and costs the garbage collector next to nothing while it is kept.
+ *
+ * A key can be removed again, after which its number is given to the next new key.
+ */
+public class KeyTable {
+
+    // The amount of ids of each key
+    private int width;
+    // The ids of each key, in the order of their numbers
+    private int[] keys;
+    // The hash of each key, in the order of their numbers
+    private int[] hashes = new int[16];
+    // The amount of numbers that were given to keys, including the numbers of removed keys
+    private int used;
+    // The numbers of the removed keys, which are given to new keys first
+    private int[] free = new int[0];
+    // The amount of numbers of removed keys
+    private int freeCount;
+    // For each slot in the hash table, the number of its key plus one, or 0 for an empty slot
+    private int[] slots = new int[32];
+    // The mask used to map a hash onto a slot
+    private int mask = 31;
+    // The amount of keys in the table
+    private int size;
+    // The ids of the key that is added or looked up, so a row can be hashed without creating its key
+    private int[] current;
+
+    /**
+     * Creates an empty table
+     * @param width The amount of ids of each key
+     */
+    public KeyTable(int width) {
+        this.width = width;
+        this.keys = new int[16 * width];
+        this.current = new int[width];
+    }
+
+    /**
+     * Adds the key of the current row of a view, if it was not added before
+     * @param rows The view, which is positioned at the row
+     * @param columns The column indexes that make up the key
+     * @return The number of the key, which equals the previous size of the table if the key is new and no key was removed
+     */
+    public int add(RowView rows, int[] columns) {
+        for (int i = 0; i < width; i++) current[i] = rows.getId(columns[i]);
+        return add(current);
+    }
+
+    /**
+     * Looks up the key of the current row of a view
+     * @param rows The view, which is positioned at the row
+     * @param columns The column indexes that make up the key
+     * @return The number of the key, or -1 if it was not added
+     */
+    public int find(RowView rows, int[] columns) {
+        for (int i = 0; i < width; i++) current[i] = rows.getId(columns[i]);
+        return find(current);
+    }
+
+    /**
+     * Adds the key of a row of a table, if it was not added before
+     * @param table The table
+     * @param row The row index
+     * @param columns The column indexes that make up the key
+     * @return The number of the key, which equals the previous size of the table if the key is new and no key was removed
+     */
+    public int add(PopulationTable table, int row, int[] columns) {
+        for (int i = 0; i < width; i++) current[i] = table.getId(row, columns[i]);
+        return add(current);
+    }
+
+    /**
+     * Looks up the key of a row of a table
+     * @param table The table
+     * @param row The row index
+     * @param columns The column indexes that make up the key
+     * @return The number of the key, or -1 if it was not added
+     */
+    public int find(PopulationTable table, int row, int[] columns) {
+        for (int i = 0; i < width; i++) current[i] = table.getId(row, columns[i]);
+        return find(current);
+    }
+
+    /**
+     * Adds a key, if it was not added before
+     * @param ids The ids of the key
+     * @return The number of the key, which equals the previous size of the table if the key is new and no key was removed
+     */
+    public int add(int[] ids) {
+        int hash = hash(ids);
+        int slot = slot(ids, hash);
+        if (slots[slot] != 0) return slots[slot] - 1;
+
+        int key;
+        if (freeCount > 0) {
+            key = free[--freeCount];
+        } else {
+            if (used == hashes.length) {
+                hashes = Arrays.copyOf(hashes, used * 2);
+                keys = Arrays.copyOf(keys, used * 2 * width);
+            }
+            key = used++;
+        }
+        System.arraycopy(ids, 0, keys, key * width, width);
+        hashes[key] = hash;
+        slots[slot] = key + 1;
+        size++;
+        // We keep the table at most half full, so the probe sequences stay short
+        if (size * 2 > slots.length) resize();
+        return key;
+    }
+
+    /**
+     * Looks up a key
+     * @param ids The ids of the key
+     * @return The number of the key, or -1 if it was not added
+     */
+    public int find(int[] ids) {
+        return slots[slot(ids, hash(ids))] - 1;
+    }
+
+    /**
+     * Removes a key. The keys after it in its probe sequence are shifted back, so no slot has to be marked as deleted.
+     * @param key The number of the key, which should be in the table
+     */
+    public void remove(int key) {
+        int slot = hashes[key] & mask;
+        while (slots[slot] != key + 1) slot = (slot + 1) & mask;
+        slots[slot] = 0;
+
+        // A key after the empty slot moves into it, unless its own slot lies between the empty slot and its position
+        for (int next = (slot + 1) & mask; slots[next] != 0; next = (next + 1) & mask) {
+            int home = hashes[slots[next] - 1] & mask;
+            if (((next - home) & mask) < ((next - slot) & mask)) continue;
+            slots[slot] = slots[next];
+            slots[next] = 0;
+            slot = next;
+        }
+
+        if (freeCount == free.length) free = Arrays.copyOf(free, Math.max(16, freeCount * 2));
+        free[freeCount++] = key;
+        size--;
+    }
+
+    /**
+     * @return The amount of keys in the table
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Finds the slot of a key, using linear probing
+     * @param ids The ids of the key
+     * @param hash The hash of the key
+     * @return The slot that contains the key, or the empty slot where it would be inserted
+     */
+    private int slot(int[] ids, int hash) {
+        int slot = hash & mask;
+        while (slots[slot] != 0 && !matches(slots[slot] - 1, ids, hash)) slot = (slot + 1) & mask;
+        return slot;
+    }
+
+    /**
+     * Checks whether a key in the table equals the given ids
+     * @param key The number of the key in the table
+     * @param ids The ids
+     * @param hash The hash of the ids
+     * @return Whether they are equal
+     */
+    private boolean matches(int key, int[] ids, int hash) {
+        if (hashes[key] != hash) return false;
+        int offset = key * width;
+        for (int i = 0; i < width; i++) {
+            if (keys[offset + i] != ids[i]) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Doubles the amount of slots, and inserts all keys again
+     */
+    private void resize() {
+        int[] oldSlots = slots;
+        slots = new int[oldSlots.length * 2];
+        mask = slots.length - 1;
+        for (int oldSlot : oldSlots) {
+            if (oldSlot == 0) continue;
+            int slot = hashes[oldSlot - 1] & mask;
+            while (slots[slot] != 0) slot = (slot + 1) & mask;
+            slots[slot] = oldSlot;
+        }
+    }
+
+    /**
+     * Hashes the ids of a key. Ids are numbered consecutively, and the ids of a key are often related, so a linear
+     * combination of them would fill runs of adjacent slots. We therefore mix all bits of the combination, as the
+     * finalizer of MurmurHash3 does, before the mask keeps the lowest bits.
+     * @param ids The ids
+     * @return The hash
+     */
+    private static int hash(int[] ids) {
+        int hash = 0;
+        for (int id : ids) hash = hash * 0x9E3779B9 + id;
+        hash ^= hash >>> 16;
+        hash *= 0x85EBCA6B;
+        hash ^= hash >>> 13;
+        hash *= 0xC2B2AE35;
+        return hash ^ hash >>> 16;
+    }
+}
@@ -0,0 +1,39 @@
+package ru.informationsystems.objects.population;
+
+/**
+ * Class for counting, for each element of a power type population, the amount of sets that contain it.
+ * Only whether an element occurs in no set, in one set or in several sets is needed, so the counts are kept as two
+ * bitmaps of dictionary ids: the union of all sets, and the union of the pairwise intersections. Both are accumulated
+ * in a single pass over all sets, a container of ids at a time, after which the count of an element can be looked up
+ * by its id. The unions are not made as small as possible, since a lookup in a bitmap container takes constant time.
+ */
+public class MembershipCounts {
+
+    // The ids of the elements that occur in at least one set
+    private IdBitmap.Union once = new IdBitmap.Union();
+    // The ids of the elements that occur in at least two sets
+    private IdBitmap.Union twice = new IdBitmap.Union();
+
+    /**
+     * Counts the sets of a power type population that contain each element
+     * @param table The sets of the power type, or null if the power type has no population
+     */
+    public MembershipCounts(PowerTypeTable table) {
+        for (int i = 0; table != null && i < table.size(); i++) {
+            IdBitmap set = table.getSet(i);
+            // An element of this set that occurred in an earlier set occurs at least twice
+            twice.add(once.and(set));
+            once.add(set);
+        }
+    }
+
+    /**
+     * Retrieves the amount of sets that contain an element, counted up to two
+     * @param id The dictionary id of the element
+     * @return 0 if no set contains the element, 1 if a single set contains it, and 2 otherwise
+     */
+    public int getCount(int id) {
+        if (twice.contains(id)) return 2;
+        return once.contains(id) ? 1 : 0;
+    }
+}
@@ -2,24 +2,40 @@ package ru.informationsystems.objects.population;
 
 import ru.informationsystems.objects.types.*;
 
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
-import java.util.Set;
+import java.util.*;
 
 /**
- * Class for representing a population of an information structure
+ * Class for representing a population of an information structure.
+ * All values are stored as ids in a shared value dictionary. Entity types and label types are stored as a single
+ * column of ids, fact types are stored as a table with one column of ids per predicator, and power types are stored as
+ * a table with a bitmap of ids per set. Values of fact types that are power type sets are resolved to their sets when
+ * they are added.
+ *
+ * A population can be changed one element at a time. Every change is passed to the registered listeners, so that
+ * they can keep track of the population without reading it again. A population should not be changed while it is
+ * being validated.
  */
 public class Population {
 
+    // The dictionary of all values in this population
+    private ValueDictionary dictionary = new ValueDictionary();
     // The populations of entity types
-    private Map<EntityType, List<String>> entityTypePopulations = new HashMap<>();
+    private Map<EntityType, IdColumn> entityTypePopulations = new HashMap<>();
     // The populations of label types
-    private Map<LabelType, List<String>> labelTypePopulations = new HashMap<>();
+    private Map<LabelType, IdColumn> labelTypePopulations = new HashMap<>();
     // The populations of fact types
-    private Map<FactType, List<Map<Predicator, String>>> factTypePopulations = new HashMap<>();
+    private Map<FactType, PopulationTable> factTypePopulations = new HashMap<>();
     // The populations of power types
-    private Map<PowerType, List<Set<String>>> powerTypePopulations = new HashMap<>();
+    private Map<PowerType, PowerTypeTable> powerTypePopulations = new HashMap<>();
+    // The listeners that are notified of changes
+    private List<PopulationListener> listeners = new ArrayList<>();
+
+    /**
+     * @return The dictionary of all values in this population
+     */
+    public ValueDictionary getDictionary() {
+        return dictionary;
+    }
 
     /**
      * Retrieves the population of an entity type
@@ -27,6 +43,15 @@ public class Population {
      * @return the population that belongs to this entity type
      */
     public List<String> getEntityTypePopulation(EntityType entityType) {
+        return asValues(entityTypePopulations.get(entityType));
+    }
+
+    /**
+     * Retrieves the population of an entity type as a column of dictionary ids
+     * @param entityType The entity type we want to retrieve the population of
+     * @return the ids of the elements of this entity type
+     */
+    public IdColumn getEntityTypeColumn(EntityType entityType) {
         return entityTypePopulations.get(entityType);
     }
 
@@ -36,6 +61,15 @@ public class Population {
      * @return the population that belongs to this label type
      */
     public List<String> getLabelTypePopulation(LabelType labelType) {
+        return asValues(labelTypePopulations.get(labelType));
+    }
+
+    /**
+     * Retrieves the population of a label type as a column of dictionary ids
+     * @param labelType The label type we want to retrieve the population of
+     * @return the ids of the elements of this label type
+     */
+    public IdColumn getLabelTypeColumn(LabelType labelType) {
         return labelTypePopulations.get(labelType);
     }
 
@@ -45,6 +79,16 @@ public class Population {
      * @return the population that belongs to this fact type
      */
     public List<Map<Predicator, String>> getFactTypePopulations(FactType factType) {
+        PopulationTable table = factTypePopulations.get(factType);
+        return table == null ? null : table.asRows();
+    }
+
+    /**
+     * Retrieves the population of a fact type as a table of dictionary ids
+     * @param factType The fact type we want to retrieve the population of
+     * @return the table that belongs to this fact type
+     */
+    public PopulationTable getFactTypeTable(FactType factType) {
         return factTypePopulations.get(factType);
     }
 
@@ -54,16 +98,50 @@ public class Population {
      * @return the population that belongs to this power type
      */
     public List<Set<String>> getPowerTypePopulation(PowerType powerType) {
+        PowerTypeTable table = powerTypePopulations.get(powerType);
+        return table == null ? null : table.asSets();
+    }
+
+    /**
+     * Retrieves the population of a power type as a table of bitmaps of dictionary ids
+     * @param powerType The power type we want to retrieve the population of
+     * @return the table that belongs to this power type
+     */
+    public PowerTypeTable getPowerTypeTable(PowerType powerType) {
         return powerTypePopulations.get(powerType);
     }
 
+    /**
+     * Retrieves the size of the population of an object type: the amount of elements of an entity type or label type,
+     * the amount of rows of a fact type, and the amount of sets of a power type
+     * @param objectType The object type we want to retrieve the size of
+     * @return the size, which is 0 if the object type has no population
+     */
+    public int getSize(ObjectType objectType) {
+        if (objectType instanceof EntityType) {
+            IdColumn column = entityTypePopulations.get(objectType);
+            return column == null ? 0 : column.size();
+        } else if (objectType instanceof LabelType) {
+            IdColumn column = labelTypePopulations.get(objectType);
+            return column == null ? 0 : column.size();
+        } else if (objectType instanceof FactType) {
+            PopulationTable table = factTypePopulations.get(objectType);
+            return table == null ? 0 : table.size();
+        } else if (objectType instanceof PowerType) {
+            PowerTypeTable table = powerTypePopulations.get(objectType);
+            return table == null ? 0 : table.size();
+        }
+        return 0;
+    }
+
     /**
      * Adds a population to the list of entity type populations
      * @param entityType The entity type that the population belongs to
      * @param population The population of this entity type
      */
     public void addEntityTypePopulation(EntityType entityType, List<String> population) {
-        entityTypePopulations.put(entityType, population);
+        entityTypePopulations.put(entityType, asColumn(population));
+        listeners.forEach(listener -> listener.populationReplaced(entityType));
     }
 
     /**
@@ -72,16 +150,59 @@ public class Population {
      * @param population The population of this label type
      */
     public void addLabelTypePopulation(LabelType labelType, List<String> population) {
-        labelTypePopulations.put(labelType, population);
+        labelTypePopulations.put(labelType, asColumn(population));
+        listeners.forEach(listener -> listener.populationReplaced(labelType));
+    }
+
+    /**
+     * Adds a column of ids to the list of entity type populations
+     * @param entityType The entity type that the population belongs to
+     * @param column The ids of the elements of this entity type, they should belong to the dictionary of this population
+     */
+    public void addEntityTypeColumn(EntityType entityType, int[] column) {
+        entityTypePopulations.put(entityType, new IdColumn(column));
+        listeners.forEach(listener -> listener.populationReplaced(entityType));
+    }
+
+    /**
+     * Adds a column of ids to the list of label type populations
+     * @param labelType The label type that the population belongs to
+     * @param column The ids of the elements of this label type, they should belong to the dictionary of this population
+     */
+    public void addLabelTypeColumn(LabelType labelType, int[] column) {
+        labelTypePopulations.put(labelType, new IdColumn(column));
+        listeners.forEach(listener -> listener.populationReplaced(labelType));
     }
 
     /**
-     * Adds a population to the list of fact type populations
+     * Adds a population to the list of fact type populations.
+     * The columns of the table are the predicators of the fact type, followed by any other predicator
+     * that occurs in the given rows.
      * @param factType The fact type that the population belongs to
      * @param population The population of this fact type
      */
     public void addFactTypePopulation(FactType factType, List<Map<Predicator, String>> population) {
-        factTypePopulations.put(factType, population);
+        Set<Predicator> predicators = new LinkedHashSet<>(factType.getPredicators());
+        for (Map<Predicator, String> row : population) predicators.addAll(row.keySet());
+
+        PopulationTable table = new PopulationTable(dictionary, new ArrayList<>(predicators), population.size());
+        for (Map<Predicator, String> row : population) table.addRow(row);
+        resolveSets(table, 0);
+
+        factTypePopulations.put(factType, table);
+        listeners.forEach(listener -> listener.populationReplaced(factType));
+    }
+
+    /**
+     * Adds a table to the list of fact type populations
+     * @param factType The fact type that the population belongs to
+     * @param table The table of this fact type, its ids should belong to the dictionary of this population
+     */
+    public void addFactTypeTable(FactType factType, PopulationTable table) {
+        if (table.getDictionary() != dictionary) throw new IllegalArgumentException("The given table does not belong to this population.");
+        resolveSets(table, 0);
+        factTypePopulations.put(factType, table);
+        listeners.forEach(listener -> listener.populationReplaced(factType));
     }
 
     /**
@@ -90,6 +211,180 @@ public class Population {
      * @param population The population of this power type
      */
     public void addPowerTypePopulation(PowerType powerType, List<Set<String>> population) {
-        powerTypePopulations.put(powerType, population);
+        PowerTypeTable table = new PowerTypeTable(dictionary);
+        for (Set<String> set : population) table.addSet(set);
+        powerTypePopulations.put(powerType, table);
+        listeners.forEach(listener -> listener.populationReplaced(powerType));
+    }
+
+    /**
+     * Adds an element to the population of an entity type
+     * @param entityType The entity type
+     * @param value The value of the element
+     */
+    public void addEntity(EntityType entityType, String value) {
+        entityTypePopulations.computeIfAbsent(entityType, type -> new IdColumn(new int[0])).add(dictionary.intern(value));
+        listeners.forEach(listener -> listener.entityAdded(entityType, value));
+    }
+
+    /**
+     * Removes an element from the population of an entity type
+     * @param entityType The entity type
+     * @param value The value of the element
+     * @return Whether the element occurred in the population
+     */
+    public boolean removeEntity(EntityType entityType, String value) {
+        IdColumn column = entityTypePopulations.get(entityType);
+        if (column == null || !column.remove(dictionary.lookup(value))) return false;
+        listeners.forEach(listener -> listener.entityRemoved(entityType, value));
+        return true;
+    }
+
+    /**
+     * Adds an element to the population of a label type
+     * @param labelType The label type
+     * @param value The value of the element
+     */
+    public void addLabel(LabelType labelType, String value) {
+        labelTypePopulations.computeIfAbsent(labelType, type -> new IdColumn(new int[0])).add(dictionary.intern(value));
+        listeners.forEach(listener -> listener.labelAdded(labelType, value));
+    }
+
+    /**
+     * Removes an element from the population of a label type
+     * @param labelType The label type
+     * @param value The value of the element
+     * @return Whether the element occurred in the population
+     */
+    public boolean removeLabel(LabelType labelType, String value) {
+        IdColumn column = labelTypePopulations.get(labelType);
+        if (column == null || !column.remove(dictionary.lookup(value))) return false;
+        listeners.forEach(listener -> listener.labelRemoved(labelType, value));
+        return true;
+    }
+
+    /**
+     * Inserts a row into the population of a fact type.
+     * If the fact type has no population yet, a table with the predicators of the fact type is created.
+     * @param factType The fact type
+     * @param row The row, mapping each predicator to its value
+     */
+    public void insertFact(FactType factType, Map<Predicator, String> row) {
+        PopulationTable table = factTypePopulations.computeIfAbsent(factType,
+                type -> new PopulationTable(dictionary, type.getPredicators(), 16));
+        table.addRow(row);
+        resolveSets(table, table.size() - 1);
+        listeners.forEach(listener -> listener.factInserted(factType, table, table.size() - 1));
+    }
+
+    /**
+     * Deletes a row from the population of a fact type. The row has to match all columns of the table.
+     * The last row of the table takes the place of the deleted row.
+     * @param factType The fact type
+     * @param row The row, mapping each predicator to its value
+     * @return Whether the row occurred in the population
+     */
+    public boolean deleteFact(FactType factType, Map<Predicator, String> row) {
+        PopulationTable table = factTypePopulations.get(factType);
+        if (table == null) return false;
+
+        // We look up the ids of the row; a value that is not in the dictionary cannot occur in the table
+        List<Predicator> predicators = table.getPredicators();
+        int[] ids = new int[predicators.size()];
+        for (int column = 0; column < ids.length; column++) {
+            String value = row.get(predicators.get(column));
+            ids[column] = dictionary.lookup(value);
+            if (value != null && ids[column] == ValueDictionary.NO_VALUE) return false;
+        }
+
+        int index = table.indexOf(ids);
+        if (index < 0) return false;
+        listeners.forEach(listener -> listener.factDeleted(factType, table, index));
+        table.removeRow(index);
+        return true;
+    }
+
+    /**
+     * Adds a set to the population of a power type
+     * @param powerType The power type
+     * @param set The set
+     */
+    public void addPowerTypeSet(PowerType powerType, Set<String> set) {
+        powerTypePopulations.computeIfAbsent(powerType, type -> new PowerTypeTable(dictionary)).addSet(set);
+        listeners.forEach(listener -> listener.powerTypeSetAdded(powerType, set));
+    }
+
+    /**
+     * Removes a set from the population of a power type
+     * @param powerType The power type
+     * @param set The set
+     * @return Whether the set occurred in the population
+     */
+    public boolean removePowerTypeSet(PowerType powerType, Set<String> set) {
+        PowerTypeTable table = powerTypePopulations.get(powerType);
+        if (table == null || !table.removeSet(set)) return false;
+        listeners.forEach(listener -> listener.powerTypeSetRemoved(powerType, set));
+        return true;
+    }
+
+    /**
+     * Registers a listener that is notified of every change of this population
+     * @param listener The listener
+     */
+    public void addListener(PopulationListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Removes a listener
+     * @param listener The listener
+     */
+    public void removeListener(PopulationListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Resolves the values of the predicators with a power type base as power type sets, so that constraints can look up
+     * the elements of a set by the id of its value
+     * @param table The table of a fact type
+     * @param from The first row that has to be resolved
+     */
+    private void resolveSets(PopulationTable table, int from) {
+        List<Predicator> predicators = table.getPredicators();
+        for (int column = 0; column < predicators.size(); column++) {
+            if (!(predicators.get(column).getBase() instanceof PowerType)) continue;
+            for (int row = from; row < table.size(); row++) dictionary.resolveSet(table.getId(row, column));
+        }
+    }
+
+    /**
+     * Converts a list of values to a column of dictionary ids
+     * @param values The values
+     * @return The column of ids
+     */
+    private IdColumn asColumn(List<String> values) {
+        int[] column = new int[values.size()];
+        for (int i = 0; i < column.length; i++) column[i] = dictionary.intern(values.get(i));
+        return new IdColumn(column);
+    }
+
+    /**
+     * Creates a read only view on a column of dictionary ids
+     * @param column The column of ids
+     * @return The list of values, or null if there is no column
+     */
+    private List<String> asValues(IdColumn column) {
+        if (column == null) return null;
+        return new AbstractList<String>() {
+            @Override
+            public String get(int index) {
+                return dictionary.get(column.get(index));
+            }
+
+            @Override
+            public int size() {
+                return column.size();
+            }
+        };
     }
 }
@@ -0,0 +1,76 @@
+package ru.informationsystems.objects.population;
+
+import ru.informationsystems.objects.types.*;
+
+import java.util.Set;
+
+/**
+ * Listener for the changes of a population.
+ * All methods do nothing by default, so a listener only has to implement the changes it is interested in.
+ */
+public interface PopulationListener {
+
+    /**
+     * Called after an element was added to the population of an entity type
+     * @param entityType The entity type
+     * @param value The value of the element
+     */
+    default void entityAdded(EntityType entityType, String value) {}
+
+    /**
+     * Called after an element was removed from the population of an entity type
+     * @param entityType The entity type
+     * @param value The value of the element
+     */
+    default void entityRemoved(EntityType entityType, String value) {}
+
+    /**
+     * Called after an element was added to the population of a label type
+     * @param labelType The label type
+     * @param value The value of the element
+     */
+    default void labelAdded(LabelType labelType, String value) {}
+
+    /**
+     * Called after an element was removed from the population of a label type
+     * @param labelType The label type
+     * @param value The value of the element
+     */
+    default void labelRemoved(LabelType labelType, String value) {}
+
+    /**
+     * Called after a row was inserted into the population of a fact type
+     * @param factType The fact type
+     * @param table The table of the fact type
+     * @param row The index of the new row in the table
+     */
+    default void factInserted(FactType factType, PopulationTable table, int row) {}
+
+    /**
+     * Called before a row is deleted from the population of a fact type
+     * @param factType The fact type
+     * @param table The table of the fact type
+     * @param row The index of the row that is deleted
+     */
+    default void factDeleted(FactType factType, PopulationTable table, int row) {}
+
+    /**
+     * Called after a set was added to the population of a power type
+     * @param powerType The power type
+     * @param set The set
+     */
+    default void powerTypeSetAdded(PowerType powerType, Set<String> set) {}
+
+    /**
+     * Called after a set was removed from the population of a power type
+     * @param powerType The power type
+     * @param set The set
+     */
+    default void powerTypeSetRemoved(PowerType powerType, Set<String> set) {}
+
+    /**
+     * Called after the whole population of an object type was replaced
+     * @param objectType The object type
+     */
+    default void populationReplaced(ObjectType objectType) {}
+}
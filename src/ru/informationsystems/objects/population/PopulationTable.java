@@ -0,0 +1,321 @@
+package ru.informationsystems.objects.population;
+
+import ru.informationsystems.objects.types.Predicator;
+
+import java.util.*;
+
+/**
+ * Class for representing a table of rows over a list of predicators.
+ * The table is stored column wise: for each predicator there is one array with the dictionary ids of its values.
+ * It is used for the populations of fact types, and for the results of collapsing several fact types.
+ */
+public class PopulationTable {
+
+    // The dictionary that the ids in this table belong to
+    private ValueDictionary dictionary;
+    // The predicators of this table, in column order
+    private List<Predicator> predicators;
+    // The column index of each predicator
+    private Map<Predicator, Integer> columnIndexes = new HashMap<>();
+    // The columns of this table, each column contains the ids of one predicator
+    private int[][] columns;
+    // The amount of rows in this table
+    private int size;
+    // The amount of distinct ids in each column, or -1 if it has not been counted yet. Null after each change.
+    private volatile int[] distinctCounts;
+    // The ids of each distinct row, which is built on the first search for a row and kept up to date afterwards
+    private KeyTable rowKeys;
+    // The rows at which each distinct row of rowKeys occurs, or null if rowKeys was not built yet
+    private PositionIndex rowPositions;
+    // The index of each column, which make up the key of a row in rowKeys
+    private int[] allColumns;
+
+    public PopulationTable(ValueDictionary dictionary, List<Predicator> predicators, int capacity) {
+        this.dictionary = dictionary;
+        this.predicators = new ArrayList<>(predicators);
+        this.columns = new int[predicators.size()][Math.max(capacity, 1)];
+        for (int i = 0; i < predicators.size(); i++) columnIndexes.put(predicators.get(i), i);
+    }
+
+    /**
+     * Adds a row of ids to this table
+     * @param ids The ids of the row, in column order
+     */
+    public void addRow(int[] ids) {
+        ensureCapacity(size + 1);
+        for (int column = 0; column < columns.length; column++) columns[column][size] = ids[column];
+        size++;
+        distinctCounts = null;
+        if (rowPositions != null) rowPositions.add(rowKeys.add(this, size - 1, allColumns));
+    }
+
+    /**
+     * Adds a row of values to this table. The values are added to the dictionary of this table.
+     * Predicators that are not a column of this table are ignored.
+     * @param row The row, mapping each predicator to its value
+     */
+    public void addRow(Map<Predicator, String> row) {
+        ensureCapacity(size + 1);
+        for (int column = 0; column < columns.length; column++) {
+            columns[column][size] = dictionary.intern(row.get(predicators.get(column)));
+        }
+        size++;
+        distinctCounts = null;
+        if (rowPositions != null) rowPositions.add(rowKeys.add(this, size - 1, allColumns));
+    }
+
+    /**
+     * Removes a row from this table. The last row of the table takes its place.
+     * @param row The row index
+     */
+    public void removeRow(int row) {
+        if (row < 0 || row >= size) throw new IndexOutOfBoundsException("Index: " + row + ", Size: " + size);
+        if (rowPositions != null) {
+            // The index moves the last row in the same way as the columns
+            int key = rowPositions.remove(row);
+            if (rowPositions.count(key) == 0) rowKeys.remove(key);
+        }
+        size--;
+        for (int column = 0; column < columns.length; column++) columns[column][row] = columns[column][size];
+        distinctCounts = null;
+    }
+
+    /**
+     * Searches a row with the given ids.
+     * The first search indexes all rows, after which a search and every change of this table take constant time.
+     * @param ids The ids of the row, in column order
+     * @return The row index, or -1 if there is no such row
+     */
+    public int indexOf(int[] ids) {
+        if (rowPositions == null) {
+            allColumns = new int[columns.length];
+            for (int column = 0; column < columns.length; column++) allColumns[column] = column;
+            rowKeys = new KeyTable(columns.length);
+            rowPositions = new PositionIndex();
+            for (int row = 0; row < size; row++) rowPositions.add(rowKeys.add(this, row, allColumns));
+        }
+        return rowPositions.first(rowKeys.find(ids));
+    }
+
+    /**
+     * Grows the columns of this table, such that they can contain at least the given amount of rows
+     * @param capacity The amount of rows
+     */
+    private void ensureCapacity(int capacity) {
+        if (columns.length == 0 || columns[0].length >= capacity) return;
+        int newCapacity = Math.max(capacity, columns[0].length * 2);
+        for (int column = 0; column < columns.length; column++) columns[column] = Arrays.copyOf(columns[column], newCapacity);
+    }
+
+    /**
+     * @return The amount of rows in this table
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Counts the distinct ids in a column, not counting rows without a value.
+     * The count is remembered until the table changes.
+     * @param column The column index
+     * @return The amount of distinct ids
+     */
+    public int getDistinctCount(int column) {
+        int[] counts = distinctCounts;
+        if (counts == null) {
+            counts = new int[columns.length];
+            Arrays.fill(counts, -1);
+            distinctCounts = counts;
+        }
+        if (counts[column] < 0) counts[column] = countDistinct(columns[column], size);
+        return counts[column];
+    }
+
+    /**
+     * Counts the distinct ids in the first entries of a column, using an open addressing hash set
+     */
+    private static int countDistinct(int[] ids, int size) {
+        int[] seen = new int[Integer.highestOneBit(Math.max(size, 1) * 2 - 1) << 1];
+        Arrays.fill(seen, ValueDictionary.NO_VALUE);
+        int mask = seen.length - 1;
+        int count = 0;
+        for (int row = 0; row < size; row++) {
+            int id = ids[row];
+            if (id == ValueDictionary.NO_VALUE) continue;
+            int slot = (id * 0x9E3779B9) >>> 1 & mask;
+            while (seen[slot] != ValueDictionary.NO_VALUE && seen[slot] != id) slot = (slot + 1) & mask;
+            if (seen[slot] == ValueDictionary.NO_VALUE) {
+                seen[slot] = id;
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Estimates the memory used by the columns of this table, including the capacity that is not used yet
+     * @return The amount of bytes
+     */
+    public long getMemoryUsage() {
+        return columns.length == 0 ? 0 : 4L * columns.length * columns[0].length;
+    }
+
+    /**
+     * @return The dictionary that the ids in this table belong to
+     */
+    public ValueDictionary getDictionary() {
+        return dictionary;
+    }
+
+    /**
+     * @return The predicators of this table, in column order
+     */
+    public List<Predicator> getPredicators() {
+        return Collections.unmodifiableList(predicators);
+    }
+
+    /**
+     * Retrieves the column index of a predicator
+     * @param predicator The predicator
+     * @return The column index, or -1 if the predicator is not a column of this table
+     */
+    public int getColumnIndex(Predicator predicator) {
+        Integer index = columnIndexes.get(predicator);
+        return index == null ? -1 : index;
+    }
+
+    /**
+     * Retrieves the column indexes of a collection of predicators.
+     * Predicators that are not a column of this table are left out.
+     * @param predicators The predicators
+     * @return The column indexes, in the iteration order of the predicators
+     */
+    public int[] getColumnIndexes(Collection<Predicator> predicators) {
+        return predicators.stream()
+                .mapToInt(this::getColumnIndex)
+                .filter(index -> index >= 0)
+                .toArray();
+    }
+
+    /**
+     * Retrieves the column of a predicator. Only the first size() entries of the column are valid.
+     * The column is not copied, so it should not be modified.
+     * @param column The column index
+     * @return The ids of the values in this column
+     */
+    public int[] getColumn(int column) {
+        return columns[column];
+    }
+
+    /**
+     * Retrieves the id of a single value in this table
+     * @param row The row index
+     * @param column The column index
+     * @return The id of the value, or ValueDictionary.NO_VALUE if the row has no value for this column
+     */
+    public int getId(int row, int column) {
+        return columns[column][row];
+    }
+
+    /**
+     * Retrieves a view on a single row of this table
+     * @param row The row index
+     * @return The row, mapping each predicator to its value
+     */
+    public Map<Predicator, String> getRow(int row) {
+        return new RowView(row);
+    }
+
+    /**
+     * Creates a cursor over the rows of this table
+     * @return The cursor, positioned before the first row
+     */
+    public RowCursor cursor() {
+        return new RowCursor() {
+            // The index of the current row
+            private int row = -1;
+
+            @Override
+            public List<Predicator> getPredicators() {
+                return PopulationTable.this.getPredicators();
+            }
+
+            @Override
+            public ValueDictionary getDictionary() {
+                return dictionary;
+            }
+
+            @Override
+            public boolean next() {
+                if (row < size) row++;
+                return row < size;
+            }
+
+            @Override
+            public int getId(int column) {
+                return columns[column][row];
+            }
+
+            @Override
+            public int getColumnIndex(Predicator predicator) {
+                return PopulationTable.this.getColumnIndex(predicator);
+            }
+        };
+    }
+
+    /**
+     * Retrieves a view on all rows of this table
+     * @return The list of rows
+     */
+    public List<Map<Predicator, String>> asRows() {
+        return new AbstractList<Map<Predicator, String>>() {
+            @Override
+            public Map<Predicator, String> get(int index) {
+                if (index < 0 || index >= size) throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+                return new RowView(index);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    /**
+     * A read only view on a row of the table. Columns without a value are left out of the view.
+     */
+    private class RowView extends AbstractMap<Predicator, String> {
+
+        // The index of the row
+        private int row;
+
+        private RowView(int row) {
+            this.row = row;
+        }
+
+        @Override
+        public String get(Object key) {
+            if (!(key instanceof Predicator)) return null;
+            int column = getColumnIndex((Predicator) key);
+            return column < 0 ? null : dictionary.get(columns[column][row]);
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return get(key) != null;
+        }
+
+        @Override
+        public Set<Entry<Predicator, String>> entrySet() {
+            Set<Entry<Predicator, String>> entries = new LinkedHashSet<>();
+            for (int column = 0; column < columns.length; column++) {
+                int id = columns[column][row];
+                if (id != ValueDictionary.NO_VALUE) {
+                    entries.add(new SimpleImmutableEntry<>(predicators.get(column), dictionary.get(id)));
+                }
+            }
+            return Collections.unmodifiableSet(entries);
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package ru.informationsystems.objects.population;
+
+import java.util.Arrays;
+
+/**
+ * Class for representing an index from numbered keys to the positions at which they occur in a list, such as the rows
+ * of a table or the ids of a column. The positions of each key form a chain, so a position can be added or removed, and
+ * the positions of a key can be listed, in constant time.
+ *
+ * Positions are added at the end of the list. A removed position is taken by the last position, as in the tables and
+ * columns of a population, so the index stays equal to the list without shifting it.
+ */
+public class PositionIndex {
+
+    // The first position of each key, or -1 if the key does not occur
+    private int[] heads = new int[0];
+    // The amount of positions of each key
+    private int[] counts = new int[0];
+    // The key at each position
+    private int[] keys = new int[16];
+    // For each position, the next position of the same key, or -1 if there is none
+    private int[] next = new int[16];
+    // For each position, the previous position of the same key, or -1 if there is none
+    private int[] previous = new int[16];
+    // The amount of positions
+    private int size;
+
+    /**
+     * Adds a position at the end of the list
+     * @param key The number of the key at this position
+     * @return The position
+     */
+    public int add(int key) {
+        if (key >= heads.length) {
+            int length = Math.max(16, Math.max(key + 1, heads.length * 2));
+            int oldLength = heads.length;
+            heads = Arrays.copyOf(heads, length);
+            counts = Arrays.copyOf(counts, length);
+            Arrays.fill(heads, oldLength, length, -1);
+        }
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            next = Arrays.copyOf(next, size * 2);
+            previous = Arrays.copyOf(previous, size * 2);
+        }
+
+        int position = size++;
+        keys[position] = key;
+        previous[position] = -1;
+        next[position] = heads[key];
+        if (heads[key] >= 0) previous[heads[key]] = position;
+        heads[key] = position;
+        counts[key]++;
+        return position;
+    }
+
+    /**
+     * Removes a position. The last position takes its place.
+     * @param position The position
+     * @return The number of the key at the removed position
+     */
+    public int remove(int position) {
+        if (position < 0 || position >= size) throw new IndexOutOfBoundsException("Index: " + position + ", Size: " + size);
+        int key = keys[position];
+        unlink(position);
+        counts[key]--;
+
+        int last = --size;
+        if (last != position) {
+            keys[position] = keys[last];
+            next[position] = next[last];
+            previous[position] = previous[last];
+            if (previous[position] >= 0) next[previous[position]] = position;
+            else heads[keys[position]] = position;
+            if (next[position] >= 0) previous[next[position]] = position;
+        }
+        return key;
+    }
+
+    /**
+     * Retrieves a position of a key
+     * @param key The number of the key
+     * @return The position, or -1 if the key does not occur
+     */
+    public int first(int key) {
+        return key < 0 || key >= heads.length ? -1 : heads[key];
+    }
+
+    /**
+     * Retrieves the next position of the same key as the given position
+     * @param position The current position
+     * @return The next position, or -1 if there is none
+     */
+    public int next(int position) {
+        return next[position];
+    }
+
+    /**
+     * Retrieves the amount of positions of a key
+     * @param key The number of the key
+     * @return The amount of positions
+     */
+    public int count(int key) {
+        return key < 0 || key >= counts.length ? 0 : counts[key];
+    }
+
+    /**
+     * @return The amount of positions
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Removes a position from the chain of its key
+     * @param position The position
+     */
+    private void unlink(int position) {
+        if (previous[position] >= 0) next[previous[position]] = next[position];
+        else heads[keys[position]] = next[position];
+        if (next[position] >= 0) previous[next[position]] = previous[position];
+    }
+}
@@ -0,0 +1,151 @@
+package ru.informationsystems.objects.population;
+
+import java.util.*;
+
+/**
+ * Class for representing the population of a power type.
+ * Each set is stored as a compressed bitmap of the dictionary ids of its elements. The ids are the same as the ids in
+ * the column of the element type, so elements can be looked up in the sets without comparing strings, and two sets
+ * are the same if their bitmaps are equal.
+ */
+public class PowerTypeTable {
+
+    // The dictionary of the ids in the sets
+    private ValueDictionary dictionary;
+    // The sets, in the order in which they were added. The last set takes the place of a removed set.
+    private List<IdBitmap> sets = new ArrayList<>();
+    // The positions of each distinct set, which is built on the first removal and kept up to date afterwards, or null
+    private Map<IdBitmap, List<Integer>> positions;
+
+    public PowerTypeTable(ValueDictionary dictionary) {
+        this.dictionary = dictionary;
+    }
+
+    /**
+     * @return The dictionary of the ids in the sets
+     */
+    public ValueDictionary getDictionary() {
+        return dictionary;
+    }
+
+    /**
+     * @return The amount of sets
+     */
+    public int size() {
+        return sets.size();
+    }
+
+    /**
+     * Retrieves a set as a bitmap of dictionary ids
+     * @param index The index of the set
+     * @return The bitmap, which should not be changed
+     */
+    public IdBitmap getSet(int index) {
+        return sets.get(index);
+    }
+
+    /**
+     * Adds a set, of which the elements are added to the dictionary
+     * @param set The values of the elements of the set
+     */
+    public void addSet(Set<String> set) {
+        IdBitmap bitmap = new IdBitmap();
+        for (String element : set) bitmap.add(dictionary.intern(element));
+        sets.add(bitmap);
+        if (positions != null) positions.computeIfAbsent(bitmap, key -> new ArrayList<>()).add(sets.size() - 1);
+    }
+
+    /**
+     * Removes a set. The last set takes its place.
+     * The first removal indexes all sets, after which a removal and every addition take constant time.
+     * @param set The values of the elements of the set
+     * @return Whether the set occurred in this table
+     */
+    public boolean removeSet(Set<String> set) {
+        if (positions == null) {
+            positions = new HashMap<>();
+            for (int i = 0; i < sets.size(); i++) positions.computeIfAbsent(sets.get(i), key -> new ArrayList<>()).add(i);
+        }
+
+        IdBitmap bitmap = lookup(set);
+        List<Integer> bitmapPositions = bitmap == null ? null : positions.get(bitmap);
+        if (bitmapPositions == null) return false;
+        int position = bitmapPositions.remove(bitmapPositions.size() - 1);
+        if (bitmapPositions.isEmpty()) positions.remove(bitmap);
+
+        // The last set moves to the removed position
+        int last = sets.size() - 1;
+        IdBitmap lastSet = sets.remove(last);
+        if (position != last) {
+            sets.set(position, lastSet);
+            List<Integer> lastPositions = positions.get(lastSet);
+            lastPositions.set(lastPositions.indexOf(last), position);
+        }
+        return true;
+    }
+
+    /**
+     * Looks up the bitmap of a set, without adding its elements to the dictionary
+     * @param set The values of the elements of the set
+     * @return The bitmap, or null if an element is not in the dictionary, in which case the set cannot occur in any table
+     */
+    public IdBitmap lookup(Collection<String> set) {
+        IdBitmap bitmap = new IdBitmap();
+        for (String element : set) {
+            int id = dictionary.lookup(element);
+            if (id == ValueDictionary.NO_VALUE) return null;
+            bitmap.add(id);
+        }
+        return bitmap;
+    }
+
+    /**
+     * Retrieves the values of the elements of a set
+     * @param index The index of the set
+     * @return The values, in the order of their ids
+     */
+    public Set<String> getValues(int index) {
+        Set<String> values = new LinkedHashSet<>();
+        sets.get(index).forEach(id -> values.add(dictionary.get(id)));
+        return values;
+    }
+
+    /**
+     * Formats a set as a value of a predicator, i.e. {a, b, c}
+     * @param index The index of the set
+     * @return The formatted set
+     */
+    public String format(int index) {
+        return format(sets.get(index), dictionary);
+    }
+
+    /**
+     * Formats a bitmap of dictionary ids as a value of a predicator, i.e. {a, b, c}
+     * @param set The bitmap
+     * @param dictionary The dictionary of the ids in the bitmap
+     * @return The formatted set, with the elements in the order of their ids
+     */
+    public static String format(IdBitmap set, ValueDictionary dictionary) {
+        StringJoiner values = new StringJoiner(", ", "{", "}");
+        set.forEach(id -> values.add(dictionary.get(id)));
+        return values.toString();
+    }
+
+    /**
+     * Creates a read only view on the sets, which decodes the values of a set each time it is retrieved
+     * @return The list of sets
+     */
+    public List<Set<String>> asSets() {
+        return new AbstractList<Set<String>>() {
+            @Override
+            public Set<String> get(int index) {
+                return Collections.unmodifiableSet(getValues(index));
+            }
+
+            @Override
+            public int size() {
+                return sets.size();
+            }
+        };
+    }
+}
@@ -0,0 +1,15 @@
+package ru.informationsystems.objects.population;
+
+/**
+ * Interface for reading the rows of a population table, or of a collapse, one row at a time.
+ * A cursor starts before the first row, and each call to next() moves it to the following row. A cursor over a
+ * collapse only joins the rows it reads, so a reader that stops early never creates the rest of the collapse.
+ */
+public interface RowCursor extends RowView {
+
+    /**
+     * Moves the cursor to the next row
+     * @return Whether there was a next row
+     */
+    boolean next();
+}
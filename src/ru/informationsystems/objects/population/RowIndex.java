@@ -0,0 +1,87 @@
+package ru.informationsystems.objects.population;
+
+import java.util.Arrays;
+
+/**
+ * Class for representing a hash index on a single column of a population table.
+ * For each id in the column, the index can list the rows that contain this id, in ascending row order.
+ * Rows without a value in the column are not indexed.
+ */
+public class RowIndex {
+
+    // The ids in the hash table, or NO_VALUE for an empty slot
+    private int[] keys;
+    // For each slot in the hash table, the first row that contains its id
+    private int[] heads;
+    // For each row, the next row that contains the same id, or -1 if there is none
+    private int[] next;
+    // The mask used to map a hash onto a slot
+    private int mask;
+    // The amount of distinct ids in the index
+    private int keyCount;
+
+    public RowIndex(PopulationTable table, int column) {
+        int size = table.size();
+        int capacity = Integer.highestOneBit(Math.max(size, 1) * 2 - 1) << 1;
+        this.keys = new int[capacity];
+        this.heads = new int[capacity];
+        this.next = new int[size];
+        this.mask = capacity - 1;
+        Arrays.fill(keys, ValueDictionary.NO_VALUE);
+
+        // We insert the rows in reverse order, such that each chain lists its rows in ascending order
+        int[] ids = table.getColumn(column);
+        for (int row = size - 1; row >= 0; row--) {
+            int id = ids[row];
+            if (id == ValueDictionary.NO_VALUE) continue;
+
+            int slot = slot(id);
+            if (keys[slot] == ValueDictionary.NO_VALUE) {
+                keys[slot] = id;
+                next[row] = -1;
+                keyCount++;
+            } else {
+                next[row] = heads[slot];
+            }
+            heads[slot] = row;
+        }
+    }
+
+    /**
+     * Retrieves the first row that contains the given id
+     * @param id The id
+     * @return The index of the row, or -1 if no row contains the id
+     */
+    public int first(int id) {
+        if (id == ValueDictionary.NO_VALUE) return -1;
+        int slot = slot(id);
+        return keys[slot] == ValueDictionary.NO_VALUE ? -1 : heads[slot];
+    }
+
+    /**
+     * Retrieves the next row that contains the same id as the given row
+     * @param row The index of the current row
+     * @return The index of the next row, or -1 if there is none
+     */
+    public int next(int row) {
+        return next[row];
+    }
+
+    /**
+     * @return The amount of distinct ids in this index
+     */
+    public int keyCount() {
+        return keyCount;
+    }
+
+    /**
+     * Finds the slot of the given id, using linear probing
+     * @param id The id
+     * @return The slot that contains the id, or the empty slot where it would be inserted
+     */
+    private int slot(int id) {
+        int slot = (id * 0x9E3779B9) >>> 1 & mask;
+        while (keys[slot] != ValueDictionary.NO_VALUE && keys[slot] != id) slot = (slot + 1) & mask;
+        return slot;
+    }
+}
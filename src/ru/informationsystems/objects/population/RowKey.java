@@ -0,0 +1,50 @@
+package ru.informationsystems.objects.population;
+
+import java.util.Arrays;
+
+/**
+ * Class for representing the combination of ids of a row on a number of columns.
+ * Two keys are equal when their ids are equal, so it can be used to group or look up rows in a hash table.
+ */
+public class RowKey {
+
+    // The ids of the key
+    private int[] ids;
+    // The cached hash code of the ids
+    private int hash;
+
+    public RowKey(int[] ids) {
+        this.ids = ids;
+        this.hash = Arrays.hashCode(ids);
+    }
+
+    /**
+     * Creates the key of a row in a table
+     * @param table The table
+     * @param row The index of the row
+     * @param columns The column indexes that make up the key
+     * @return The key
+     */
+    public static RowKey of(PopulationTable table, int row, int[] columns) {
+        int[] ids = new int[columns.length];
+        for (int i = 0; i < columns.length; i++) ids[i] = table.getId(row, columns[i]);
+        return new RowKey(ids);
+    }
+
+    /**
+     * @return The ids of the key
+     */
+    int[] getIds() {
+        return ids;
+    }
+
+    @Override
+    public boolean equals(Object object) {
+        return object instanceof RowKey && hash == ((RowKey) object).hash && Arrays.equals(ids, ((RowKey) object).ids);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+}
@@ -0,0 +1,77 @@
+package ru.informationsystems.objects.population;
+
+import ru.informationsystems.objects.types.Predicator;
+
+import java.util.*;
+
+/**
+ * Interface for reading the current row of a population table, or of a collapse. A view cannot move to another row
+ * itself, so it can be given to readers that should only read the row they are positioned at, such as the consumers
+ * of a scan.
+ */
+public interface RowView {
+
+    /**
+     * @return The predicators of the rows, in column order
+     */
+    List<Predicator> getPredicators();
+
+    /**
+     * @return The dictionary that the ids of the rows belong to
+     */
+    ValueDictionary getDictionary();
+
+    /**
+     * Retrieves an id of the current row
+     * @param column The column index
+     * @return The id of the value, or ValueDictionary.NO_VALUE if the row has no value for this column
+     */
+    int getId(int column);
+
+    /**
+     * Retrieves the column index of a predicator
+     * @param predicator The predicator
+     * @return The column index, or -1 if the predicator is not a column of the rows
+     */
+    default int getColumnIndex(Predicator predicator) {
+        return getPredicators().indexOf(predicator);
+    }
+
+    /**
+     * Retrieves the column indexes of a collection of predicators.
+     * Predicators that are not a column of the rows are left out.
+     * @param predicators The predicators
+     * @return The column indexes, in the iteration order of the predicators
+     */
+    default int[] getColumnIndexes(Collection<Predicator> predicators) {
+        return predicators.stream()
+                .mapToInt(this::getColumnIndex)
+                .filter(index -> index >= 0)
+                .toArray();
+    }
+
+    /**
+     * Creates the key of the current row
+     * @param columns The column indexes that make up the key
+     * @return The key
+     */
+    default RowKey getKey(int[] columns) {
+        int[] ids = new int[columns.length];
+        for (int i = 0; i < columns.length; i++) ids[i] = getId(columns[i]);
+        return new RowKey(ids);
+    }
+
+    /**
+     * Copies the current row. Columns without a value are left out.
+     * @return The row, mapping each predicator to its value
+     */
+    default Map<Predicator, String> getRow() {
+        List<Predicator> predicators = getPredicators();
+        Map<Predicator, String> row = new LinkedHashMap<>();
+        for (int column = 0; column < predicators.size(); column++) {
+            int id = getId(column);
+            if (id != ValueDictionary.NO_VALUE) row.put(predicators.get(column), getDictionary().get(id));
+        }
+        return Collections.unmodifiableMap(row);
+    }
+}
@@ -0,0 +1,101 @@
+package ru.informationsystems.objects.population;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class maps every value that occurs in a population to a unique integer id.
+ * Populations store these ids instead of the values themselves, so each distinct value is only stored once.
+ *
+ * A value that is a power type set, i.e. {a, b, c}, can also be resolved to the set of its elements. The set is parsed
+ * once, when the population is loaded, after which it can be retrieved by the id of the value.
+ */
+public class ValueDictionary {
+
+    // The id that is used for a missing value
+    public static final int NO_VALUE = -1;
+
+    // The id of each value
+    private Map<String, Integer> ids = new HashMap<>();
+    // The value of each id
+    private List<String> values = new ArrayList<>();
+    // The set of each id of which the value was resolved as a power type set, and null for the other ids
+    private List<IdBitmap> sets = new ArrayList<>();
+
+    /**
+     * Retrieves the id of the given value, and assigns a new id if the value was not seen before
+     * @param value The value
+     * @return The id of the value, or NO_VALUE if the value is null
+     */
+    public int intern(String value) {
+        if (value == null) return NO_VALUE;
+
+        Integer id = ids.get(value);
+        if (id == null) {
+            id = values.size();
+            ids.put(value, id);
+            values.add(value);
+        }
+        return id;
+    }
+
+    /**
+     * Retrieves the id of the given value, without assigning a new one
+     * @param value The value
+     * @return The id of the value, or NO_VALUE if the value does not occur in this dictionary
+     */
+    public int lookup(String value) {
+        Integer id = ids.get(value);
+        return id == null ? NO_VALUE : id;
+    }
+
+    /**
+     * Retrieves the value that belongs to the given id
+     * @param id The id
+     * @return The value, or null if the id is NO_VALUE
+     */
+    public String get(int id) {
+        return id == NO_VALUE ? null : values.get(id);
+    }
+
+    /**
+     * Resolves the value that belongs to the given id as a power type set, i.e. {a, b, c}.
+     * The value is parsed the first time it is resolved, and its elements are added to this dictionary.
+     * @param id The id
+     * @return The set, as a bitmap of the ids of its elements, or null if the id is NO_VALUE
+     */
+    public IdBitmap resolveSet(int id) {
+        if (id == NO_VALUE) return null;
+        while (sets.size() <= id) sets.add(null);
+        if (sets.get(id) != null) return sets.get(id);
+
+        String elements = values.get(id).trim();
+        if (elements.startsWith("{") && elements.endsWith("}")) elements = elements.substring(1, elements.length() - 1);
+
+        IdBitmap set = new IdBitmap();
+        for (String element : elements.split(",")) {
+            element = element.trim();
+            if (!element.isEmpty()) set.add(intern(element));
+        }
+        sets.set(id, set);
+        return set;
+    }
+
+    /**
+     * Retrieves the power type set that belongs to the given id, without parsing its value
+     * @param id The id
+     * @return The set, as a bitmap of the ids of its elements, or null if the value of the id was not resolved as a set
+     */
+    public IdBitmap getSet(int id) {
+        return id == NO_VALUE || id >= sets.size() ? null : sets.get(id);
+    }
+
+    /**
+     * @return The amount of distinct values in this dictionary
+     */
+    public int size() {
+        return values.size();
+    }
+}
@@ -60,4 +60,12 @@ public class Predicator implements Comparable<Predicator> {
         }
         return false;
     }
+
+    /**
+     * The hash code of a predicator is the hash code of its name, since predicators are equal if their names are equal.
+     */
+    @Override
+    public int hashCode() {
+        return name.hashCode();
+    }
 }
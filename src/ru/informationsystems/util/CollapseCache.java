@@ -0,0 +1,263 @@
+package ru.informationsystems.util;
+
+import ru.informationsystems.objects.constraints.ValidationListener;
+import ru.informationsystems.objects.population.Population;
+import ru.informationsystems.objects.population.PopulationTable;
+import ru.informationsystems.objects.population.RowCursor;
+import ru.informationsystems.objects.population.ValueDictionary;
+import ru.informationsystems.objects.types.Predicator;
+
+import java.util.*;
+
+/**
+ * Class that shares the collapsed tables of a population between the constraints of a single validation.
+ * Constraints that span the same predicators, for example a uniqueness and an occurrence frequency constraint over the
+ * same roles, then only collapse the population once.
+ *
+ * A collapse is identified by its predicators in iteration order, because the order determines which fact types are
+ * joined on which predicators. The cached tables use at most the given amount of memory, the least recently used
+ * tables are evicted first. A collapse over a single fact type is never cached, since it is the table of the fact
+ * type itself. The cached tables are shared, so they should not be modified.
+ *
+ * A collapse can also be read with a cursor, which joins the rows while they are read. Its rows are only cached once
+ * the cursor has read all of them, so a constraint that stops at its first violation does not create the whole table.
+ *
+ * The cache can be used by several threads at the same time. A collapse that is being created by one thread is
+ * awaited by the other threads that need it.
+ */
+public class CollapseCache {
+
+    // The population we collapse
+    private Population population;
+    // The maximum amount of bytes of all cached tables
+    private long maxBytes;
+    // The cached collapses, in least recently used order
+    private LinkedHashMap<List<Predicator>, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    // The amount of bytes of all cached tables
+    private long bytes;
+    // The amount of collapses that were found in the cache
+    private long hits;
+    // The amount of collapses that had to be created
+    private long misses;
+    // The listener that receives the size of each join, or null
+    private ValidationListener listener;
+
+    /**
+     * Creates a cache for a population
+     * @param population The population we collapse
+     * @param maxBytes The maximum amount of bytes of all cached tables, 0 disables the cache
+     */
+    public CollapseCache(Population population, long maxBytes) {
+        if (maxBytes < 0) throw new IllegalArgumentException("The size of the cache cannot be negative.");
+        this.population = population;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Sets the listener that receives the size of each join of the collapses that are created
+     * @param listener The listener, or null
+     */
+    public void setListener(ValidationListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Collapses the population over the given predicators, or retrieves the table from the cache.
+     * The result is the same as that of SchemaUtils.collapseTable.
+     *
+     * @param predicators The predicators that the constraint spans
+     * @param ah The assertion handler we can use for checking type relatedness
+     * @return A table representing the collapsed population
+     */
+    public PopulationTable collapse(Collection<Predicator> predicators, AssertionHandler ah) {
+        if (maxBytes == 0 || SchemaUtils.getFactTypes(predicators).size() < 2) {
+            return SchemaUtils.collapseTable(population, predicators, ah, listener);
+        }
+
+        List<Predicator> key = new ArrayList<>(predicators);
+        Entry entry;
+        synchronized (this) {
+            entry = entries.computeIfAbsent(key, k -> new Entry());
+        }
+
+        // Only the first thread creates the table, the other threads wait for it
+        boolean created = false;
+        synchronized (entry) {
+            if (entry.table == null) {
+                entry.table = SchemaUtils.collapseTable(population, predicators, ah, listener);
+                created = true;
+            }
+        }
+
+        synchronized (this) {
+            if (!created) {
+                hits++;
+                return entry.table;
+            }
+            misses++;
+            // The entry can be evicted while the table was created, then it is not added again
+            if (entries.get(key) == entry) add(key, entry);
+        }
+        return entry.table;
+    }
+
+    /**
+     * Creates a cursor over the collapse of the population over the given predicators. If the collapse is cached, the
+     * cursor reads the cached table. Otherwise, the cursor joins the rows while they are read, and the rows are cached
+     * once the cursor has read all of them. A cursor that is not read to the end does not change the cache.
+     * The rows are the same as the rows of the table that collapse returns.
+     *
+     * @param predicators The predicators that the constraint spans
+     * @param ah The assertion handler we can use for checking type relatedness
+     * @return A cursor over the collapsed population
+     */
+    public RowCursor scan(Collection<Predicator> predicators, AssertionHandler ah) {
+        if (maxBytes == 0 || SchemaUtils.getFactTypes(predicators).size() < 2) {
+            return SchemaUtils.collapseCursor(population, predicators, ah, listener);
+        }
+
+        List<Predicator> key = new ArrayList<>(predicators);
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry != null && entry.table != null) {
+                hits++;
+                return entry.table.cursor();
+            }
+            misses++;
+        }
+        return new RecordingCursor(key, SchemaUtils.collapseCursor(population, predicators, ah, listener));
+    }
+
+    /**
+     * Adds a created table to the cache, unless it is larger than the cache itself
+     * @param key The predicators of the collapse
+     * @param entry The entry, which contains the table
+     */
+    private void add(List<Predicator> key, Entry entry) {
+        entry.bytes = entry.table.getMemoryUsage();
+        if (entry.bytes > maxBytes) {
+            entries.remove(key);
+            return;
+        }
+        entries.put(key, entry);
+        bytes += entry.bytes;
+        evict();
+    }
+
+    /**
+     * Evicts the least recently used tables until the cached tables fit in the maximum amount of bytes.
+     * Entries of which the table is still being created are skipped.
+     */
+    private void evict() {
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (bytes > maxBytes && iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if (entry.bytes == 0) continue;
+            bytes -= entry.bytes;
+            iterator.remove();
+        }
+    }
+
+    /**
+     * @return The amount of bytes of all cached tables
+     */
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * @return The amount of collapses that were found in the cache
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return The amount of collapses that had to be created
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * A cursor that copies the rows it reads into a table, and adds the table to the cache after the last row.
+     * It stops copying once the table would no longer fit in the cache.
+     */
+    private class RecordingCursor implements RowCursor {
+
+        // The predicators of the collapse
+        private List<Predicator> key;
+        // The cursor we read
+        private RowCursor cursor;
+        // The rows that were read so far, or null if they are not copied
+        private PopulationTable table;
+        // The ids of the current row
+        private int[] ids;
+
+        private RecordingCursor(List<Predicator> key, RowCursor cursor) {
+            this.key = key;
+            this.cursor = cursor;
+            this.table = new PopulationTable(cursor.getDictionary(), cursor.getPredicators(), 16);
+            this.ids = new int[cursor.getPredicators().size()];
+        }
+
+        @Override
+        public List<Predicator> getPredicators() {
+            return cursor.getPredicators();
+        }
+
+        @Override
+        public ValueDictionary getDictionary() {
+            return cursor.getDictionary();
+        }
+
+        @Override
+        public boolean next() {
+            if (!cursor.next()) {
+                if (table != null) store();
+                return false;
+            }
+            if (table != null) {
+                for (int column = 0; column < ids.length; column++) ids[column] = cursor.getId(column);
+                table.addRow(ids);
+                if (table.getMemoryUsage() > maxBytes) table = null;
+            }
+            return true;
+        }
+
+        /**
+         * Adds the table to the cache, unless another thread added or is creating the same collapse
+         */
+        private void store() {
+            synchronized (CollapseCache.this) {
+                if (!entries.containsKey(key)) {
+                    Entry entry = new Entry();
+                    entry.table = table;
+                    add(key, entry);
+                }
+            }
+            table = null;
+        }
+
+        @Override
+        public int getId(int column) {
+            return cursor.getId(column);
+        }
+
+        @Override
+        public int getColumnIndex(Predicator predicator) {
+            return cursor.getColumnIndex(predicator);
+        }
+    }
+
+    /**
+     * A cached collapse
+     */
+    private static class Entry {
+        // The collapsed table, or null while it is being created. It is written under the monitor of the entry and read
+        // under the monitor of the cache, so it is volatile to publish the created table to the readers of the cache.
+        private volatile PopulationTable table;
+        // The amount of bytes of the table, or 0 while it is being created
+        private long bytes;
+    }
+}
@@ -0,0 +1,169 @@
+package ru.informationsystems.util;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Class for reading a delimited (CSV or TSV) file row by row.
+ * The file is memory mapped in chunks and parsed byte by byte, so the file is never read into memory as a whole.
+ * The fields of a row are passed to a handler in an array that is reused for every row.
+ *
+ * Fields in a comma separated file may be quoted with double quotes. A quoted field can contain the delimiter,
+ * line breaks and escaped ("") double quotes. Fields in a tab separated file are never quoted.
+ */
+public class DelimitedFileReader {
+
+    // The size of the part of the file that is mapped at once
+    private static final long CHUNK_SIZE = 64L * 1024 * 1024;
+
+    // The file we are reading
+    private Path file;
+    // The delimiter between fields
+    private byte delimiter;
+    // Whether fields can be quoted
+    private boolean quoting;
+
+    /**
+     * Handler for the rows of a file
+     */
+    public interface RowHandler {
+        /**
+         * Handles a row of the file
+         * @param fields The fields of the row, this array is reused for the next row
+         * @param count The amount of fields in the row
+         * @param line The line number at which the row starts, starting at 1
+         */
+        void row(String[] fields, int count, long line);
+    }
+
+    /**
+     * Creates a reader that determines the delimiter from the file extension:
+     * tabs for .tsv and .tab files, commas for all other files
+     * @param file The file
+     */
+    public DelimitedFileReader(Path file) {
+        this(file, isTabSeparated(file) ? '\t' : ',');
+    }
+
+    /**
+     * Creates a reader with the given delimiter. Fields can only be quoted if the delimiter is a comma.
+     * @param file The file
+     * @param delimiter The delimiter between fields
+     */
+    public DelimitedFileReader(Path file, char delimiter) {
+        if (delimiter > 127 || delimiter == '"' || delimiter == '\n' || delimiter == '\r') {
+            throw new IllegalArgumentException("Invalid delimiter: " + delimiter);
+        }
+        this.file = file;
+        this.delimiter = (byte) delimiter;
+        this.quoting = delimiter == ',';
+    }
+
+    /**
+     * Reads all rows of the file. Empty lines are skipped.
+     * @param handler The handler that receives each row
+     */
+    public void read(RowHandler handler) {
+        // The state of the parser, which is kept across chunks
+        String[] fields = new String[16];
+        int count = 0;
+        byte[] field = new byte[64];
+        int length = 0;
+        boolean inQuotes = false;
+        boolean quoteInQuotes = false;
+        boolean emptyRow = true;
+        long line = 1;
+        long rowLine = 1;
+        // The bytes are copied from the mapped buffer in blocks, which is faster than reading them one at a time
+        byte[] block = new byte[64 * 1024];
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            for (long position = 0; position < size; position += CHUNK_SIZE) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(CHUNK_SIZE, size - position));
+
+                while (buffer.hasRemaining()) {
+                    int bytes = Math.min(buffer.remaining(), block.length);
+                    buffer.get(block, 0, bytes);
+
+                    for (int i = 0; i < bytes; i++) {
+                        byte b = block[i];
+
+                        if (inQuotes) {
+                            // A quote in a quoted field either ends the field or escapes the next quote
+                            if (quoteInQuotes) {
+                                quoteInQuotes = false;
+                                if (b == '"') {
+                                    field = append(field, length++, b);
+                                    continue;
+                                }
+                                inQuotes = false;
+                            } else {
+                                if (b == '"') quoteInQuotes = true;
+                                else {
+                                    if (b == '\n') line++;
+                                    field = append(field, length++, b);
+                                }
+                                continue;
+                            }
+                        }
+
+                        if (b == delimiter) {
+                            if (count == fields.length) fields = Arrays.copyOf(fields, count * 2);
+                            fields[count++] = new String(field, 0, length, StandardCharsets.UTF_8);
+                            length = 0;
+                            emptyRow = false;
+                        } else if (b == '\n') {
+                            // We finish the row, unless it was empty
+                            if (!emptyRow || length > 0) {
+                                if (count == fields.length) fields = Arrays.copyOf(fields, count * 2);
+                                fields[count++] = new String(field, 0, length, StandardCharsets.UTF_8);
+                                handler.row(fields, count, rowLine);
+                            }
+                            count = 0;
+                            length = 0;
+                            emptyRow = true;
+                            rowLine = ++line;
+                        } else if (b == '"' && quoting && length == 0) {
+                            inQuotes = true;
+                            emptyRow = false;
+                        } else if (b != '\r') {
+                            field = append(field, length++, b);
+                        }
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read " + file, e);
+        }
+
+        if (inQuotes && !quoteInQuotes) throw new IllegalArgumentException("Unterminated quoted field in " + file + " at line " + rowLine);
+        // The last row does not have to end with a line break
+        if (!emptyRow || length > 0) {
+            if (count == fields.length) fields = Arrays.copyOf(fields, count * 2);
+            fields[count++] = new String(field, 0, length, StandardCharsets.UTF_8);
+            handler.row(fields, count, rowLine);
+        }
+    }
+
+    /**
+     * Appends a byte to a field buffer, and grows the buffer if it is full
+     * @return The buffer
+     */
+    private static byte[] append(byte[] field, int length, byte b) {
+        if (length == field.length) field = Arrays.copyOf(field, length * 2);
+        field[length] = b;
+        return field;
+    }
+
+    private static boolean isTabSeparated(Path file) {
+        String name = file.getFileName().toString().toLowerCase();
+        return name.endsWith(".tsv") || name.endsWith(".tab");
+    }
+}
@@ -45,6 +45,7 @@ public class InformationStructureBuilder {
      * @return The builder
      */
     public InformationStructureBuilder addLabelType(String name) {
+        ah.assertNoDuplicates(name);
         informationStructure.addObjectType(new LabelType(name));
         return this;
     }
@@ -98,7 +99,7 @@ public class InformationStructureBuilder {
 
         ah.assertNoDuplicatePredicator(name);
 
-        factType.addPredicator(new Predicator(name, objectType, factType));
+        informationStructure.addPredicator(factType, new Predicator(name, objectType, factType));
         return this;
     }
 
@@ -150,7 +151,7 @@ public class InformationStructureBuilder {
 
         ah.assertNoDuplicateSpecialization(entityType, objectType);
 
-        entityType.getSpecializations().add(objectType);
+        informationStructure.addSpecialization(entityType, objectType);
         return this;
     }
 
@@ -169,7 +170,7 @@ public class InformationStructureBuilder {
 
         ah.assertNoDuplicateGeneralization(entityType, objectType);
 
-        entityType.getGeneralizations().add(objectType);
+        informationStructure.addGeneralization(entityType, objectType);
         return this;
     }
 
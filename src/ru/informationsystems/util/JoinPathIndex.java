@@ -0,0 +1,119 @@
+package ru.informationsystems.util;
+
+import ru.informationsystems.objects.population.Pair;
+import ru.informationsystems.objects.types.FactType;
+import ru.informationsystems.objects.types.Predicator;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * This class contains the join paths of the collapses of an information structure. The join path of a collection of
+ * predicators consists of the predicators that the fact types of its collapse are joined on.
+ *
+ * A join path only depends on the information structure, so it is determined once for each collection of predicators,
+ * and shared by all collapses over them. The exploration starts at the fact type of the first predicator, so the
+ * predicators are looked up in the order in which they are given.
+ */
+public class JoinPathIndex {
+
+    // The type relatedness relation that determines which fact types are adjacent
+    private TypeRelatednessIndex typeRelatedness;
+    // The join path of each list of predicators that was collapsed
+    private Map<List<Predicator>, List<Pair<Predicator, Predicator>>> paths = new ConcurrentHashMap<>();
+
+    public JoinPathIndex(TypeRelatednessIndex typeRelatedness) {
+        this.typeRelatedness = typeRelatedness;
+    }
+
+    /**
+     * Creates an index that contains join paths that were determined before
+     * @param typeRelatedness The type relatedness relation of the information structure
+     * @param paths The join path of each list of predicators
+     */
+    JoinPathIndex(TypeRelatednessIndex typeRelatedness, Map<List<Predicator>, List<Pair<Predicator, Predicator>>> paths) {
+        this.typeRelatedness = typeRelatedness;
+        this.paths.putAll(paths);
+    }
+
+    /**
+     * Retrieves the predicators that the fact types of a collapse are joined on.
+     * Starting at the fact type of the first predicator, we keep adding a fact type that is adjacent to the fact types
+     * we explored so far.
+     *
+     * @param predicators The predicators that the constraint spans
+     * @return For each newly explored fact type, the pair of the predicator it is connected to and its own predicator
+     */
+    public List<Pair<Predicator, Predicator>> getJoins(Collection<Predicator> predicators) {
+        if (predicators.isEmpty()) return Collections.emptyList();
+        return paths.computeIfAbsent(new ArrayList<>(predicators), this::explore);
+    }
+
+    /**
+     * @return The join path of each list of predicators that was collapsed so far
+     */
+    Map<List<Predicator>, List<Pair<Predicator, Predicator>>> getPaths() {
+        return Collections.unmodifiableMap(paths);
+    }
+
+    /**
+     * Determines the join path of a list of predicators
+     * @param predicators The predicators, of which the first one is explored first
+     * @return For each newly explored fact type, the pair of the predicator it is connected to and its own predicator
+     */
+    private List<Pair<Predicator, Predicator>> explore(List<Predicator> predicators) {
+        // Create a new set of already explored fact types, containing the base predicators fact type
+        Set<FactType> exploredFactTypes = new HashSet<>();
+        exploredFactTypes.add(predicators.get(0).getFactType());
+
+        List<Pair<Predicator, Predicator>> joins = new ArrayList<>();
+        // We create an opt variable, that contains a pair with the predicator that is adjacent to the current set of explored predicators.
+        Optional<Pair<Predicator, Predicator>> opt = getAdjacentPredicator(exploredFactTypes, predicators);
+        // We check if it's present
+        while (opt.isPresent()) {
+            joins.add(opt.get());
+            // We add the newly explored fact type to the explored fact types
+            exploredFactTypes.add(opt.get().getValue().getFactType());
+            // We calculate a new adjacent predicator
+            opt = getAdjacentPredicator(exploredFactTypes, predicators);
+        }
+        return Collections.unmodifiableList(joins);
+    }
+
+    /**
+     * This function takes a list of explored fact types, and the result will be an optional of a pair.
+     * The function will look for an unexplored fact type that is adjacent to one of the already explored fact types.
+     * With adjacent, we mean that the two predicators are type related. If we found a predicator with such a fact type,
+     * the function will return a pair containing the original predicator (the one in 'exploredFactTypes') and the
+     * adjacent predicator. If no such predicator exists, the function will return an empty optional.
+     *
+     * @param exploredFactTypes The set of already explored fact types
+     * @param predicators The predicators that the constraint spans
+     * @return a pair with the two predicators if an adjacent predicator exists, or otherwise an empty optional
+     */
+    private Optional<Pair<Predicator, Predicator>> getAdjacentPredicator(Collection<FactType> exploredFactTypes, Collection<Predicator> predicators) {
+        // Loop through all explored fact types and their predicators
+        for (FactType factType : exploredFactTypes) {
+            for (Predicator pred : factType.getPredicators()) {
+
+                // Loop through all predicators that this UniquenessConstraint spans
+                for (Predicator result : predicators) {
+                    // Check if they are not yet explored
+                    if(exploredFactTypes.stream().noneMatch(ft -> ft.getPredicators().contains(result))) {
+                        // Get the predicator's associated fact type
+                        FactType resultFactType = result.getFactType();
+                        // Loop through all predicators in the fact type
+                        for (Predicator result2 : resultFactType.getPredicators()) {
+                            // Check if one of the predicators bases is type related to our original predicator's base.
+                            // If it is, return the predicator.
+                            if (typeRelatedness.isTypeRelated(result2.getBase(), pred.getBase())) {
+                                return Optional.of(new Pair<>(pred, result2));
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        return Optional.empty();
+    }
+}
@@ -0,0 +1,460 @@
+package ru.informationsystems.util;
+
+import ru.informationsystems.objects.constraints.ValidationListener;
+import ru.informationsystems.objects.population.Pair;
+import ru.informationsystems.objects.population.Population;
+import ru.informationsystems.objects.population.PopulationTable;
+import ru.informationsystems.objects.population.RowCursor;
+import ru.informationsystems.objects.population.RowIndex;
+import ru.informationsystems.objects.population.ValueDictionary;
+import ru.informationsystems.objects.types.FactType;
+import ru.informationsystems.objects.types.Predicator;
+
+import java.util.*;
+
+/**
+ * Class for planning and executing the collapse of a population over several fact types.
+ *
+ * The fact types and the predicators they are joined on form a tree, which is given to the plan. Every join compares
+ * two predicators for equality, so the rows of the result do not depend on the order of the joins, but the size of
+ * the intermediate tables does. The plan estimates the size of each join from the amount of rows of the tables and the
+ * amount of distinct values in the joined columns, and chooses the starting fact type and the order of the joins for
+ * which the intermediate tables are smallest.
+ *
+ * An intermediate table only contains the predicators of the result and the predicators that later joins need.
+ * Other predicators are left out while joining, so they are never copied.
+ */
+public class JoinPlan {
+
+    // The table of each fact type in the plan
+    private Map<FactType, PopulationTable> tables = new LinkedHashMap<>();
+    // The predicators of the result, in the order of its columns
+    private List<Predicator> output;
+    // The fact type we start with
+    private FactType start;
+    // The joins, in the order in which they are executed
+    private List<Join> joins = new ArrayList<>();
+    // The estimated amount of rows of the result
+    private double estimatedRows;
+
+    /**
+     * Creates a plan for collapsing a population
+     * @param population The population
+     * @param predicators The predicators that the constraint spans
+     * @param edges The predicators that the fact types are joined on. The key of each pair belongs to a fact type
+     *              that is reached earlier, the value is left out of the result.
+     */
+    public JoinPlan(Population population, Collection<Predicator> predicators, List<Pair<Predicator, Predicator>> edges) {
+        if (edges.isEmpty()) throw new IllegalArgumentException("A join plan needs at least one join.");
+
+        // We collect the fact types of the tree, starting with the one the first join starts from
+        for (Pair<Predicator, Predicator> edge : edges) {
+            for (FactType factType : Arrays.asList(edge.getKey().getFactType(), edge.getValue().getFactType())) {
+                if (!tables.containsKey(factType)) tables.put(factType, SchemaUtils.getFactTypeTable(population, factType));
+            }
+        }
+
+        output = getOutput(predicators, edges);
+
+        // We try every fact type as a start, and keep the cheapest order. On a tie, the first fact type is kept.
+        double bestCost = Double.POSITIVE_INFINITY;
+        for (FactType factType : tables.keySet()) {
+            List<Join> order = new ArrayList<>();
+            double[] estimate = new double[2];
+            orderJoins(factType, edges, order, estimate);
+            if (estimate[0] < bestCost) {
+                bestCost = estimate[0];
+                start = factType;
+                joins = order;
+                estimatedRows = estimate[1];
+            }
+        }
+
+        // We determine the predicators that each intermediate table should contain
+        Set<FactType> joined = new LinkedHashSet<>(Collections.singleton(start));
+        for (int i = 0; i < joins.size(); i++) {
+            joined.add(joins.get(i).right.getFactType());
+            Set<Predicator> needed = new HashSet<>(output);
+            for (Join join : joins.subList(i + 1, joins.size())) {
+                needed.add(join.left);
+                needed.add(join.right);
+            }
+            List<Predicator> columns = new ArrayList<>();
+            for (Predicator predicator : output) {
+                if (joined.contains(predicator.getFactType())) columns.add(predicator);
+            }
+            for (FactType factType : joined) {
+                for (Predicator predicator : factType.getPredicators()) {
+                    if (needed.contains(predicator) && !columns.contains(predicator)) columns.add(predicator);
+                }
+            }
+            joins.get(i).columns = columns;
+        }
+    }
+
+    /**
+     * Determines the predicators of the result of a plan, without creating the plan. The result contains the
+     * predicators of the constraint, except the ones that a fact type is joined on.
+     * @param predicators The predicators that the constraint spans
+     * @param edges The predicators that the fact types are joined on
+     * @return The predicators of the result, in the order of its columns
+     */
+    static List<Predicator> getOutput(Collection<Predicator> predicators, List<Pair<Predicator, Predicator>> edges) {
+        Set<FactType> factTypes = new HashSet<>();
+        Set<Predicator> joinedOn = new HashSet<>();
+        for (Pair<Predicator, Predicator> edge : edges) {
+            factTypes.add(edge.getKey().getFactType());
+            factTypes.add(edge.getValue().getFactType());
+            joinedOn.add(edge.getValue());
+        }
+
+        List<Predicator> output = new ArrayList<>();
+        for (Predicator predicator : predicators) {
+            if (!joinedOn.contains(predicator) && factTypes.contains(predicator.getFactType())) output.add(predicator);
+        }
+        return output;
+    }
+
+    /**
+     * Orders the joins greedily, starting from the given fact type: each step executes the join with the smallest
+     * estimated result that connects a new fact type to the fact types that were already joined.
+     * @param start The fact type we start with
+     * @param edges The predicators that the fact types are joined on
+     * @param order The list that the joins are added to, in the order in which they should be executed
+     * @param estimate Receives the estimated cost (the sum of the sizes of all intermediate tables) and the
+     *                 estimated amount of rows of the result
+     */
+    private void orderJoins(FactType start, List<Pair<Predicator, Predicator>> edges, List<Join> order, double[] estimate) {
+        Set<FactType> joined = new HashSet<>(Collections.singleton(start));
+        List<Pair<Predicator, Predicator>> remaining = new ArrayList<>(edges);
+        // The estimated amount of distinct values of each predicator in the current table
+        Map<Predicator, Double> distinct = new HashMap<>();
+        double rows = tables.get(start).size();
+        addDistinctCounts(start, rows, distinct);
+        double cost = 0;
+
+        while (!remaining.isEmpty()) {
+            Pair<Predicator, Predicator> bestEdge = null;
+            Join bestJoin = null;
+            double bestRows = Double.POSITIVE_INFINITY;
+
+            for (Pair<Predicator, Predicator> edge : remaining) {
+                Join join;
+                if (joined.contains(edge.getKey().getFactType()) && !joined.contains(edge.getValue().getFactType())) {
+                    join = new Join(edge.getKey(), edge.getValue());
+                } else if (joined.contains(edge.getValue().getFactType()) && !joined.contains(edge.getKey().getFactType())) {
+                    join = new Join(edge.getValue(), edge.getKey());
+                } else {
+                    continue;
+                }
+
+                // Each value of the joined column matches about (rows of the right table / its distinct values) rows
+                double keys = Math.max(distinct.get(join.left), distinctCount(join.right));
+                double joinRows = keys == 0 ? 0 : rows * tables.get(join.right.getFactType()).size() / keys;
+                if (joinRows < bestRows) {
+                    bestEdge = edge;
+                    bestJoin = join;
+                    bestRows = joinRows;
+                }
+            }
+
+            // The edges form a tree, so there is always a join that reaches a new fact type
+            if (bestJoin == null) throw new IllegalArgumentException("The joins of a collapse should form a tree.");
+            remaining.remove(bestEdge);
+            order.add(bestJoin);
+            joined.add(bestJoin.right.getFactType());
+            rows = bestRows;
+            cost += rows;
+
+            // A table cannot contain more distinct values in a column than it has rows
+            for (Map.Entry<Predicator, Double> entry : distinct.entrySet()) entry.setValue(Math.min(entry.getValue(), rows));
+            addDistinctCounts(bestJoin.right.getFactType(), rows, distinct);
+        }
+
+        estimate[0] = cost;
+        estimate[1] = rows;
+    }
+
+    /**
+     * Adds the distinct counts of the predicators of a fact type, limited to the given amount of rows
+     */
+    private void addDistinctCounts(FactType factType, double rows, Map<Predicator, Double> distinct) {
+        for (Predicator predicator : factType.getPredicators()) distinct.put(predicator, Math.min(distinctCount(predicator), rows));
+    }
+
+    /**
+     * @return The amount of distinct values of a predicator in the table of its fact type
+     */
+    private double distinctCount(Predicator predicator) {
+        PopulationTable table = tables.get(predicator.getFactType());
+        int column = table.getColumnIndex(predicator);
+        return column < 0 ? 0 : table.getDistinctCount(column);
+    }
+
+    /**
+     * Executes the plan
+     * @return A table representing the collapsed population
+     */
+    public PopulationTable execute() {
+        return execute(null);
+    }
+
+    /**
+     * Executes the plan, and reports the size of each join to a listener
+     * @param listener The listener, or null
+     * @return A table representing the collapsed population
+     */
+    public PopulationTable execute(ValidationListener listener) {
+        PopulationTable result = tables.get(start);
+        for (int step = 0; step < joins.size(); step++) {
+            Join join = joins.get(step);
+            PopulationTable table = tables.get(join.right.getFactType());
+            PopulationTable joined = join.execute(result, table);
+            if (listener != null) listener.joinExecuted(getPredicators(), step, join.left, join.right, result.size(), table.size(), joined.size());
+            result = joined;
+        }
+        return result;
+    }
+
+    /**
+     * Creates a cursor that executes the plan while its rows are read. A row is only joined when the cursor moves to
+     * it, so no intermediate tables are created. The rows are read in the same order as the rows of execute().
+     * @return The cursor, positioned before the first row
+     */
+    public RowCursor cursor() {
+        return new JoinCursor(null);
+    }
+
+    /**
+     * Creates a cursor that executes the plan while its rows are read, and reports the size of each join to a
+     * listener once all rows were read
+     * @param listener The listener, or null
+     * @return The cursor, positioned before the first row
+     */
+    public RowCursor cursor(ValidationListener listener) {
+        return new JoinCursor(listener);
+    }
+
+    /**
+     * @return The predicators of the result, in the order of its columns
+     */
+    public List<Predicator> getPredicators() {
+        return Collections.unmodifiableList(output);
+    }
+
+    /**
+     * @return The fact type the plan starts with
+     */
+    public FactType getStart() {
+        return start;
+    }
+
+    /**
+     * @return The estimated amount of rows of the result
+     */
+    public double getEstimatedRows() {
+        return estimatedRows;
+    }
+
+    /**
+     * A single join of the plan, which adds a new fact type to the current table
+     */
+    private static class Join {
+
+        // The predicator of the current table we join on
+        private Predicator left;
+        // The predicator of the new fact type we join on
+        private Predicator right;
+        // The predicators of the resulting table
+        private List<Predicator> columns;
+
+        private Join(Predicator left, Predicator right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        /**
+         * Joins the current table with the table of the new fact type, with a hash index on the new fact type
+         * @param current The current table
+         * @param table The table of the new fact type
+         * @return The joined table
+         */
+        private PopulationTable execute(PopulationTable current, PopulationTable table) {
+            PopulationTable result = new PopulationTable(current.getDictionary(), columns, current.size());
+
+            // If one of the tables does not contain the predicator we join on, no rows match
+            int leftColumn = current.getColumnIndex(left);
+            int rightColumn = table.getColumnIndex(right);
+            if (leftColumn < 0 || rightColumn < 0) return result;
+
+            // We determine, for each column of the result, the table and column it comes from
+            int[] sources = new int[columns.size()];
+            boolean[] fromCurrent = new boolean[columns.size()];
+            for (int i = 0; i < columns.size(); i++) {
+                int column = current.getColumnIndex(columns.get(i));
+                fromCurrent[i] = column >= 0;
+                sources[i] = fromCurrent[i] ? column : table.getColumnIndex(columns.get(i));
+            }
+
+            // We build a hash index on the new predicator
+            RowIndex index = new RowIndex(table, rightColumn);
+
+            // We probe the index with the value of the connected predicator, for each row in the current table
+            int[] ids = new int[columns.size()];
+            int[] leftIds = current.getColumn(leftColumn);
+            for (int row = 0; row < current.size(); row++) {
+                int match = index.first(leftIds[row]);
+                if (match < 0) continue;
+
+                for (int i = 0; i < sources.length; i++) {
+                    if (fromCurrent[i]) ids[i] = current.getId(row, sources[i]);
+                }
+                for (; match >= 0; match = index.next(match)) {
+                    for (int i = 0; i < sources.length; i++) {
+                        if (!fromCurrent[i]) ids[i] = table.getId(match, sources[i]);
+                    }
+                    result.addRow(ids);
+                }
+            }
+            return result;
+        }
+    }
+
+    /**
+     * A cursor that joins the rows of the plan one at a time.
+     * The start table and the table of each join form the levels of a nested loop: for each row of a level, the
+     * cursor visits the matching rows of the next level, in the order of the hash index.
+     */
+    private class JoinCursor implements RowCursor {
+
+        // The row of a level that has not been probed yet
+        private static final int UNPROBED = Integer.MIN_VALUE;
+
+        // The table of each level
+        private PopulationTable[] levels;
+        // The hash index on the joined column of each level, created when the level is first probed
+        private RowIndex[] indexes;
+        // For each level, the column of its table that is joined on
+        private int[] joinColumns;
+        // For each level, the level and the column of the value it is joined with
+        private int[] keyLevels;
+        private int[] keyColumns;
+        // For each column of the rows, the level and the column of the table it is read from
+        private int[] outputLevels;
+        private int[] outputColumns;
+        // The current row of each level
+        private int[] rows;
+        // Whether the cursor has moved to its first row
+        private boolean started;
+        // Whether the cursor has moved past the last row
+        private boolean finished;
+        // The listener that receives the size of each join, or null
+        private ValidationListener listener;
+        // The amount of rows that were visited on each level, only counted if there is a listener
+        private long[] levelRows;
+
+        private JoinCursor(ValidationListener listener) {
+            int size = joins.size() + 1;
+            levels = new PopulationTable[size];
+            indexes = new RowIndex[size];
+            joinColumns = new int[size];
+            keyLevels = new int[size];
+            keyColumns = new int[size];
+            rows = new int[size];
+            this.listener = listener;
+            if (listener != null) levelRows = new long[size];
+
+            Map<FactType, Integer> levelOf = new HashMap<>();
+            levels[0] = tables.get(start);
+            levelOf.put(start, 0);
+            for (int level = 1; level < size; level++) {
+                Join join = joins.get(level - 1);
+                levels[level] = tables.get(join.right.getFactType());
+                levelOf.put(join.right.getFactType(), level);
+                joinColumns[level] = levels[level].getColumnIndex(join.right);
+                keyLevels[level] = levelOf.get(join.left.getFactType());
+                keyColumns[level] = levels[keyLevels[level]].getColumnIndex(join.left);
+            }
+
+            outputLevels = new int[output.size()];
+            outputColumns = new int[output.size()];
+            for (int column = 0; column < output.size(); column++) {
+                outputLevels[column] = levelOf.get(output.get(column).getFactType());
+                outputColumns[column] = levels[outputLevels[column]].getColumnIndex(output.get(column));
+            }
+        }
+
+        @Override
+        public List<Predicator> getPredicators() {
+            return JoinPlan.this.getPredicators();
+        }
+
+        @Override
+        public ValueDictionary getDictionary() {
+            return levels[0].getDictionary();
+        }
+
+        @Override
+        public boolean next() {
+            if (finished) return false;
+
+            // We continue at the deepest level, or start at the first row of the start table
+            int level = rows.length - 1;
+            if (!started) {
+                started = true;
+                level = 0;
+                rows[0] = -1;
+            }
+
+            while (true) {
+                if (level == 0) {
+                    // The start table is read in order, and the cursor is done after its last row
+                    if (++rows[0] >= levels[0].size()) {
+                        finished = true;
+                        if (listener != null) report();
+                        return false;
+                    }
+                } else {
+                    rows[level] = rows[level] == UNPROBED ? probe(level) : indexes[level].next(rows[level]);
+                    // If there are no more matches on this level, we continue with the next row of the level above
+                    if (rows[level] < 0) {
+                        level--;
+                        continue;
+                    }
+                }
+
+                if (levelRows != null) levelRows[level]++;
+                if (level == rows.length - 1) return true;
+                rows[++level] = UNPROBED;
+            }
+        }
+
+        /**
+         * Reports the size of each join to the listener. The rows of a level are the rows of the table after its join.
+         */
+        private void report() {
+            for (int level = 1; level < levels.length; level++) {
+                Join join = joins.get(level - 1);
+                listener.joinExecuted(getPredicators(), level - 1, join.left, join.right, levelRows[level - 1], levels[level].size(), levelRows[level]);
+            }
+        }
+
+        /**
+         * Finds the first row of a level that matches the current rows of the levels above
+         * @param level The level
+         * @return The row, or -1 if no row matches
+         */
+        private int probe(int level) {
+            // If one of the tables does not contain the predicator we join on, no rows match
+            if (joinColumns[level] < 0 || keyColumns[level] < 0) return -1;
+            if (indexes[level] == null) indexes[level] = new RowIndex(levels[level], joinColumns[level]);
+            return indexes[level].first(levels[keyLevels[level]].getId(rows[keyLevels[level]], keyColumns[level]));
+        }
+
+        @Override
+        public int getId(int column) {
+            int level = outputLevels[column];
+            return outputColumns[column] < 0 ? ValueDictionary.NO_VALUE : levels[level].getId(rows[level], outputColumns[column]);
+        }
+    }
+}
@@ -3,6 +3,8 @@ package ru.informationsystems.util;
 import ru.informationsystems.objects.InformationStructure;
 import ru.informationsystems.objects.Schema;
 import ru.informationsystems.objects.population.Population;
+import ru.informationsystems.objects.population.PopulationTable;
+import ru.informationsystems.objects.population.ValueDictionary;
 import ru.informationsystems.objects.types.*;
 
 import java.util.*;
@@ -49,21 +51,29 @@ public class PopulationBuilder {
         ah.assertExists(factType);
         ah.assertInstanceOf(factType, FactType.class);
 
-        List<Map<Predicator, String>> result = new ArrayList<>();
+        FactType type = (FactType) informationStructure.getObjectType(factType);
 
+        // We determine the columns of the table: the predicators of the fact type, and any other predicator in the values
+        Set<Predicator> predicators = new LinkedHashSet<>(type.getPredicators());
         for (Map<String, String> value : values) {
-            Map<Predicator, String> row = new HashMap<>();
-
-            for (Map.Entry<String, String> entry : value.entrySet()) {
-                ah.assertPredicatorExists(entry.getKey());
-
-                row.put(informationStructure.getPredicator(entry.getKey()), entry.getValue());
+            for (String predicator : value.keySet()) {
+                ah.assertPredicatorExists(predicator);
+                predicators.add(informationStructure.getPredicator(predicator));
             }
+        }
+        List<String> columnNames = new ArrayList<>();
+        for (Predicator predicator : predicators) columnNames.add(predicator.getName());
 
-            result.add(row);
+        // We write the values of each row directly into the columns of the table
+        ValueDictionary dictionary = population.getDictionary();
+        PopulationTable table = new PopulationTable(dictionary, new ArrayList<>(predicators), values.size());
+        int[] ids = new int[columnNames.size()];
+        for (Map<String, String> value : values) {
+            for (int column = 0; column < ids.length; column++) ids[column] = dictionary.intern(value.get(columnNames.get(column)));
+            table.addRow(ids);
         }
 
-        population.addFactTypePopulation((FactType) informationStructure.getObjectType(factType), result);
+        population.addFactTypeTable(type, table);
         return this;
     }
 
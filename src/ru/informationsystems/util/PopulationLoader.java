@@ -0,0 +1,239 @@
+package ru.informationsystems.util;
+
+import ru.informationsystems.objects.InformationStructure;
+import ru.informationsystems.objects.Schema;
+import ru.informationsystems.objects.population.Population;
+import ru.informationsystems.objects.population.PopulationTable;
+import ru.informationsystems.objects.population.ValueDictionary;
+import ru.informationsystems.objects.types.*;
+
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Builder class that loads a population from delimited (CSV or TSV) files, one file per object type.
+ * The values are added to the dictionary of the population while the file is parsed, so no intermediate rows are kept.
+ *
+ * Every file starts with a header line:
+ * - A file of an entity type or label type has a single column, each line contains one element.
+ * - A file of a fact type has one column per predicator, the header contains the names of the predicators.
+ *   An empty field means that the row has no value for that predicator.
+ * - A file of a power type has a single header column, each line contains the elements of one set.
+ *
+ * The delimiter is determined from the file extension: tabs for .tsv and .tab files, commas for all other files.
+ */
+public class PopulationLoader {
+
+    // The population that we are creating
+    private Population population = new Population();
+    // The information structure this population belongs to
+    private InformationStructure informationStructure;
+    // An assertion handler for verifying correctness
+    private AssertionHandler ah;
+
+    public PopulationLoader(Schema schema) {
+        this.informationStructure = schema.getInformationStructure();
+        this.ah = new AssertionHandler(informationStructure);
+    }
+
+    /**
+     * Loads the population of an entity type
+     * @param entityType The entity type we want to populate
+     * @param file The file that contains the elements of this entity type
+     * @return The loader
+     */
+    public PopulationLoader loadEntityType(String entityType, Path file) {
+        ah.assertExists(entityType);
+        ah.assertInstanceOf(entityType, EntityType.class);
+
+        population.addEntityTypeColumn((EntityType) informationStructure.getObjectType(entityType), loadColumn(file));
+        return this;
+    }
+
+    /**
+     * Loads the population of a label type
+     * @param labelType The label type we want to populate
+     * @param file The file that contains the elements of this label type
+     * @return The loader
+     */
+    public PopulationLoader loadLabelType(String labelType, Path file) {
+        ah.assertExists(labelType);
+        ah.assertInstanceOf(labelType, LabelType.class);
+
+        population.addLabelTypeColumn((LabelType) informationStructure.getObjectType(labelType), loadColumn(file));
+        return this;
+    }
+
+    /**
+     * Loads the population of a fact type
+     * @param factType The fact type we want to populate
+     * @param file The file that contains the rows of this fact type
+     * @return The loader
+     */
+    public PopulationLoader loadFactType(String factType, Path file) {
+        ah.assertExists(factType);
+        ah.assertInstanceOf(factType, FactType.class);
+
+        FactType type = (FactType) informationStructure.getObjectType(factType);
+        FactTypeRows rows = new FactTypeRows(type, file);
+        new DelimitedFileReader(file).read(rows);
+
+        if (rows.table == null) throw new IllegalArgumentException("The file " + file + " does not contain a header.");
+        population.addFactTypeTable(type, rows.table);
+        return this;
+    }
+
+    /**
+     * Loads the population of a power type
+     * @param powerType The power type we want to populate
+     * @param file The file that contains the sets of this power type, one set per line
+     * @return The loader
+     */
+    public PopulationLoader loadPowerType(String powerType, Path file) {
+        ah.assertExists(powerType);
+        ah.assertInstanceOf(powerType, PowerType.class);
+
+        PowerTypeRows rows = new PowerTypeRows();
+        new DelimitedFileReader(file).read(rows);
+
+        population.addPowerTypePopulation((PowerType) informationStructure.getObjectType(powerType), rows.sets);
+        return this;
+    }
+
+    /**
+     * Builds the population
+     * @return The population
+     */
+    public Population build() {
+        return population;
+    }
+
+    /**
+     * Loads a file with a single column, and adds its values to the dictionary of the population
+     * @param file The file
+     * @return The column of ids
+     */
+    private int[] loadColumn(Path file) {
+        ColumnRows rows = new ColumnRows(file);
+        new DelimitedFileReader(file).read(rows);
+        return Arrays.copyOf(rows.column, rows.size);
+    }
+
+    /**
+     * Handler that writes the rows of a fact type file into a table
+     */
+    private class FactTypeRows implements DelimitedFileReader.RowHandler {
+
+        // The fact type of the file
+        private FactType factType;
+        // The file
+        private Path file;
+        // The table, which is created when the header is read
+        private PopulationTable table;
+        // The column of the table that each field belongs to
+        private int[] fieldColumns;
+        // The ids of the current row
+        private int[] ids;
+
+        private FactTypeRows(FactType factType, Path file) {
+            this.factType = factType;
+            this.file = file;
+        }
+
+        @Override
+        public void row(String[] fields, int count, long line) {
+            if (table == null) {
+                readHeader(fields, count);
+                return;
+            }
+            if (count != fieldColumns.length) {
+                throw new IllegalArgumentException("Expected " + fieldColumns.length + " fields but found " + count + " in " + file + " at line " + line);
+            }
+
+            ValueDictionary dictionary = population.getDictionary();
+            Arrays.fill(ids, ValueDictionary.NO_VALUE);
+            for (int i = 0; i < count; i++) {
+                if (!fields[i].isEmpty()) ids[fieldColumns[i]] = dictionary.intern(fields[i]);
+            }
+            table.addRow(ids);
+        }
+
+        /**
+         * Creates the table. Its columns are the predicators of the fact type, followed by any other predicator
+         * in the header. The predicator names are only resolved once, here.
+         */
+        private void readHeader(String[] fields, int count) {
+            Set<Predicator> predicators = new LinkedHashSet<>(factType.getPredicators());
+            List<Predicator> header = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                String name = fields[i].trim();
+                ah.assertPredicatorExists(name);
+                Predicator predicator = informationStructure.getPredicator(name);
+                if (header.contains(predicator)) throw new IllegalArgumentException("Predicator " + name + " occurs twice in the header of " + file);
+                header.add(predicator);
+                predicators.add(predicator);
+            }
+
+            table = new PopulationTable(population.getDictionary(), new ArrayList<>(predicators), 1024);
+            fieldColumns = new int[count];
+            for (int i = 0; i < count; i++) fieldColumns[i] = table.getColumnIndex(header.get(i));
+            ids = new int[predicators.size()];
+        }
+    }
+
+    /**
+     * Handler that writes the rows of a file with a single column into a column of ids
+     */
+    private class ColumnRows implements DelimitedFileReader.RowHandler {
+
+        // The file
+        private Path file;
+        // Whether the next row is the header
+        private boolean header = true;
+        // The ids of the values
+        private int[] column = new int[1024];
+        // The amount of values
+        private int size;
+
+        private ColumnRows(Path file) {
+            this.file = file;
+        }
+
+        @Override
+        public void row(String[] fields, int count, long line) {
+            if (header) {
+                header = false;
+                return;
+            }
+            if (count != 1) throw new IllegalArgumentException("Expected a single field but found " + count + " in " + file + " at line " + line);
+
+            if (size == column.length) column = Arrays.copyOf(column, size * 2);
+            column[size++] = population.getDictionary().intern(fields[0]);
+        }
+    }
+
+    /**
+     * Handler that reads each row of a power type file as a set
+     */
+    private static class PowerTypeRows implements DelimitedFileReader.RowHandler {
+
+        // Whether the next row is the header
+        private boolean header = true;
+        // The sets
+        private List<Set<String>> sets = new ArrayList<>();
+
+        @Override
+        public void row(String[] fields, int count, long line) {
+            if (header) {
+                header = false;
+                return;
+            }
+
+            Set<String> set = new HashSet<>();
+            for (int i = 0; i < count; i++) {
+                if (!fields[i].isEmpty()) set.add(fields[i]);
+            }
+            sets.add(set);
+        }
+    }
+}
@@ -0,0 +1,607 @@
+package ru.informationsystems.util;
+
+import ru.informationsystems.objects.InformationStructure;
+import ru.informationsystems.objects.Schema;
+import ru.informationsystems.objects.constraints.*;
+import ru.informationsystems.objects.population.Pair;
+import ru.informationsystems.objects.types.*;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * Class for storing a schema in a compact binary file, which can be loaded again without the builders.
+ *
+ * The object types, predicators, specializations and constraints are stored in the order in which they have to be
+ * created, and refer to each other by their index in the file. Loading a snapshot therefore only creates the objects
+ * and connects them, and does not check them again. The type relatedness relation, the specialization hierarchy and
+ * the join paths of the collapses of the constraints are stored as well, so they do not have to be computed again
+ * either. A large snapshot is memory mapped when it is loaded.
+ *
+ * The loaded schema contains the constraints in the order in which they were stored, so it reports its results in the
+ * same order as the schema that was stored. A snapshot can only be loaded by the version of this class that wrote it.
+ */
+public class SchemaSnapshot {
+
+    // The first bytes of every snapshot
+    private static final int MAGIC = 0x49535353;
+    // The version of the format, which is increased whenever the format changes
+    private static final int VERSION = 1;
+    // The size in bytes above which a snapshot is memory mapped instead of read
+    private static final long MAP_THRESHOLD = 64 * 1024;
+
+    // The kinds of object types
+    private static final byte ENTITY_TYPE = 0;
+    private static final byte LABEL_TYPE = 1;
+    private static final byte FACT_TYPE = 2;
+    private static final byte POWER_TYPE = 3;
+    private static final byte SEQUENCE_TYPE = 4;
+
+    // The kinds of constraints
+    private static final byte UNIQUENESS = 0;
+    private static final byte OCCURRENCE_FREQUENCY = 1;
+    private static final byte TOTAL_ROLE = 2;
+    private static final byte SET = 3;
+    private static final byte ENUMERATION = 4;
+    private static final byte PT_EXCLUSION = 5;
+    private static final byte PT_COVER = 6;
+    private static final byte PT_SET_CARDINALITY = 7;
+    private static final byte PT_MEMBERSHIP = 8;
+    private static final byte SPEC_TOTAL_SUBTYPE = 9;
+    private static final byte SPEC_EXCLUSION = 10;
+
+    // The object types, in the order in which they are stored
+    private List<ObjectType> objectTypes = new ArrayList<>();
+    // The index of each object type
+    private Map<ObjectType, Integer> objectTypeIndexes = new HashMap<>();
+    // The predicators, in the order in which they are stored
+    private List<Predicator> predicators = new ArrayList<>();
+    // The index of each predicator
+    private Map<Predicator, Integer> predicatorIndexes = new HashMap<>();
+
+    private SchemaSnapshot() {
+    }
+
+    /**
+     * Stores a schema in a snapshot. The relations of the information structure that were not computed yet, and the
+     * join paths of the collapses of the constraints, are computed first.
+     * @param schema The schema
+     * @param file The file the snapshot is written to, which is replaced if it exists
+     */
+    public static void write(Schema schema, Path file) {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+            new SchemaSnapshot().writeSchema(schema, out);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write " + file, e);
+        }
+    }
+
+    /**
+     * Loads a schema from a snapshot
+     * @param file The file that contains the snapshot
+     * @return The schema, which does not share any objects with the schema that was stored
+     */
+    public static Schema read(Path file) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer;
+            if (channel.size() > MAP_THRESHOLD) {
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            } else {
+                // Mapping a small file costs more than reading it
+                buffer = ByteBuffer.allocate((int) channel.size());
+                while (buffer.hasRemaining()) {
+                    if (channel.read(buffer) < 0) break;
+                }
+                buffer.flip();
+            }
+            if (buffer.remaining() < 8 || buffer.getInt() != MAGIC) throw new IllegalArgumentException(file + " is not a schema snapshot.");
+            int version = buffer.getInt();
+            if (version != VERSION) throw new IllegalArgumentException("The snapshot " + file + " has version " + version + ", only version " + VERSION + " is supported.");
+
+            return new SchemaSnapshot().readSchema(buffer);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read " + file, e);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | ClassCastException e) {
+            throw new IllegalArgumentException("The snapshot " + file + " is incomplete or corrupt.", e);
+        }
+    }
+
+    /**
+     * Writes a schema to a snapshot
+     * @param schema The schema
+     * @param out The output of the snapshot
+     */
+    private void writeSchema(Schema schema, DataOutputStream out) throws IOException {
+        InformationStructure informationStructure = schema.getInformationStructure();
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+
+        // We number the object types, such that the object types that a power type or sequence type refers to come first
+        List<ObjectType> sortedObjectTypes = new ArrayList<>(informationStructure.getObjectTypes());
+        Collections.sort(sortedObjectTypes);
+        for (ObjectType objectType : sortedObjectTypes) addObjectType(objectType);
+
+        out.writeInt(objectTypes.size());
+        for (ObjectType objectType : objectTypes) {
+            if (objectType instanceof EntityType) {
+                out.writeByte(ENTITY_TYPE);
+                writeString(out, objectType.getName());
+            } else if (objectType instanceof LabelType) {
+                out.writeByte(LABEL_TYPE);
+                writeString(out, objectType.getName());
+            } else if (objectType instanceof FactType) {
+                out.writeByte(FACT_TYPE);
+                writeString(out, objectType.getName());
+            } else if (objectType instanceof PowerType) {
+                out.writeByte(POWER_TYPE);
+                writeString(out, objectType.getName());
+                out.writeInt(objectTypeIndexes.get(((PowerType) objectType).getElement()));
+                out.writeInt(objectTypeIndexes.get(((PowerType) objectType).getImplicitFactType()));
+            } else if (objectType instanceof SequenceType) {
+                out.writeByte(SEQUENCE_TYPE);
+                writeString(out, objectType.getName());
+                out.writeInt(objectTypeIndexes.get(((SequenceType) objectType).getElement()));
+            } else {
+                throw new IllegalArgumentException("The object type " + objectType.getName() + " cannot be stored in a snapshot.");
+            }
+        }
+
+        // The predicators are stored per fact type, in the order in which they were added to it
+        for (ObjectType objectType : objectTypes) {
+            if (!(objectType instanceof FactType)) continue;
+            for (Predicator predicator : ((FactType) objectType).getPredicators()) {
+                predicatorIndexes.put(predicator, predicators.size());
+                predicators.add(predicator);
+            }
+        }
+        out.writeInt(predicators.size());
+        for (Predicator predicator : predicators) {
+            writeString(out, predicator.getName());
+            out.writeInt(objectTypeIndexes.get(predicator.getFactType()));
+            out.writeInt(objectTypeIndexes.get(predicator.getBase()));
+        }
+
+        for (ObjectType objectType : objectTypes) {
+            if (!(objectType instanceof EntityType)) continue;
+            writeObjectTypes(out, ((EntityType) objectType).getSpecializations());
+            writeObjectTypes(out, ((EntityType) objectType).getGeneralizations());
+        }
+
+        // We determine the join paths of the collapses of the constraints, in the same way the constraints collapse
+        AssertionHandler ah = new AssertionHandler(informationStructure);
+        for (Constraint constraint : schema.getConstraints()) {
+            if (constraint instanceof UniquenessConstraint) ah.getJoins(((UniquenessConstraint) constraint).getPredicators());
+            if (constraint instanceof OccurrenceFrequencyConstraint) ah.getJoins(((OccurrenceFrequencyConstraint) constraint).getPredicators());
+            if (constraint instanceof SetConstraint) {
+                ah.getJoins(((SetConstraint) constraint).getPredicatorMap().keySet());
+                ah.getJoins(((SetConstraint) constraint).getPredicatorMap().values());
+            }
+        }
+        writeTypeRelatedness(out, informationStructure.getTypeRelatedness());
+        writeSpecializations(out, informationStructure.getSpecializationIndex());
+        writeJoinPaths(out, informationStructure.getJoinPaths());
+
+        out.writeInt(schema.getConstraints().size());
+        for (Constraint constraint : schema.getConstraints()) writeConstraint(out, constraint);
+    }
+
+    /**
+     * Reads a schema from a snapshot, of which the header was already read
+     * @param buffer The contents of the snapshot
+     * @return The schema
+     */
+    private Schema readSchema(ByteBuffer buffer) {
+        InformationStructure informationStructure = new InformationStructure();
+
+        int objectTypeCount = buffer.getInt();
+        for (int i = 0; i < objectTypeCount; i++) {
+            byte kind = buffer.get();
+            String name = readString(buffer);
+            ObjectType objectType;
+            switch (kind) {
+                case ENTITY_TYPE:
+                    objectType = new EntityType(name);
+                    break;
+                case LABEL_TYPE:
+                    objectType = new LabelType(name);
+                    break;
+                case FACT_TYPE:
+                    objectType = new FactType(name);
+                    break;
+                case POWER_TYPE:
+                    objectType = new PowerType(name, (EntityType) readObjectType(buffer), (FactType) readObjectType(buffer));
+                    break;
+                case SEQUENCE_TYPE:
+                    objectType = new SequenceType(name, readObjectType(buffer));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown kind of object type: " + kind);
+            }
+            objectTypes.add(objectType);
+            informationStructure.addObjectType(objectType);
+        }
+
+        int predicatorCount = buffer.getInt();
+        for (int i = 0; i < predicatorCount; i++) {
+            String name = readString(buffer);
+            FactType factType = (FactType) readObjectType(buffer);
+            Predicator predicator = new Predicator(name, readObjectType(buffer), factType);
+            predicators.add(predicator);
+            informationStructure.addPredicator(factType, predicator);
+        }
+
+        for (ObjectType objectType : objectTypes) {
+            if (!(objectType instanceof EntityType)) continue;
+            EntityType entityType = (EntityType) objectType;
+            for (ObjectType specialization : readObjectTypes(buffer)) informationStructure.addSpecialization(entityType, specialization);
+            for (ObjectType generalization : readObjectTypes(buffer)) informationStructure.addGeneralization(entityType, generalization);
+        }
+
+        // The relations are restored before the constraints are created, since some constraints use them
+        TypeRelatednessIndex typeRelatedness = readTypeRelatedness(buffer);
+        SpecializationIndex specializations = readSpecializations(buffer);
+        JoinPathIndex joinPaths = readJoinPaths(buffer, typeRelatedness);
+        informationStructure.restoreIndexes(typeRelatedness, specializations, joinPaths);
+
+        AssertionHandler ah = new AssertionHandler(informationStructure);
+        Set<Constraint> constraints = new LinkedHashSet<>();
+        int constraintCount = buffer.getInt();
+        for (int i = 0; i < constraintCount; i++) constraints.add(readConstraint(buffer, informationStructure, ah));
+
+        return new Schema(informationStructure, constraints);
+    }
+
+    /**
+     * Numbers an object type, after the object types it refers to
+     * @param objectType The object type
+     */
+    private void addObjectType(ObjectType objectType) {
+        if (objectTypeIndexes.containsKey(objectType)) return;
+
+        if (objectType instanceof PowerType) {
+            addObjectType(((PowerType) objectType).getElement());
+            addObjectType(((PowerType) objectType).getImplicitFactType());
+        }
+        if (objectType instanceof SequenceType) addObjectType(((SequenceType) objectType).getElement());
+
+        objectTypeIndexes.put(objectType, objectTypes.size());
+        objectTypes.add(objectType);
+    }
+
+    /**
+     * Writes a constraint, starting with its kind
+     * @param out The output of the snapshot
+     * @param constraint The constraint
+     */
+    private void writeConstraint(DataOutputStream out, Constraint constraint) throws IOException {
+        if (constraint instanceof UniquenessConstraint) {
+            out.writeByte(UNIQUENESS);
+            writePredicators(out, ((UniquenessConstraint) constraint).getPredicators());
+        } else if (constraint instanceof OccurrenceFrequencyConstraint) {
+            OccurrenceFrequencyConstraint occurrenceFrequencyConstraint = (OccurrenceFrequencyConstraint) constraint;
+            out.writeByte(OCCURRENCE_FREQUENCY);
+            writePredicators(out, occurrenceFrequencyConstraint.getPredicators());
+            out.writeInt(occurrenceFrequencyConstraint.getMinimum());
+            out.writeInt(occurrenceFrequencyConstraint.getMaximum());
+        } else if (constraint instanceof TotalRoleConstraint) {
+            out.writeByte(TOTAL_ROLE);
+            writePredicators(out, ((TotalRoleConstraint) constraint).getPredicators());
+        } else if (constraint instanceof SetConstraint) {
+            SetConstraint setConstraint = (SetConstraint) constraint;
+            out.writeByte(SET);
+            out.writeByte(setConstraint.getConstraintType().ordinal());
+            out.writeInt(setConstraint.getPredicatorMap().size());
+            for (Map.Entry<Predicator, Predicator> entry : setConstraint.getPredicatorMap().entrySet()) {
+                out.writeInt(predicatorIndexes.get(entry.getKey()));
+                out.writeInt(predicatorIndexes.get(entry.getValue()));
+            }
+        } else if (constraint instanceof EnumerationConstraint) {
+            EnumerationConstraint enumerationConstraint = (EnumerationConstraint) constraint;
+            out.writeByte(ENUMERATION);
+            out.writeInt(objectTypeIndexes.get(enumerationConstraint.getLabelType()));
+            out.writeInt(enumerationConstraint.getAllowedValues().size());
+            for (String value : enumerationConstraint.getAllowedValues()) writeString(out, value);
+        } else if (constraint instanceof PTExclusionConstraint) {
+            out.writeByte(PT_EXCLUSION);
+            out.writeInt(objectTypeIndexes.get(((PTExclusionConstraint) constraint).getPowerType()));
+        } else if (constraint instanceof PTCoverConstraint) {
+            out.writeByte(PT_COVER);
+            out.writeInt(objectTypeIndexes.get(((PTCoverConstraint) constraint).getPowerType()));
+        } else if (constraint instanceof PTSetCardinalityConstraint) {
+            PTSetCardinalityConstraint setCardinalityConstraint = (PTSetCardinalityConstraint) constraint;
+            out.writeByte(PT_SET_CARDINALITY);
+            out.writeInt(objectTypeIndexes.get(setCardinalityConstraint.getPowerType()));
+            out.writeInt(setCardinalityConstraint.getMinimum());
+            out.writeInt(setCardinalityConstraint.getMaximum());
+        } else if (constraint instanceof PTMembershipConstraint) {
+            PTMembershipConstraint membershipConstraint = (PTMembershipConstraint) constraint;
+            out.writeByte(PT_MEMBERSHIP);
+            out.writeInt(objectTypeIndexes.get(membershipConstraint.getPowerType()));
+            out.writeInt(objectTypeIndexes.get(membershipConstraint.getFactType()));
+        } else if (constraint instanceof SpecTotalSubtypeConstraint) {
+            out.writeByte(SPEC_TOTAL_SUBTYPE);
+            writeObjectTypes(out, ((SpecTotalSubtypeConstraint) constraint).getEntityTypes());
+        } else if (constraint instanceof SpecExclusionConstraint) {
+            out.writeByte(SPEC_EXCLUSION);
+            writeObjectTypes(out, ((SpecExclusionConstraint) constraint).getEntityTypes());
+        } else {
+            throw new IllegalArgumentException("The constraint " + constraint.getInformation() + " cannot be stored in a snapshot.");
+        }
+    }
+
+    /**
+     * Reads a constraint. The collections of the constraint keep the order in which they were stored, so the constraint
+     * iterates them in the same order as the constraint that was stored, and reports the same violations.
+     * @param buffer The contents of the snapshot
+     * @param informationStructure The information structure the constraint applies to
+     * @param ah The assertion handler of the constraints
+     * @return The constraint
+     */
+    private Constraint readConstraint(ByteBuffer buffer, InformationStructure informationStructure, AssertionHandler ah) {
+        byte kind = buffer.get();
+        switch (kind) {
+            case UNIQUENESS:
+                return new UniquenessConstraint(readPredicators(buffer), ah);
+            case OCCURRENCE_FREQUENCY:
+                Set<Predicator> occurrencePredicators = readPredicators(buffer);
+                int minimum = buffer.getInt();
+                return new OccurrenceFrequencyConstraint(occurrencePredicators, minimum, buffer.getInt(), ah);
+            case TOTAL_ROLE:
+                return new TotalRoleConstraint(readPredicators(buffer));
+            case SET:
+                ConstraintBuilder.SetConstr setConstr = ConstraintBuilder.SetConstr.values()[buffer.get()];
+                Map<Predicator, Predicator> predicatorMap = new LinkedHashMap<>();
+                int matchings = buffer.getInt();
+                for (int i = 0; i < matchings; i++) predicatorMap.put(readPredicator(buffer), readPredicator(buffer));
+                return new SetConstraint(setConstr, predicatorMap, ah);
+            case ENUMERATION:
+                LabelType labelType = (LabelType) readObjectType(buffer);
+                Set<String> allowedValues = new LinkedHashSet<>();
+                int values = buffer.getInt();
+                for (int i = 0; i < values; i++) allowedValues.add(readString(buffer));
+                return new EnumerationConstraint(labelType, allowedValues);
+            case PT_EXCLUSION:
+                return new PTExclusionConstraint((PowerType) readObjectType(buffer));
+            case PT_COVER:
+                return new PTCoverConstraint((PowerType) readObjectType(buffer));
+            case PT_SET_CARDINALITY:
+                PowerType powerType = (PowerType) readObjectType(buffer);
+                int minimumElements = buffer.getInt();
+                return new PTSetCardinalityConstraint(powerType, minimumElements, buffer.getInt());
+            case PT_MEMBERSHIP:
+                return new PTMembershipConstraint((PowerType) readObjectType(buffer), (FactType) readObjectType(buffer));
+            case SPEC_TOTAL_SUBTYPE:
+                return new SpecTotalSubtypeConstraint(readEntityTypes(buffer), informationStructure);
+            case SPEC_EXCLUSION:
+                return new SpecExclusionConstraint(readEntityTypes(buffer));
+            default:
+                throw new IllegalArgumentException("Unknown kind of constraint: " + kind);
+        }
+    }
+
+    /**
+     * Writes the type relatedness relation: the group of each object type, the row of each group and the related rows
+     * of each row
+     * @param out The output of the snapshot
+     * @param typeRelatedness The type relatedness relation
+     */
+    private void writeTypeRelatedness(DataOutputStream out, TypeRelatednessIndex typeRelatedness) throws IOException {
+        Map<ObjectType, Integer> groups = typeRelatedness.getGroups();
+        for (ObjectType objectType : objectTypes) out.writeInt(groups.getOrDefault(objectType, -1));
+        writeInts(out, typeRelatedness.getRows());
+        writeBitSets(out, typeRelatedness.getRelated());
+    }
+
+    /**
+     * Reads the type relatedness relation
+     * @param buffer The contents of the snapshot
+     * @return The type relatedness relation
+     */
+    private TypeRelatednessIndex readTypeRelatedness(ByteBuffer buffer) {
+        Map<ObjectType, Integer> groups = new HashMap<>();
+        for (ObjectType objectType : objectTypes) {
+            int group = buffer.getInt();
+            if (group >= 0) groups.put(objectType, group);
+        }
+        return new TypeRelatednessIndex(groups, readInts(buffer), readBitSets(buffer));
+    }
+
+    /**
+     * Writes the specialization hierarchy: the entity types in topological order, with their ancestors and depths
+     * @param out The output of the snapshot
+     * @param specializations The specialization hierarchy
+     */
+    private void writeSpecializations(DataOutputStream out, SpecializationIndex specializations) throws IOException {
+        writeObjectTypes(out, specializations.getEntityTypes());
+        writeBitSets(out, specializations.getAncestorSets());
+        writeInts(out, specializations.getDepths());
+    }
+
+    /**
+     * Reads the specialization hierarchy
+     * @param buffer The contents of the snapshot
+     * @return The specialization hierarchy
+     */
+    private SpecializationIndex readSpecializations(ByteBuffer buffer) {
+        List<EntityType> entityTypes = new ArrayList<>();
+        for (ObjectType objectType : readObjectTypes(buffer)) entityTypes.add((EntityType) objectType);
+        return new SpecializationIndex(entityTypes, readBitSets(buffer), readInts(buffer));
+    }
+
+    /**
+     * Writes the join paths: for each list of predicators, the pairs of predicators that its fact types are joined on
+     * @param out The output of the snapshot
+     * @param joinPaths The join paths
+     */
+    private void writeJoinPaths(DataOutputStream out, JoinPathIndex joinPaths) throws IOException {
+        Map<List<Predicator>, List<Pair<Predicator, Predicator>>> paths = joinPaths.getPaths();
+        out.writeInt(paths.size());
+        for (Map.Entry<List<Predicator>, List<Pair<Predicator, Predicator>>> entry : paths.entrySet()) {
+            writePredicators(out, entry.getKey());
+            out.writeInt(entry.getValue().size());
+            for (Pair<Predicator, Predicator> join : entry.getValue()) {
+                out.writeInt(predicatorIndexes.get(join.getKey()));
+                out.writeInt(predicatorIndexes.get(join.getValue()));
+            }
+        }
+    }
+
+    /**
+     * Reads the join paths
+     * @param buffer The contents of the snapshot
+     * @param typeRelatedness The type relatedness relation, which is used for join paths that were not stored
+     * @return The join paths
+     */
+    private JoinPathIndex readJoinPaths(ByteBuffer buffer, TypeRelatednessIndex typeRelatedness) {
+        Map<List<Predicator>, List<Pair<Predicator, Predicator>>> paths = new HashMap<>();
+        int count = buffer.getInt();
+        for (int i = 0; i < count; i++) {
+            List<Predicator> key = readPredicatorList(buffer);
+            List<Pair<Predicator, Predicator>> joins = new ArrayList<>();
+            int size = buffer.getInt();
+            for (int j = 0; j < size; j++) joins.add(new Pair<>(readPredicator(buffer), readPredicator(buffer)));
+            paths.put(key, Collections.unmodifiableList(joins));
+        }
+        return new JoinPathIndex(typeRelatedness, paths);
+    }
+
+    /**
+     * Writes a collection of object types as the amount of object types, followed by their indexes
+     */
+    private void writeObjectTypes(DataOutputStream out, Collection<? extends ObjectType> objectTypes) throws IOException {
+        out.writeInt(objectTypes.size());
+        for (ObjectType objectType : objectTypes) out.writeInt(objectTypeIndexes.get(objectType));
+    }
+
+    /**
+     * Reads a collection of object types, in the order in which they were stored
+     */
+    private List<ObjectType> readObjectTypes(ByteBuffer buffer) {
+        int size = buffer.getInt();
+        List<ObjectType> result = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) result.add(readObjectType(buffer));
+        return result;
+    }
+
+    /**
+     * Reads a set of entity types, in the order in which they were stored
+     */
+    private Set<EntityType> readEntityTypes(ByteBuffer buffer) {
+        Set<EntityType> result = new LinkedHashSet<>();
+        for (ObjectType objectType : readObjectTypes(buffer)) result.add((EntityType) objectType);
+        return result;
+    }
+
+    /**
+     * Reads the index of an object type, and gives the object type
+     */
+    private ObjectType readObjectType(ByteBuffer buffer) {
+        return objectTypes.get(buffer.getInt());
+    }
+
+    /**
+     * Writes a collection of predicators as the amount of predicators, followed by their indexes
+     */
+    private void writePredicators(DataOutputStream out, Collection<Predicator> predicators) throws IOException {
+        out.writeInt(predicators.size());
+        for (Predicator predicator : predicators) out.writeInt(predicatorIndexes.get(predicator));
+    }
+
+    /**
+     * Reads a list of predicators
+     */
+    private List<Predicator> readPredicatorList(ByteBuffer buffer) {
+        int size = buffer.getInt();
+        List<Predicator> result = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) result.add(readPredicator(buffer));
+        return result;
+    }
+
+    /**
+     * Reads a set of predicators, in the order in which they were stored
+     */
+    private Set<Predicator> readPredicators(ByteBuffer buffer) {
+        Set<Predicator> result = new LinkedHashSet<>();
+        for (Predicator predicator : readPredicatorList(buffer)) result.add(predicator);
+        return result;
+    }
+
+    /**
+     * Reads the index of a predicator, and gives the predicator
+     */
+    private Predicator readPredicator(ByteBuffer buffer) {
+        return predicators.get(buffer.getInt());
+    }
+
+    /**
+     * Writes an array of integers, preceded by its length
+     */
+    private static void writeInts(DataOutputStream out, int[] values) throws IOException {
+        out.writeInt(values.length);
+        for (int value : values) out.writeInt(value);
+    }
+
+    /**
+     * Reads an array of integers
+     */
+    private static int[] readInts(ByteBuffer buffer) {
+        int[] values = new int[buffer.getInt()];
+        buffer.asIntBuffer().get(values);
+        buffer.position(buffer.position() + values.length * Integer.BYTES);
+        return values;
+    }
+
+    /**
+     * Writes an array of bitsets, preceded by its length. Each bitset is stored as its words.
+     */
+    private static void writeBitSets(DataOutputStream out, BitSet[] bitSets) throws IOException {
+        out.writeInt(bitSets.length);
+        for (BitSet bitSet : bitSets) {
+            long[] words = bitSet.toLongArray();
+            out.writeInt(words.length);
+            for (long word : words) out.writeLong(word);
+        }
+    }
+
+    /**
+     * Reads an array of bitsets
+     */
+    private static BitSet[] readBitSets(ByteBuffer buffer) {
+        BitSet[] bitSets = new BitSet[buffer.getInt()];
+        for (int i = 0; i < bitSets.length; i++) {
+            long[] words = new long[buffer.getInt()];
+            buffer.asLongBuffer().get(words);
+            buffer.position(buffer.position() + words.length * Long.BYTES);
+            bitSets[i] = BitSet.valueOf(words);
+        }
+        return bitSets;
+    }
+
+    /**
+     * Writes a string as the length of its UTF-8 encoding, followed by the encoding
+     */
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Reads a string
+     */
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
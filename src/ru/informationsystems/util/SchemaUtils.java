@@ -1,8 +1,11 @@
 package ru.informationsystems.util;
 
 import ru.informationsystems.objects.InformationStructure;
+import ru.informationsystems.objects.constraints.ValidationListener;
 import ru.informationsystems.objects.population.Pair;
 import ru.informationsystems.objects.population.Population;
+import ru.informationsystems.objects.population.PopulationTable;
+import ru.informationsystems.objects.population.RowCursor;
 import ru.informationsystems.objects.types.EntityType;
 import ru.informationsystems.objects.types.FactType;
 import ru.informationsystems.objects.types.ObjectType;
@@ -25,187 +28,155 @@ public class SchemaUtils {
      * @return A table representing the collapsed population
      */
     public static List<Map<Predicator, String>> collapse(Population totalPopulation, Collection<Predicator> predicators, AssertionHandler ah) {
-// Initialize a resulting table
-        List<Map<Predicator, String>> result = new ArrayList<>();
+        return collapse(totalPopulation, predicators, ah, null);
+    }
 
-        // Create a new, empty set of already explored fact types
-        Set<FactType> exploredFactTypes = new HashSet<>();
+    /**
+     * This function collapses a population in the same way as collapse, and reports the size of each join to a listener
+     *
+     * @param totalPopulation The population of the entire information structure
+     * @param predicators The predicators that the constraint spans
+     * @param ah The assertion handler we can use for checking type relatedness
+     * @param listener The listener, or null
+     * @return A table representing the collapsed population
+     */
+    public static List<Map<Predicator, String>> collapse(Population totalPopulation, Collection<Predicator> predicators, AssertionHandler ah, ValidationListener listener) {
+        return collapseTable(totalPopulation, predicators, ah, listener).asRows();
+    }
 
+    /**
+     * This function collapses a list of fact types and a population of each of these fact types into a table of ids.
+     * Starting at the fact type of the first predicator, we keep adding an adjacent fact type, which determines the
+     * predicators that the fact types are joined on. These join paths are determined once per information structure.
+     * A join plan then chooses the order in which the joins are executed, such that the intermediate tables stay small.
+     *
+     * @param totalPopulation The population of the entire information structure
+     * @param predicators The predicators that the constraint spans
+     * @param ah The assertion handler we can use for checking type relatedness
+     * @return A table representing the collapsed population
+     */
+    public static PopulationTable collapseTable(Population totalPopulation, Collection<Predicator> predicators, AssertionHandler ah) {
+        return collapseTable(totalPopulation, predicators, ah, null);
+    }
+
+    /**
+     * This function collapses a population in the same way as collapseTable, and reports the size of each join to a
+     * listener
+     *
+     * @param totalPopulation The population of the entire information structure
+     * @param predicators The predicators that the constraint spans
+     * @param ah The assertion handler we can use for checking type relatedness
+     * @param listener The listener, or null
+     * @return A table representing the collapsed population
+     */
+    public static PopulationTable collapseTable(Population totalPopulation, Collection<Predicator> predicators, AssertionHandler ah, ValidationListener listener) {
         // Find a random predicator in the list of predicators that this constraint spans
         Optional<Predicator> optional = predicators.stream().findAny();
         // If no such predicator exists, we return an empty table
-        if (!optional.isPresent()) return result;
-        // Otherwise, we retrieve the first (base) predicator
-        Predicator basePredicator = optional.get();
-        // We retrieve the population of this predicators fact type, and set the current result to be equal to this population.
-        List<Map<Predicator, String>> basePopulation = totalPopulation.getFactTypePopulations(basePredicator.getFactType());
-        result.addAll(basePopulation);
-        // We add the predicators fact type to the explored fact types
-        exploredFactTypes.add(basePredicator.getFactType());
-
-        // We create an opt variable, that contains a pair with the predicator that is adjacent to the current set of explored predicators.
-        Optional<Pair<Predicator, Predicator>> opt = getAdjacentPredicator(exploredFactTypes, predicators, ah);
-        // We check if it's present
-        while (opt.isPresent()) {
-            // The predicator that is connected to this new predicator
-            Predicator fromPred = opt.get().getKey();
-            // The new predicator
-            Predicator newPred = opt.get().getValue();
-            FactType factType = newPred.getFactType();
-
-            // We retrieve the population of this new predicators fact type
-            List<Map<Predicator, String>> population = totalPopulation.getFactTypePopulations(factType);
-
-            // We initialize a new result, that will replace the old result
-            List<Map<Predicator, String>> newResult = new ArrayList<>();
-
-            // We loop through all rows in the current table
-            for (Map<Predicator, String> row : result) {
-                // We loop through all rows in the new population
-                for (Map<Predicator, String> newRow : population) {
-                    // We check if the predicators value of the new population equals the predicators
-                    // value of the old population
-                    if (newRow.get(newPred).equals(row.get(fromPred))) {
-                        // We create a copy of the old row
-                        Map<Predicator, String> resultRow = new HashMap<>(row);
-
-                        // We loop through all entries in the new row
-                        for (Map.Entry<Predicator, String> entry : newRow.entrySet()) {
-                            Predicator predicator = entry.getKey();
-                            String value = entry.getValue();
-
-                            if (predicator != newPred) {
-                                // We add the new predicator value to the new resulting row
-                                resultRow.put(predicator, value);
-                            }
-                        }
-
-                        // We add the resulting row to the new result
-                        newResult.add(resultRow);
-                    }
-                }
-            }
+        if (!optional.isPresent()) return new PopulationTable(totalPopulation.getDictionary(), Collections.emptyList(), 0);
 
-            // We set the result equal to the new result
-            result = newResult;
+        List<Pair<Predicator, Predicator>> joins = ah.getJoins(predicators);
+        // If no other fact type is connected, the result is the population of the base predicators fact type
+        if (joins.isEmpty()) return getFactTypeTable(totalPopulation, optional.get().getFactType());
+        return new JoinPlan(totalPopulation, predicators, joins).execute(listener);
+    }
 
-            // We add the newly explored fact type to the explored fact types
-            exploredFactTypes.add(factType);
-            // We calculate a new adjacent predicator
-            opt = getAdjacentPredicator(exploredFactTypes, predicators, ah);
-        }
-        return result;
+    /**
+     * This function collapses a list of fact types in the same way as collapseTable, but returns a cursor that joins
+     * the rows while they are read. A constraint that stops reading at its first violation therefore never creates
+     * the rest of the collapse. The rows are read in the same order as the rows of collapseTable.
+     *
+     * @param totalPopulation The population of the entire information structure
+     * @param predicators The predicators that the constraint spans
+     * @param ah The assertion handler we can use for checking type relatedness
+     * @return A cursor over the collapsed population
+     */
+    public static RowCursor collapseCursor(Population totalPopulation, Collection<Predicator> predicators, AssertionHandler ah) {
+        return collapseCursor(totalPopulation, predicators, ah, null);
     }
 
     /**
-     * This function takes a list of explored fact types, and the result will be an optional of a pair.
-     * The function will look for an unexplored fact type that is adjacent to one of the already explored fact types.
-     * With adjacent, we mean that the two predicators are type related. If we found a predicator with such a fact type,
-     * the function will return a pair containing the original predicator (the one in 'exploredFactTypes') and the
-     * adjacent predicator. If no such predicator exists, the function will return an empty optional.
+     * This function collapses a population in the same way as collapseCursor, and reports the size of each join to a
+     * listener once all rows were read
      *
-     * @param exploredFactTypes The set of already explored fact types
+     * @param totalPopulation The population of the entire information structure
      * @param predicators The predicators that the constraint spans
      * @param ah The assertion handler we can use for checking type relatedness
-     * @return a pair with the two predicators if an adjacent predicator exists, or otherwise an empty optional
+     * @param listener The listener, or null
+     * @return A cursor over the collapsed population
      */
-    private static Optional<Pair<Predicator, Predicator>> getAdjacentPredicator(Collection<FactType> exploredFactTypes, Collection<Predicator> predicators, AssertionHandler ah) {
-        // Loop through all explored fact types and their predicators
-        for (FactType factType : exploredFactTypes) {
-            for (Predicator pred : factType.getPredicators()) {
+    public static RowCursor collapseCursor(Population totalPopulation, Collection<Predicator> predicators, AssertionHandler ah, ValidationListener listener) {
+        Optional<Predicator> optional = predicators.stream().findAny();
+        if (!optional.isPresent()) return new PopulationTable(totalPopulation.getDictionary(), Collections.emptyList(), 0).cursor();
 
-                // Loop through all predicators that this UniquenessConstraint spans
-                for (Predicator result : predicators) {
-                    // Check if they are not yet explored
-                    if(exploredFactTypes.stream().noneMatch(ft -> ft.getPredicators().contains(result))) {
-                        // Get the predicator's associated fact type
-                        FactType resultFactType = result.getFactType();
-                        // Loop through all predicators in the fact type
-                        for (Predicator result2 : resultFactType.getPredicators()) {
-                            // Check if one of the predicators bases is type related to our original predicator's base.
-                            // If it is, return the predicator.
-                            if (ah.isTypeRelated(result2.getBase(), pred.getBase())) {
-                                return Optional.of(new Pair<>(pred, result2));
-                            }
-                        }
-                    }
-                }
-            }
-        }
-        return Optional.empty();
+        List<Pair<Predicator, Predicator>> joins = ah.getJoins(predicators);
+        if (joins.isEmpty()) return getFactTypeTable(totalPopulation, optional.get().getFactType()).cursor();
+        return new JoinPlan(totalPopulation, predicators, joins).cursor(listener);
     }
 
     /**
-     * This function completes the lowest common ancestor of two entity types in an information structure
-     * @param entityType1 The first entity type
-     * @param entityType2 The second entity type
-     * @param informationStructure The information structure
-     * @return The (optional) lowest common ancestor
+     * This function determines the predicators of the collapse of a population, in the order of its columns, without
+     * collapsing the population. The predicators are the same as those of the table of collapseTable.
+     *
+     * @param totalPopulation The population of the entire information structure
+     * @param predicators The predicators that the constraint spans
+     * @param ah The assertion handler we can use for checking type relatedness
+     * @return The predicators of the collapsed population
      */
-    public static Optional<EntityType> getLowestCommonAncestor(EntityType entityType1, EntityType entityType2, InformationStructure informationStructure) {
-        // We create a new queue and add the first element
-        Queue<EntityType> entityTypes = new LinkedList<>();
-        entityTypes.add(entityType1);
-
-        // We loop while the queue is not empty
-        while (!entityTypes.isEmpty()) {
-            // We retrieve the head
-            EntityType head = entityTypes.poll();
-            // We check if the entityType2 is a child of the head, if so, we can return the head
-            if (isChildOf(entityType2, head)) return Optional.of(head);
+    public static List<Predicator> collapsePredicators(Population totalPopulation, Collection<Predicator> predicators, AssertionHandler ah) {
+        Optional<Predicator> optional = predicators.stream().findAny();
+        if (!optional.isPresent()) return Collections.emptyList();
 
-            // Otherwise, we loop through all object types
-            for (ObjectType objectType : informationStructure.getObjectTypes()) {
-                if (objectType instanceof EntityType) {
-                    EntityType entityType = (EntityType) objectType;
+        List<Pair<Predicator, Predicator>> joins = ah.getJoins(predicators);
+        if (joins.isEmpty()) return getFactTypeTable(totalPopulation, optional.get().getFactType()).getPredicators();
+        return JoinPlan.getOutput(predicators, joins);
+    }
 
-                    // We check if any of these object types are a parent of the current head
-                    for (ObjectType specializationObj : entityType.getSpecializations()) {
-                        if (specializationObj instanceof EntityType) {
-                            EntityType specialization = (EntityType) specializationObj;
-                            if (specialization == head) {
-                                // If this is the case, we add this element to the queue
-                                entityTypes.add(entityType);
-                            }
-                        }
-                    }
-                }
-            }
-        }
-        // No common ancestor was found
-        return Optional.empty();
+    /**
+     * Retrieves the population table of a fact type
+     * @param population The population
+     * @param factType The fact type
+     * @return The table that belongs to this fact type
+     */
+    static PopulationTable getFactTypeTable(Population population, FactType factType) {
+        PopulationTable table = population.getFactTypeTable(factType);
+        if (table == null) throw new IllegalArgumentException("There is no population for fact type " + factType.getName());
+        return table;
     }
 
     /**
-     * Method that checks if an entity type is a child of another entity type
-     * @param child The possible child entity type
-     * @param parent The possible parent entity type
-     * @return whether the child is a child of the parent
+     * This function determines the fact types that a collection of predicators belongs to
+     * @param predicators The predicators
+     * @return The set of fact types
      */
-    private static boolean isChildOf(EntityType child, EntityType parent) {
-        if (parent == child) return true;
+    public static Set<ObjectType> getFactTypes(Collection<Predicator> predicators) {
+        Set<ObjectType> factTypes = new HashSet<>();
+        for (Predicator predicator : predicators) factTypes.add(predicator.getFactType());
+        return factTypes;
+    }
 
-        // We create a queue
-        Queue<EntityType> entityTypes = new LinkedList<>();
-        entityTypes.add(parent);
+    /**
+     * This function determines the fact type of a collection of predicators, if they all belong to the same fact type.
+     * In that case, collapsing the predicators gives the population of this fact type.
+     * @param predicators The predicators
+     * @return The (optional) fact type
+     */
+    public static Optional<FactType> getSingleFactType(Collection<Predicator> predicators) {
+        Set<ObjectType> factTypes = getFactTypes(predicators);
+        if (factTypes.size() != 1) return Optional.empty();
+        return Optional.of((FactType) factTypes.iterator().next());
+    }
 
-        // We loop while the queue is not empty
-        while (!entityTypes.isEmpty()) {
-            EntityType head = entityTypes.poll();
-            // We loop through all specializations of the head
-            for (ObjectType specializationObj : head.getSpecializations()) {
-                if (specializationObj instanceof EntityType) {
-                    // If the specialization is also an entity type, we check if it is the child.
-                    // If this is the case, we return true.
-                    // Otherwise, we add this specialization to the queue
-                    EntityType specialization = (EntityType) specializationObj;
-                    if (specialization == child) return true;
-                    entityTypes.add(specialization);
-                }
-            }
-        }
-        // It was not a child
-        return false;
+    /**
+     * This function completes the lowest common ancestor of two entity types in an information structure
+     * @param entityType1 The first entity type
+     * @param entityType2 The second entity type
+     * @param informationStructure The information structure
+     * @return The (optional) lowest common ancestor
+     */
+    public static Optional<EntityType> getLowestCommonAncestor(EntityType entityType1, EntityType entityType2, InformationStructure informationStructure) {
+        // The ancestors of each entity type are computed once for the information structure
+        return informationStructure.getSpecializationIndex().getLowestCommonAncestor(entityType1, entityType2);
     }
 
     /**
@@ -0,0 +1,178 @@
+package ru.informationsystems.util;
+
+import ru.informationsystems.objects.types.EntityType;
+import ru.informationsystems.objects.types.ObjectType;
+
+import java.util.*;
+
+/**
+ * This class contains the specialization hierarchy of the entity types of an information structure, computed once.
+ *
+ * The entity types are numbered in topological order, so an entity type always has a higher number than the entity
+ * types it specializes. For each entity type the set of its ancestors (including itself) is stored as a bitset, so
+ * whether an entity type is a subtype of another one is a single lookup. The common ancestors of several entity types
+ * are the intersection of their bitsets, and the one with the highest number is a lowest common ancestor: any
+ * specialization of it would have a higher number.
+ */
+public class SpecializationIndex {
+
+    // The number of each entity type
+    private Map<EntityType, Integer> ordinals = new HashMap<>();
+    // The entity types, in topological order
+    private List<EntityType> entityTypes = new ArrayList<>();
+    // For each entity type, the numbers of its ancestors, including itself
+    private BitSet[] ancestors;
+    // For each entity type, the length of the longest path of generalizations to a root of the hierarchy
+    private int[] depths;
+
+    public SpecializationIndex(Collection<ObjectType> objectTypes) {
+        // We determine the entity types that each entity type directly specializes
+        Map<EntityType, List<EntityType>> parents = new HashMap<>();
+        for (ObjectType objectType : objectTypes) {
+            if (objectType instanceof EntityType) parents.putIfAbsent((EntityType) objectType, new ArrayList<>());
+        }
+        for (EntityType entityType : parents.keySet()) {
+            for (ObjectType specialization : entityType.getSpecializations()) {
+                if (parents.containsKey(specialization)) parents.get(specialization).add(entityType);
+            }
+        }
+
+        // We number the entity types in topological order, starting at the roots of the hierarchy
+        Map<EntityType, Integer> remainingParents = new HashMap<>();
+        Deque<EntityType> ready = new ArrayDeque<>();
+        for (Map.Entry<EntityType, List<EntityType>> entry : parents.entrySet()) {
+            remainingParents.put(entry.getKey(), entry.getValue().size());
+            if (entry.getValue().isEmpty()) ready.add(entry.getKey());
+        }
+        while (!ready.isEmpty()) {
+            EntityType entityType = ready.poll();
+            ordinals.put(entityType, entityTypes.size());
+            entityTypes.add(entityType);
+            for (ObjectType specialization : entityType.getSpecializations()) {
+                if (!parents.containsKey(specialization)) continue;
+                if (remainingParents.merge((EntityType) specialization, -1, Integer::sum) == 0) ready.add((EntityType) specialization);
+            }
+        }
+        if (entityTypes.size() != parents.size()) throw new IllegalArgumentException("The specializations of the information structure contain a cycle.");
+
+        // The parents of an entity type are numbered before it, so their ancestors and depths are known
+        ancestors = new BitSet[entityTypes.size()];
+        depths = new int[entityTypes.size()];
+        for (int ordinal = 0; ordinal < entityTypes.size(); ordinal++) {
+            ancestors[ordinal] = new BitSet(entityTypes.size());
+            ancestors[ordinal].set(ordinal);
+            for (EntityType parent : parents.get(entityTypes.get(ordinal))) {
+                int parentOrdinal = ordinals.get(parent);
+                ancestors[ordinal].or(ancestors[parentOrdinal]);
+                depths[ordinal] = Math.max(depths[ordinal], depths[parentOrdinal] + 1);
+            }
+        }
+    }
+
+    /**
+     * Creates an index from a hierarchy that was computed before
+     * @param entityTypes The entity types, in topological order
+     * @param ancestors For each entity type, the numbers of its ancestors, including itself
+     * @param depths For each entity type, the length of the longest path of generalizations to a root of the hierarchy
+     */
+    SpecializationIndex(List<EntityType> entityTypes, BitSet[] ancestors, int[] depths) {
+        for (EntityType entityType : entityTypes) {
+            ordinals.put(entityType, this.entityTypes.size());
+            this.entityTypes.add(entityType);
+        }
+        this.ancestors = ancestors;
+        this.depths = depths;
+    }
+
+    /**
+     * @return The entity types, in topological order
+     */
+    List<EntityType> getEntityTypes() {
+        return Collections.unmodifiableList(entityTypes);
+    }
+
+    /**
+     * @return For each entity type, the numbers of its ancestors, including itself
+     */
+    BitSet[] getAncestorSets() {
+        return ancestors;
+    }
+
+    /**
+     * @return For each entity type, the length of the longest path of generalizations to a root of the hierarchy
+     */
+    int[] getDepths() {
+        return depths;
+    }
+
+    /**
+     * Determines if an entity type is a (direct or indirect) specialization of another entity type
+     * @param subtype The possible specialization
+     * @param supertype The possible generalization
+     * @return True if the entity types are equal or subtype specializes supertype, false otherwise
+     */
+    public boolean isSubtypeOf(EntityType subtype, EntityType supertype) {
+        if (subtype == supertype) return true;
+
+        Integer subtypeOrdinal = ordinals.get(subtype);
+        Integer supertypeOrdinal = ordinals.get(supertype);
+        return subtypeOrdinal != null && supertypeOrdinal != null && ancestors[subtypeOrdinal].get(supertypeOrdinal);
+    }
+
+    /**
+     * Retrieves all entity types that an entity type (directly or indirectly) specializes
+     * @param entityType The entity type
+     * @return The ancestors, in topological order, not including the entity type itself
+     */
+    public List<EntityType> getAncestors(EntityType entityType) {
+        Integer ordinal = ordinals.get(entityType);
+        if (ordinal == null) return Collections.emptyList();
+
+        List<EntityType> result = new ArrayList<>();
+        BitSet bits = ancestors[ordinal];
+        for (int next = bits.nextSetBit(0); next >= 0 && next < ordinal; next = bits.nextSetBit(next + 1)) result.add(entityTypes.get(next));
+        return result;
+    }
+
+    /**
+     * Retrieves the length of the longest path of generalizations from an entity type to a root of the hierarchy
+     * @param entityType The entity type
+     * @return The depth, which is 0 for an entity type that specializes no other entity type
+     */
+    public int getDepth(EntityType entityType) {
+        Integer ordinal = ordinals.get(entityType);
+        return ordinal == null ? 0 : depths[ordinal];
+    }
+
+    /**
+     * Determines the lowest common ancestor of two entity types
+     * @param entityType1 The first entity type
+     * @param entityType2 The second entity type
+     * @return The (optional) lowest common ancestor, which can be one of the entity types itself
+     */
+    public Optional<EntityType> getLowestCommonAncestor(EntityType entityType1, EntityType entityType2) {
+        return getLowestCommonAncestor(Arrays.asList(entityType1, entityType2));
+    }
+
+    /**
+     * Determines the lowest common ancestor of a collection of entity types.
+     * If there are several lowest common ancestors, which can happen if an entity type specializes several entity
+     * types, the one that is last in topological order is chosen.
+     * @param entityTypes The entity types
+     * @return The (optional) lowest common ancestor, which is empty if there are no entity types
+     */
+    public Optional<EntityType> getLowestCommonAncestor(Collection<EntityType> entityTypes) {
+        if (entityTypes.isEmpty()) return Optional.empty();
+        if (new HashSet<>(entityTypes).size() == 1) return Optional.of(entityTypes.iterator().next());
+
+        // We intersect the ancestors of all entity types
+        BitSet common = null;
+        for (EntityType entityType : entityTypes) {
+            Integer ordinal = ordinals.get(entityType);
+            if (ordinal == null) return Optional.empty();
+            if (common == null) common = (BitSet) ancestors[ordinal].clone();
+            else common.and(ancestors[ordinal]);
+        }
+        return common.isEmpty() ? Optional.empty() : Optional.of(this.entityTypes.get(common.length() - 1));
+    }
+}
@@ -0,0 +1,279 @@
+package ru.informationsystems.util;
+
+import ru.informationsystems.objects.types.*;
+
+import java.util.*;
+
+/**
+ * This class contains the type relatedness relation of an information structure, computed once for all object types.
+ *
+ * Derivation rules T3 and T4 extend a type related pair (Y, B) to (A, B) if A is connected to Y by a specialization
+ * or generalization arrow. We call such an arrow an edge from A to Y. Together with T1 and T2 this means that A and B
+ * are type related if and only if there is an object type that can be reached from both A and B over these edges.
+ * Rules T5 and T6 add the pairs of power types and sequence types of which the elements are type related, and the
+ * relation is then extended over the edges again, until nothing changes.
+ *
+ * Object types that can reach each other (for example all object types in a single specialization hierarchy) always
+ * have the same related object types, so the relation is stored as a bitset matrix over these groups of object types.
+ * Groups that can only be related to themselves are left out of the matrix.
+ */
+public class TypeRelatednessIndex {
+
+    // The group of each object type
+    private Map<ObjectType, Integer> groups = new HashMap<>();
+    // For each group, its row in the matrix, or -1 if it is only related to itself
+    private int[] rows;
+    // For each row, the set of rows that it is type related to
+    private BitSet[] related;
+
+    public TypeRelatednessIndex(Collection<ObjectType> objectTypes) {
+        // We number the object types, and determine the edges of each object type
+        List<ObjectType> types = new ArrayList<>(objectTypes);
+        Map<ObjectType, Integer> ordinals = new HashMap<>();
+        for (ObjectType objectType : types) ordinals.put(objectType, ordinals.size());
+
+        List<List<Integer>> edges = new ArrayList<>();
+        for (int i = 0; i < types.size(); i++) edges.add(new ArrayList<>());
+        for (ObjectType objectType : types) {
+            if (!(objectType instanceof EntityType)) continue;
+            EntityType entityType = (EntityType) objectType;
+            int ordinal = ordinals.get(entityType);
+
+            // Case T3: a specialization connects the entity type and its specialization in both directions
+            for (ObjectType specialization : entityType.getSpecializations()) {
+                Integer other = ordinals.get(specialization);
+                if (other == null) continue;
+                edges.get(ordinal).add(other);
+                edges.get(other).add(ordinal);
+            }
+            // Case T4: a generalization connects the entity type to the generalized object type
+            for (ObjectType generalization : entityType.getGeneralizations()) {
+                Integer other = ordinals.get(generalization);
+                if (other != null) edges.get(ordinal).add(other);
+            }
+        }
+
+        // We group the object types that can reach each other, and determine the edges between the groups
+        int[] groupOf = stronglyConnectedComponents(edges);
+        for (ObjectType objectType : types) groups.put(objectType, groupOf[ordinals.get(objectType)]);
+
+        int groupCount = Arrays.stream(groupOf).max().orElse(-1) + 1;
+        List<Set<Integer>> groupEdges = new ArrayList<>();
+        for (int i = 0; i < groupCount; i++) groupEdges.add(new HashSet<>());
+        for (int ordinal = 0; ordinal < types.size(); ordinal++) {
+            for (int other : edges.get(ordinal)) {
+                if (groupOf[ordinal] != groupOf[other]) groupEdges.get(groupOf[ordinal]).add(groupOf[other]);
+            }
+        }
+
+        // A group without edges to other groups, and without power types or sequence types, is only related to itself.
+        // Only the other groups get a row in the matrix, numbered in the same (topological) order.
+        boolean[] inMatrix = new boolean[groupCount];
+        for (int group = 0; group < groupCount; group++) {
+            for (int next : groupEdges.get(group)) inMatrix[group] = inMatrix[next] = true;
+        }
+        for (ObjectType objectType : types) {
+            if (objectType instanceof PowerType || objectType instanceof SequenceType) inMatrix[groups.get(objectType)] = true;
+        }
+        rows = new int[groupCount];
+        int rowCount = 0;
+        for (int group = 0; group < groupCount; group++) rows[group] = inMatrix[group] ? rowCount++ : -1;
+
+        // The rows are in topological order, so we compute the reachable rows starting at the last one
+        BitSet[] reaches = new BitSet[rowCount];
+        BitSet[] reachedBy = new BitSet[rowCount];
+        for (int group = groupCount - 1; group >= 0; group--) {
+            int row = rows[group];
+            if (row < 0) continue;
+            reaches[row] = new BitSet(rowCount);
+            reaches[row].set(row);
+            for (int next : groupEdges.get(group)) reaches[row].or(reaches[rows[next]]);
+        }
+        for (int row = 0; row < rowCount; row++) reachedBy[row] = new BitSet(rowCount);
+        for (int row = 0; row < rowCount; row++) {
+            for (int next = reaches[row].nextSetBit(0); next >= 0; next = reaches[row].nextSetBit(next + 1)) {
+                reachedBy[next].set(row);
+            }
+        }
+
+        // Case T1: initially, each row is only paired with itself
+        BitSet[] pairs = new BitSet[rowCount];
+        for (int row = 0; row < rowCount; row++) {
+            pairs[row] = new BitSet(rowCount);
+            pairs[row].set(row);
+        }
+
+        // Cases T5 and T6: we add pairs of power types and sequence types until nothing changes
+        List<PowerType> powerTypes = new ArrayList<>();
+        List<SequenceType> sequenceTypes = new ArrayList<>();
+        for (ObjectType objectType : types) {
+            if (objectType instanceof PowerType) powerTypes.add((PowerType) objectType);
+            if (objectType instanceof SequenceType) sequenceTypes.add((SequenceType) objectType);
+        }
+
+        boolean changed = true;
+        while (changed) {
+            related = close(reaches, reachedBy, pairs);
+            changed = false;
+
+            for (PowerType powerType1 : powerTypes) {
+                for (PowerType powerType2 : powerTypes) {
+                    changed |= addPair(pairs, powerType1, powerType1.getElement(), powerType2, powerType2.getElement());
+                }
+            }
+            for (SequenceType sequenceType1 : sequenceTypes) {
+                for (SequenceType sequenceType2 : sequenceTypes) {
+                    changed |= addPair(pairs, sequenceType1, sequenceType1.getElement(), sequenceType2, sequenceType2.getElement());
+                }
+            }
+        }
+    }
+
+    /**
+     * Creates an index from a relation that was computed before
+     * @param groups The group of each object type
+     * @param rows For each group, its row in the matrix, or -1 if it is only related to itself
+     * @param related For each row, the set of rows that it is type related to
+     */
+    TypeRelatednessIndex(Map<ObjectType, Integer> groups, int[] rows, BitSet[] related) {
+        this.groups.putAll(groups);
+        this.rows = rows;
+        this.related = related;
+    }
+
+    /**
+     * @return The group of each object type
+     */
+    Map<ObjectType, Integer> getGroups() {
+        return Collections.unmodifiableMap(groups);
+    }
+
+    /**
+     * @return For each group, its row in the matrix, or -1 if it is only related to itself
+     */
+    int[] getRows() {
+        return rows;
+    }
+
+    /**
+     * @return For each row, the set of rows that it is type related to
+     */
+    BitSet[] getRelated() {
+        return related;
+    }
+
+    /**
+     * Determines if two object types are type related
+     * @param objectType1 The first object type
+     * @param objectType2 The second object type
+     * @return True if objectType1 and objectType2 are type related, false otherwise.
+     */
+    public boolean isTypeRelated(ObjectType objectType1, ObjectType objectType2) {
+        if (objectType1.equals(objectType2)) return true;
+
+        Integer group1 = groups.get(objectType1);
+        Integer group2 = groups.get(objectType2);
+        if (group1 == null || group2 == null) return false;
+        if (group1.equals(group2)) return true;
+        return rows[group1] >= 0 && rows[group2] >= 0 && related[rows[group1]].get(rows[group2]);
+    }
+
+    /**
+     * Adds a pair of object types if their elements are type related, and they are not a pair yet
+     * @return Whether the pair was added
+     */
+    private boolean addPair(BitSet[] pairs, ObjectType objectType1, ObjectType element1, ObjectType objectType2, ObjectType element2) {
+        int row1 = rows[groups.get(objectType1)];
+        int row2 = rows[groups.get(objectType2)];
+        if (pairs[row1].get(row2) || !isTypeRelated(element1, element2)) return false;
+
+        pairs[row1].set(row2);
+        pairs[row2].set(row1);
+        return true;
+    }
+
+    /**
+     * Computes the type relatedness relation from the pairs of type related rows.
+     * A row is related to all rows that reach a partner of a row it reaches.
+     * @param reaches For each row, the rows it can reach
+     * @param reachedBy For each row, the rows that can reach it
+     * @param pairs For each row, the rows it is paired with
+     * @return For each row, the rows it is type related to
+     */
+    private static BitSet[] close(BitSet[] reaches, BitSet[] reachedBy, BitSet[] pairs) {
+        int rowCount = reaches.length;
+        BitSet[] result = new BitSet[rowCount];
+
+        for (int row = 0; row < rowCount; row++) {
+            BitSet partners = new BitSet(rowCount);
+            for (int next = reaches[row].nextSetBit(0); next >= 0; next = reaches[row].nextSetBit(next + 1)) {
+                partners.or(pairs[next]);
+            }
+
+            result[row] = new BitSet(rowCount);
+            for (int partner = partners.nextSetBit(0); partner >= 0; partner = partners.nextSetBit(partner + 1)) {
+                result[row].or(reachedBy[partner]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Computes the strongly connected components of a graph with Kosaraju's algorithm.
+     * The components are numbered in topological order: edges between components go from a lower to a higher number.
+     * @param edges For each node, the nodes it has an edge to
+     * @return For each node, the number of its component
+     */
+    private static int[] stronglyConnectedComponents(List<List<Integer>> edges) {
+        int size = edges.size();
+
+        // We determine the order in which the nodes finish in a depth first search
+        List<Integer> finished = new ArrayList<>();
+        boolean[] visited = new boolean[size];
+        for (int start = 0; start < size; start++) {
+            if (visited[start]) continue;
+            Deque<int[]> stack = new ArrayDeque<>();
+            stack.push(new int[]{start, 0});
+            visited[start] = true;
+            while (!stack.isEmpty()) {
+                int[] top = stack.peek();
+                List<Integer> next = edges.get(top[0]);
+                if (top[1] < next.size()) {
+                    int node = next.get(top[1]++);
+                    if (!visited[node]) {
+                        visited[node] = true;
+                        stack.push(new int[]{node, 0});
+                    }
+                } else {
+                    finished.add(stack.pop()[0]);
+                }
+            }
+        }
+
+        // We search the reversed graph in reverse finishing order, each search finds one component
+        List<List<Integer>> reversed = new ArrayList<>();
+        for (int node = 0; node < size; node++) reversed.add(new ArrayList<>());
+        for (int node = 0; node < size; node++) for (int next : edges.get(node)) reversed.get(next).add(node);
+
+        int[] components = new int[size];
+        Arrays.fill(components, -1);
+        int count = 0;
+        for (int i = size - 1; i >= 0; i--) {
+            int start = finished.get(i);
+            if (components[start] >= 0) continue;
+            Deque<Integer> stack = new ArrayDeque<>();
+            stack.push(start);
+            components[start] = count;
+            while (!stack.isEmpty()) {
+                for (int node : reversed.get(stack.pop())) {
+                    if (components[node] < 0) {
+                        components[node] = count;
+                        stack.push(node);
+                    }
+                }
+            }
+            count++;
+        }
+        return components;
+    }
+}